@@ -1,13 +1,16 @@
 package com.tough.jukebox.authentication;
 
+import com.tough.jukebox.authentication.config.NativeImageHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
 @EntityScan(basePackages = "com.tough.jukebox.authentication.model")
+@ImportRuntimeHints(NativeImageHints.class)
 public class AuthApplication {
 
     public static void main(String[] args) {
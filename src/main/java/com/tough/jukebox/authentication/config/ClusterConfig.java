@@ -0,0 +1,23 @@
+package com.tough.jukebox.authentication.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ClusterConfig {
+
+    @Value(value = "${CLUSTER_NODE_ID:}")
+    private String nodeId;
+
+    @Value(value = "${CLUSTER_HEARTBEAT_INTERVAL_MS:15000}")
+    private long heartbeatIntervalMillis;
+
+    @Value(value = "${CLUSTER_VIRTUAL_NODES:64}")
+    private int virtualNodes;
+
+    public String getNodeId() { return nodeId; }
+
+    public long getHeartbeatIntervalMillis() { return heartbeatIntervalMillis; }
+
+    public int getVirtualNodes() { return virtualNodes; }
+}
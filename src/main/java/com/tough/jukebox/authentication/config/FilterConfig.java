@@ -1,20 +1,36 @@
 package com.tough.jukebox.authentication.config;
 
+import com.tough.jukebox.authentication.security.ConcurrencyLimitFilter;
 import com.tough.jukebox.authentication.security.JwtAuthenticationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class FilterConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
 
     @Autowired
-    public FilterConfig(JwtAuthenticationFilter jwtAuthenticationFilter) {
+    public FilterConfig(JwtAuthenticationFilter jwtAuthenticationFilter, ConcurrencyLimitFilter concurrencyLimitFilter) {
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.concurrencyLimitFilter = concurrencyLimitFilter;
     }
+
+    // ahead of the JWT filter, so shed requests skip token verification
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilterRegistration() {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(concurrencyLimitFilter);
+        registrationBean.addUrlPatterns("/auth/*");
+        registrationBean.setOrder(-1);
+        return registrationBean;
+    }
+
     @Bean
     public FilterRegistrationBean<JwtAuthenticationFilter> jwtFilter() {
         FilterRegistrationBean<JwtAuthenticationFilter> registrationBean = new FilterRegistrationBean<>();
@@ -0,0 +1,41 @@
+package com.tough.jukebox.authentication.config;
+
+import com.tough.jukebox.authentication.diagnostics.InstrumentationSuppression;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationPredicate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsProperties;
+import org.springframework.boot.actuate.autoconfigure.metrics.PropertiesAutoTimer;
+import org.springframework.boot.actuate.metrics.data.MetricsRepositoryMethodInvocationListener;
+import org.springframework.boot.actuate.metrics.data.RepositoryTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class InstrumentationConfig {
+
+    // Boot applies every ObservationPredicate bean to the registry; a rejected observation is a no-op, so it
+    // produces no timer, span or log correlation
+    @Bean
+    public ObservationPredicate instrumentationSuppressionPredicate() {
+        return (name, context) -> !InstrumentationSuppression.isSuppressed();
+    }
+
+    // spring.data.repository.invocations is timed straight into the MeterRegistry, not through an observation,
+    // so Boot's listener is replaced by one that checks the same flag
+    @Bean
+    public MetricsRepositoryMethodInvocationListener metricsRepositoryMethodInvocationListener(ObjectProvider<MeterRegistry> meterRegistry,
+                                                                                               RepositoryTagsProvider repositoryTagsProvider,
+                                                                                               MetricsProperties metricsProperties) {
+        MetricsProperties.Data.Repository repository = metricsProperties.getData().getRepository();
+        return new MetricsRepositoryMethodInvocationListener(meterRegistry::getObject, repositoryTagsProvider,
+                repository.getMetricName(), new PropertiesAutoTimer(repository.getAutotime())) {
+            @Override
+            public void afterInvocation(RepositoryMethodInvocation invocation) {
+                if (!InstrumentationSuppression.isSuppressed()) {
+                    super.afterInvocation(invocation);
+                }
+            }
+        };
+    }
+}
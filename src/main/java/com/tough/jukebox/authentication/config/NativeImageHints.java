@@ -0,0 +1,57 @@
+package com.tough.jukebox.authentication.config;
+
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import com.tough.jukebox.authentication.model.User;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.List;
+
+// The SQLite native library itself is embedded by the driver's own org.sqlite.nativeimage.SqliteJdbcFeature
+public class NativeImageHints implements RuntimeHintsRegistrar {
+
+    // jjwt-api instantiates its implementation classes by name (io.jsonwebtoken.lang.Classes)
+    private static final List<String> JJWT_IMPLEMENTATION_TYPES = List.of(
+            "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtHeaderBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+            "io.jsonwebtoken.impl.security.KeysBridge",
+            "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardHashAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyOperations",
+            "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer"
+    );
+
+    // created from configuration strings rather than referenced in code
+    private static final List<String> PERSISTENCE_TYPES = List.of(
+            "org.sqlite.JDBC",
+            "org.hibernate.community.dialect.SQLiteDialect"
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> entityType : List.of(User.class, SpotifyToken.class)) {
+            hints.reflection().registerType(entityType, MemberCategory.values());
+        }
+
+        JJWT_IMPLEMENTATION_TYPES.forEach(typeName -> hints.reflection().registerType(
+                TypeReference.of(typeName),
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                MemberCategory.INVOKE_DECLARED_METHODS,
+                MemberCategory.DECLARED_FIELDS
+        ));
+        hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.*");
+
+        PERSISTENCE_TYPES.forEach(typeName -> hints.reflection().registerType(
+                TypeReference.of(typeName),
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS
+        ));
+    }
+}
@@ -0,0 +1,33 @@
+package com.tough.jukebox.authentication.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    // JPA and JWT signing block, so they run here instead of on the Netty event loop.
+    // More threads than pooled connections would only queue inside Hikari.
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jpaScheduler(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) {
+        return Schedulers.newBoundedElastic(maximumPoolSize, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "jpa");
+    }
+
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        // Mirrors WebConfig for the servlet stack
+        registry.addMapping("/**")
+                .allowedOrigins("http://127.0.0.1:3000")
+                .allowedMethods("GET", "POST", "PUT", "DELETE")
+                .allowedHeaders("*")
+                .allowCredentials(true)
+                .maxAge(3600);
+    }
+}
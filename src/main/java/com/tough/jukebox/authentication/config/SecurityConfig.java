@@ -12,7 +12,13 @@ public class SecurityConfig {
     @Value(value = "${PUBLIC_KEY}")
     private String publicKey;
 
+    // HMAC key for the OAuth login state; unset keeps the single-app login flow without state
+    @Value(value = "${LOGIN_STATE_SECRET:}")
+    private String loginStateSecret;
+
     public String getPrivateKey() { return privateKey; }
 
     public String getPublicKey() { return publicKey; }
+
+    public String getLoginStateSecret() { return loginStateSecret; }
 }
@@ -0,0 +1,35 @@
+package com.tough.jukebox.authentication.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// The first start, or the reshard tool, records a file's place in the layout; every later start must agree with it
+public final class ShardMetadata {
+
+    private ShardMetadata() {
+    }
+
+    public static void recordOrVerify(Connection connection, int shardIndex, int shardCount) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT shard_index, shard_count FROM shard_metadata WHERE id = 1");
+             ResultSet row = select.executeQuery()) {
+            if (row.next()) {
+                int recordedIndex = row.getInt(1);
+                int recordedCount = row.getInt(2);
+                if (recordedIndex != shardIndex || recordedCount != shardCount) {
+                    throw new IllegalStateException("Database " + connection.getMetaData().getURL() + " is shard " + recordedIndex +
+                            " of " + recordedCount + " but is configured as shard " + shardIndex + " of " + shardCount +
+                            "; run ReshardTool to change DATABASE_SHARD_COUNT");
+                }
+                return;
+            }
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO shard_metadata (id, shard_index, shard_count) VALUES (1, ?, ?)")) {
+            insert.setInt(1, shardIndex);
+            insert.setInt(2, shardCount);
+            insert.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.tough.jukebox.authentication.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Picks the shard bound to the calling thread when a connection is taken. Connections are taken when a transaction
+// begins, so the shard has to be bound before that, which ShardRouter does. Unbound work lands on shard 0
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<HikariDataSource> shards;
+
+    public ShardRoutingDataSource(List<HikariDataSource> shards) {
+        this.shards = List.copyOf(shards);
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            targetDataSources.put(shard, this.shards.get(shard));
+        }
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(this.shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public static Integer getCurrentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    public static void setCurrentShard(Integer shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+
+    public List<HikariDataSource> getShards() {
+        return shards;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT_SHARD.get();
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
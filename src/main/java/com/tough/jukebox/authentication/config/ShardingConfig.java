@@ -0,0 +1,85 @@
+package com.tough.jukebox.authentication.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class ShardingConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardingConfig.class);
+
+    // with a single shard the plain spring.datasource pool is used and nothing is routed
+    @Value(value = "${DATABASE_SHARD_COUNT:1}")
+    private int shardCount;
+
+    // shard 0 is always spring.datasource.url, so the existing file and the cluster tables stay where they are
+    @Value(value = "${DATABASE_SHARD_URL_TEMPLATE:jdbc:sqlite:/data/jukebox-shard-%d.sqlite}")
+    private String shardUrlTemplate;
+
+    public int getShardCount() { return Math.max(1, shardCount); }
+
+    public String getShardUrl(int shard, String primaryUrl) {
+        return shard == 0 ? primaryUrl : String.format(shardUrlTemplate, shard);
+    }
+
+    // each shard is its own SQLite file with its own pool, so each has its own writer
+    @Bean
+    @ConditionalOnExpression("${DATABASE_SHARD_COUNT:1} > 1")
+    public ShardRoutingDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            HikariDataSource shardDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(getShardUrl(shard, dataSourceProperties.getUrl()))
+                    .build();
+            shardDataSource.setPoolName("shard-" + shard);
+            shards.add(shardDataSource);
+        }
+        LOGGER.info("User data sharded over {} SQLite database(s)", shards.size());
+        return new ShardRoutingDataSource(shards);
+    }
+
+    // every shard gets the full schema; the cluster tables are only used on shard 0. Each file is then checked against
+    // the shard it was recorded as, single-shard included, so a changed DATABASE_SHARD_COUNT stops startup here
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource) {
+        return flyway -> {
+            ShardRoutingDataSource routingDataSource = shardRoutingDataSource.getIfAvailable();
+            List<DataSource> shards = routingDataSource == null
+                    ? List.of(flyway.getConfiguration().getDataSource())
+                    : List.copyOf(routingDataSource.getShards());
+
+            for (int shard = 0; shard < shards.size(); shard++) {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shards.get(shard))
+                        .load()
+                        .migrate();
+                recordOrVerify(shards.get(shard), shard, shards.size());
+            }
+        };
+    }
+
+    private static void recordOrVerify(DataSource dataSource, int shard, int shardCount) {
+        try (Connection connection = dataSource.getConnection()) {
+            ShardMetadata.recordOrVerify(connection, shard, shardCount);
+        } catch (SQLException exception) {
+            throw new IllegalStateException("Could not check the metadata of shard " + shard, exception);
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package com.tough.jukebox.authentication.config;
 
+import com.tough.jukebox.authentication.diagnostics.SpotifyExchangeRecorder;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class SpotifyConfig {
@@ -15,12 +22,24 @@ public class SpotifyConfig {
     @Value(value = "${SPOTIFY_APP_CLIENT_SECRET}")
     private String spotifyAppClientSecret;
 
+    // further Spotify apps as comma separated clientId:clientSecret pairs, each with its own rate-limit budget
+    @Value(value = "${SPOTIFY_APP_CREDENTIALS:}")
+    private String additionalAppCredentials;
+
     @Value(value = "${SPOTIFY_TOKEN_URI}")
     private String spotifyTokenUri;
 
     @Value(value = "${SPOTIFY_CURRENT_USER_URI}")
     private String spotifyCurrentUserUri;
 
+    // built from Boot's builder so calls are observed as http.client.requests
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
+        return restTemplateBuilder
+                .additionalInterceptors(new SpotifyExchangeRecorder())
+                .build();
+    }
+
     public String getSpotifyRedirectUri() { return spotifyRedirectUri; }
 
     public String getSpotifyAppClientId() {
@@ -31,6 +50,26 @@ public class SpotifyConfig {
         return spotifyAppClientSecret;
     }
 
+    // the app configured by SPOTIFY_APP_CLIENT_ID always comes first
+    public List<SpotifyCredential> getSpotifyAppCredentials() {
+        List<SpotifyCredential> credentials = new ArrayList<>();
+        credentials.add(new SpotifyCredential(spotifyAppClientId, spotifyAppClientSecret));
+
+        if (additionalAppCredentials != null) {
+            for (String pair : additionalAppCredentials.split(",")) {
+                if (pair.isBlank()) {
+                    continue;
+                }
+                int separator = pair.indexOf(':');
+                if (separator <= 0 || separator == pair.length() - 1) {
+                    throw new IllegalStateException("SPOTIFY_APP_CREDENTIALS entries must be clientId:clientSecret");
+                }
+                credentials.add(new SpotifyCredential(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim()));
+            }
+        }
+        return credentials;
+    }
+
     public String getSpotifyTokenUri() { return spotifyTokenUri; }
 
     public String getSpotifyCurrentUserUri() { return spotifyCurrentUserUri; }
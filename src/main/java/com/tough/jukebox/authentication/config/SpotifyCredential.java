@@ -0,0 +1,10 @@
+package com.tough.jukebox.authentication.config;
+
+// one registered Spotify app; tokens it issues can only be refreshed with the same pair
+public record SpotifyCredential(String clientId, String clientSecret) {
+
+    @Override
+    public String toString() {
+        return "SpotifyCredential[clientId=" + clientId + "]";
+    }
+}
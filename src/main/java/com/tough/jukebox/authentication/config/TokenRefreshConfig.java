@@ -0,0 +1,62 @@
+package com.tough.jukebox.authentication.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class TokenRefreshConfig {
+
+    public enum RefreshPolicy {
+        // every expiring token is refreshed ahead of time
+        ALL,
+        // only users seen within the active window are refreshed ahead of time; the rest on their next request
+        ACTIVE
+    }
+
+    @Value(value = "${TOKEN_REFRESH_POLICY:ALL}")
+    private RefreshPolicy policy;
+
+    @Value(value = "${TOKEN_REFRESH_ACTIVE_WINDOW_HOURS:24}")
+    private long activeWindowHours;
+
+    @Value(value = "${TOKEN_EXPIRY_INDEX_ENABLED:true}")
+    private boolean expiryIndexEnabled;
+
+    @Value(value = "${TOKEN_REFRESH_BACKOFF_BASE_MS:180000}")
+    private long backoffBaseMillis;
+
+    @Value(value = "${TOKEN_REFRESH_BACKOFF_MAX_MS:21600000}")
+    private long backoffMaxMillis;
+
+    @Value(value = "${TOKEN_CATCH_UP_ENABLED:true}")
+    private boolean catchUpEnabled;
+
+    @Value(value = "${TOKEN_CATCH_UP_BATCH_SIZE:20}")
+    private int catchUpBatchSize;
+
+    @Value(value = "${TOKEN_CATCH_UP_QUEUE_SIZE:1000}")
+    private int catchUpQueueSize;
+
+    @Value(value = "${TOKEN_CATCH_UP_REFILL_INTERVAL_MS:300000}")
+    private long catchUpRefillIntervalMillis;
+
+    public RefreshPolicy getPolicy() { return policy; }
+
+    public Duration getActiveWindow() { return Duration.ofHours(activeWindowHours); }
+
+    public boolean isExpiryIndexEnabled() { return expiryIndexEnabled; }
+
+    public Duration getBackoffBase() { return Duration.ofMillis(backoffBaseMillis); }
+
+    public Duration getBackoffMax() { return Duration.ofMillis(backoffMaxMillis); }
+
+    public boolean isCatchUpEnabled() { return catchUpEnabled; }
+
+    public int getCatchUpBatchSize() { return catchUpBatchSize; }
+
+    public int getCatchUpQueueSize() { return catchUpQueueSize; }
+
+    public Duration getCatchUpRefillInterval() { return Duration.ofMillis(catchUpRefillIntervalMillis); }
+}
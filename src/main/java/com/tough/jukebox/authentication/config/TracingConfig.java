@@ -0,0 +1,22 @@
+package com.tough.jukebox.authentication.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tough.jukebox.authentication.diagnostics.JsonFileSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class TracingConfig {
+
+    // Boot hands every SpanExporter bean to the OpenTelemetry SDK; without one spans are only propagated, not kept
+    @Bean
+    @ConditionalOnProperty(name = "TRACING_EXPORT_FILE")
+    public SpanExporter jsonFileSpanExporter(@Value("${TRACING_EXPORT_FILE}") String exportFile, ObjectMapper objectMapper) {
+        return new JsonFileSpanExporter(Path.of(exportFile), objectMapper);
+    }
+}
@@ -1,9 +1,7 @@
 package com.tough.jukebox.authentication.config;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -13,15 +11,17 @@ public class WebConfig implements WebMvcConfigurer {
     @Value(value = "${FRONT_END_REDIRECT}")
     private String frontendRedirectUri;
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
+    @Value(value = "${LOGIN_CHECK_MAX_AGE_SECONDS:300}")
+    private long loginCheckMaxAgeSeconds;
 
     public String getFrontendRedirectUri() {
         return frontendRedirectUri;
     }
 
+    public long getLoginCheckMaxAgeSeconds() {
+        return loginCheckMaxAgeSeconds;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         // This allows all endpoints to accept CORS requests from any origin.
@@ -1,36 +1,57 @@
 package com.tough.jukebox.authentication.controller;
 
+import com.tough.jukebox.authentication.exception.InvalidLoginStateException;
 import com.tough.jukebox.authentication.exception.SpotifyAPIException;
+import com.tough.jukebox.authentication.security.LoginStateSigner;
+import com.tough.jukebox.authentication.security.TokenIntrospection;
 import com.tough.jukebox.authentication.service.AuthService;
+import com.tough.jukebox.authentication.service.LoginStatus;
+import com.tough.jukebox.authentication.service.TokenIntrospectionService;
+import com.tough.jukebox.authentication.service.UserProfile;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.*;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthController.class);
 
     private static final String JWT_LABEL = "jwt";
+    private static final String USER_ID_LABEL = "userId";
+    private static final String JWT_EXPIRES_AT_LABEL = "jwtExpiresAt";
     private static final String REDIRECT_URI_LABEL = "redirectUri";
+    private static final String LOGIN_STATE_LABEL = "loginState";
+    private static final String CALLBACK_PATH = "/auth/spotifyAuthorizationCallback";
+    private static final String TOKENS_LABEL = "tokens";
+    private static final String RESULTS_LABEL = "results";
 
     private final AuthService authService;
+    private final TokenIntrospectionService tokenIntrospectionService;
 
     @Autowired
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, TokenIntrospectionService tokenIntrospectionService) {
         this.authService = authService;
+        this.tokenIntrospectionService = tokenIntrospectionService;
     }
 
     @GetMapping("auth/spotifyRedirectParams")
@@ -40,7 +61,15 @@ public class AuthController {
         Map<String, String> params = authService.getSpotifyRedirectParams();
 
         if (params != null && !params.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(params);
+            // the signed login state goes only to the callback, as an HttpOnly cookie, never in the body
+            Map<String, String> body = new HashMap<>(params);
+            String loginState = body.remove(LOGIN_STATE_LABEL);
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+            if (loginState != null) {
+                response.header(HttpHeaders.SET_COOKIE, loginStateCookie(loginState, LoginStateSigner.TIME_TO_LIVE).toString());
+            }
+            return response.contentType(MediaType.APPLICATION_JSON).body(body);
         } else {
             LOGGER.error("Spotify params Not Found (404)");
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -48,12 +77,15 @@ public class AuthController {
     }
 
     @GetMapping("auth/spotifyAuthorizationCallback")
-    public ResponseEntity<Void> authenticate(@RequestParam String code, HttpServletRequest request) {
+    public ResponseEntity<Void> authenticate(@RequestParam String code,
+                                             @RequestParam(required = false) String state,
+                                             @CookieValue(name = LOGIN_STATE_LABEL, required = false) String loginState,
+                                             HttpServletRequest request) {
 
         LOGGER.info("/auth/spotifyAuthorizationCallback request received");
 
         try {
-            Map<String, String> authenticationMap = authService.completeAuthentication(code);
+            Map<String, String> authenticationMap = authService.completeAuthentication(code, state, loginState);
 
             ResponseCookie cookie = ResponseCookie.from(JWT_LABEL, authenticationMap.get(JWT_LABEL))
                     .httpOnly(true)
@@ -62,23 +94,78 @@ public class AuthController {
                     .maxAge(Duration.ofHours(1))
                     .build();
 
-            return ResponseEntity.status(HttpStatus.SEE_OTHER)
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.SEE_OTHER)
                     .header(HttpHeaders.LOCATION, authenticationMap.get(REDIRECT_URI_LABEL))
-                    .header(HttpHeaders.SET_COOKIE, cookie.toString())
-                    .build();
+                    .header(HttpHeaders.SET_COOKIE, cookie.toString());
+            if (loginState != null) {
+                response.header(HttpHeaders.SET_COOKIE, loginStateCookie("", Duration.ZERO).toString());
+            }
+            return response.build();
         } catch(SpotifyAPIException spotifyAPIException) {
             LOGGER.error("Internal Server Error (500): {}", spotifyAPIException.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        } catch(NoSuchAlgorithmException | InvalidKeySpecException exception) {
+        } catch(NoSuchAlgorithmException | InvalidKeySpecException | InvalidLoginStateException exception) {
             LOGGER.error("Unauthorized (401): {}", exception.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
     }
 
+    // Lax, so the browser still sends it on the top-level redirect back from Spotify
+    private static ResponseCookie loginStateCookie(String value, Duration maxAge) {
+        return ResponseCookie.from(LOGIN_STATE_LABEL, value)
+                .httpOnly(true)
+                .secure(false)
+                .sameSite("Lax")
+                .path(CALLBACK_PATH)
+                .maxAge(maxAge)
+                .build();
+    }
+
+    // a matching If-None-Match is answered with 304 by Spring from the ETag set here
     @GetMapping("auth/loginCheck")
-    public ResponseEntity<Void> loginCheck(HttpServletRequest request) {
+    public ResponseEntity<LoginStatus> loginCheck(HttpServletRequest request) {
         LOGGER.info("/auth/loginCheck request received");
-        return ResponseEntity.status(HttpStatus.OK).build();
+
+        LoginStatus loginStatus = authService.getLoginStatus((String) request.getAttribute(USER_ID_LABEL), (Instant) request.getAttribute(JWT_EXPIRES_AT_LABEL));
+
+        return ResponseEntity.status(HttpStatus.OK)
+                .cacheControl(authService.loginCheckCacheControl(loginStatus))
+                .varyBy(HttpHeaders.COOKIE)
+                .eTag(loginStatus.eTag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(loginStatus);
+    }
+
+    // no-cache: the browser keeps the body but revalidates, and an unchanged profile costs a 304 from the cache
+    @GetMapping("auth/profile")
+    public ResponseEntity<UserProfile> profile(HttpServletRequest request) {
+        LOGGER.info("/auth/profile request received");
+
+        return authService.getUserProfile((String) request.getAttribute(USER_ID_LABEL))
+                .map(userProfile -> ResponseEntity.status(HttpStatus.OK)
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .varyBy(HttpHeaders.COOKIE)
+                        .eTag(userProfile.eTag())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(userProfile))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @PostMapping("auth/introspect")
+    public ResponseEntity<Map<String, List<TokenIntrospection>>> introspect(@RequestBody Map<String, List<String>> request) {
+        LOGGER.info("/auth/introspect request received");
+
+        try {
+            List<TokenIntrospection> results = tokenIntrospectionService.introspect(request.get(TOKENS_LABEL));
+
+            return ResponseEntity.status(HttpStatus.OK)
+                    .cacheControl(tokenIntrospectionService.cacheControl(results))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of(RESULTS_LABEL, results));
+        } catch (IllegalArgumentException exception) {
+            LOGGER.error("Bad Request (400): {}", exception.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
     }
 
     @PostMapping("auth/logout")
@@ -0,0 +1,183 @@
+package com.tough.jukebox.authentication.controller;
+
+import com.tough.jukebox.authentication.exception.SpotifyAPIException;
+import com.tough.jukebox.authentication.security.LoginStateSigner;
+import com.tough.jukebox.authentication.security.TokenIntrospection;
+import com.tough.jukebox.authentication.service.LoginStatus;
+import com.tough.jukebox.authentication.service.ReactiveAuthService;
+import com.tough.jukebox.authentication.service.TokenIntrospectionService;
+import com.tough.jukebox.authentication.service.UserProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.CookieValue;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveAuthController.class);
+
+    private static final String JWT_LABEL = "jwt";
+    private static final String USER_ID_LABEL = "userId";
+    private static final String JWT_EXPIRES_AT_LABEL = "jwtExpiresAt";
+    private static final String REDIRECT_URI_LABEL = "redirectUri";
+    private static final String LOGIN_STATE_LABEL = "loginState";
+    private static final String CALLBACK_PATH = "/auth/spotifyAuthorizationCallback";
+    private static final String TOKENS_LABEL = "tokens";
+    private static final String RESULTS_LABEL = "results";
+
+    private final ReactiveAuthService reactiveAuthService;
+    private final TokenIntrospectionService tokenIntrospectionService;
+
+    @Autowired
+    public ReactiveAuthController(ReactiveAuthService reactiveAuthService, TokenIntrospectionService tokenIntrospectionService) {
+        this.reactiveAuthService = reactiveAuthService;
+        this.tokenIntrospectionService = tokenIntrospectionService;
+    }
+
+    @GetMapping("auth/spotifyRedirectParams")
+    public ResponseEntity<Map<String, String>> getSpotifyRedirectParams() {
+        LOGGER.info("/auth/spotifyRedirectParams request received");
+
+        Map<String, String> params = reactiveAuthService.getSpotifyRedirectParams();
+
+        if (params != null && !params.isEmpty()) {
+            // the signed login state goes only to the callback, as an HttpOnly cookie, never in the body
+            Map<String, String> body = new HashMap<>(params);
+            String loginState = body.remove(LOGIN_STATE_LABEL);
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+            if (loginState != null) {
+                response.header(HttpHeaders.SET_COOKIE, loginStateCookie(loginState, LoginStateSigner.TIME_TO_LIVE).toString());
+            }
+            return response.contentType(MediaType.APPLICATION_JSON).body(body);
+        } else {
+            LOGGER.error("Spotify params Not Found (404)");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+    }
+
+    @GetMapping("auth/spotifyAuthorizationCallback")
+    public Mono<ResponseEntity<Void>> authenticate(@RequestParam String code,
+                                                   @RequestParam(required = false) String state,
+                                                   @CookieValue(name = LOGIN_STATE_LABEL, required = false) String loginState) {
+
+        LOGGER.info("/auth/spotifyAuthorizationCallback request received");
+
+        return reactiveAuthService.completeAuthentication(code, state, loginState)
+                .map(authenticationMap -> {
+                    ResponseCookie cookie = ResponseCookie.from(JWT_LABEL, authenticationMap.get(JWT_LABEL))
+                            .httpOnly(true)
+                            .secure(false)
+                            .path("/")
+                            .maxAge(Duration.ofHours(1))
+                            .build();
+
+                    ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.SEE_OTHER)
+                            .header(HttpHeaders.LOCATION, authenticationMap.get(REDIRECT_URI_LABEL))
+                            .header(HttpHeaders.SET_COOKIE, cookie.toString());
+                    if (loginState != null) {
+                        response.header(HttpHeaders.SET_COOKIE, loginStateCookie("", Duration.ZERO).toString());
+                    }
+                    return response.<Void>build();
+                })
+                .onErrorResume(SpotifyAPIException.class, spotifyAPIException -> {
+                    LOGGER.error("Internal Server Error (500): {}", spotifyAPIException.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                })
+                .onErrorResume(GeneralSecurityException.class, exception -> {
+                    LOGGER.error("Unauthorized (401): {}", exception.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+                });
+    }
+
+    // Lax, so the browser still sends it on the top-level redirect back from Spotify
+    private static ResponseCookie loginStateCookie(String value, Duration maxAge) {
+        return ResponseCookie.from(LOGIN_STATE_LABEL, value)
+                .httpOnly(true)
+                .secure(false)
+                .sameSite("Lax")
+                .path(CALLBACK_PATH)
+                .maxAge(maxAge)
+                .build();
+    }
+
+    @GetMapping("auth/loginCheck")
+    public Mono<ResponseEntity<LoginStatus>> loginCheck(ServerWebExchange exchange) {
+        LOGGER.info("/auth/loginCheck request received");
+
+        return reactiveAuthService.getLoginStatus(exchange.getAttribute(USER_ID_LABEL), exchange.getAttribute(JWT_EXPIRES_AT_LABEL))
+                .map(loginStatus -> ResponseEntity.status(HttpStatus.OK)
+                        .cacheControl(reactiveAuthService.loginCheckCacheControl(loginStatus))
+                        .varyBy(HttpHeaders.COOKIE)
+                        .eTag(loginStatus.eTag())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(loginStatus));
+    }
+
+    // no-cache: the browser keeps the body but revalidates, and an unchanged profile costs a 304 from the cache
+    @GetMapping("auth/profile")
+    public Mono<ResponseEntity<UserProfile>> profile(ServerWebExchange exchange) {
+        LOGGER.info("/auth/profile request received");
+
+        return reactiveAuthService.getUserProfile(exchange.getAttribute(USER_ID_LABEL))
+                .map(userProfile -> ResponseEntity.status(HttpStatus.OK)
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .varyBy(HttpHeaders.COOKIE)
+                        .eTag(userProfile.eTag())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(userProfile))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    @PostMapping("auth/introspect")
+    public Mono<ResponseEntity<Map<String, List<TokenIntrospection>>>> introspect(@RequestBody Map<String, List<String>> request) {
+        LOGGER.info("/auth/introspect request received");
+
+        // the batch verifies on the common fork-join pool, which must not block an event loop thread
+        return Mono.fromCallable(() -> tokenIntrospectionService.introspect(request.get(TOKENS_LABEL)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(results -> ResponseEntity.status(HttpStatus.OK)
+                        .cacheControl(tokenIntrospectionService.cacheControl(results))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(Map.of(RESULTS_LABEL, results)))
+                .onErrorResume(IllegalArgumentException.class, exception -> {
+                    LOGGER.error("Bad Request (400): {}", exception.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+                });
+    }
+
+    @PostMapping("auth/logout")
+    public Mono<ResponseEntity<Void>> logout(ServerWebExchange exchange) {
+        LOGGER.info("/auth/logout request received");
+
+        ResponseCookie cookie = ResponseCookie.from(JWT_LABEL)
+                .httpOnly(true)
+                .secure(false)
+                .path("/")
+                .maxAge(Duration.ZERO)
+                .build();
+
+        return reactiveAuthService.logOut(exchange.getAttribute(JWT_LABEL))
+                .map(userLogoutSuccess -> ResponseEntity.status(userLogoutSuccess ? HttpStatus.OK : HttpStatus.NOT_FOUND)
+                        .header(HttpHeaders.SET_COOKIE, cookie.toString())
+                        .build());
+    }
+}
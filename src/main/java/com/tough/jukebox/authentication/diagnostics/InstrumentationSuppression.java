@@ -0,0 +1,34 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+// Marks work the service does on its own behalf, such as the startup warm-up. While it runs on a thread, the
+// observation predicate, the repository invocation timer and SpotifyExchangeRecorder record nothing for that thread
+public final class InstrumentationSuppression {
+
+    private static final ThreadLocal<Boolean> SUPPRESSED = new ThreadLocal<>();
+
+    private InstrumentationSuppression() {
+    }
+
+    public static boolean isSuppressed() {
+        return Boolean.TRUE.equals(SUPPRESSED.get());
+    }
+
+    public static void suppress(Work work) throws Exception {
+        if (isSuppressed()) {
+            work.run();
+            return;
+        }
+
+        SUPPRESSED.set(true);
+        try {
+            work.run();
+        } finally {
+            SUPPRESSED.remove();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Work {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,37 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.tough.jukebox.JwtOperation")
+@Label("JWT Operation")
+@Category({"Jukebox", "Authentication"})
+@Description("RSA signing, verification or parsing of a JWT")
+@StackTrace(false)
+public class JwtOperationEvent extends Event {
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Algorithm")
+    private String algorithm;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+}
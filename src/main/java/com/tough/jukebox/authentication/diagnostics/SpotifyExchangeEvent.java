@@ -0,0 +1,55 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.tough.jukebox.SpotifyExchange")
+@Label("Spotify Exchange")
+@Category({"Jukebox", "Spotify"})
+@Description("An HTTP exchange with the Spotify accounts service or Web API, up to the response body being read")
+@StackTrace(false)
+public class SpotifyExchangeEvent extends Event {
+
+    @Label("Method")
+    private String method;
+
+    @Label("Endpoint")
+    private String endpoint;
+
+    @Label("Status")
+    @Description("HTTP status, or 0 when no response was received")
+    private int status;
+
+    @Label("Request Bytes")
+    @DataAmount
+    private long requestBytes;
+
+    @Label("Response Bytes")
+    @DataAmount
+    private long responseBytes;
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public void setRequestBytes(long requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+}
@@ -0,0 +1,107 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+// Emits a SpotifyExchangeEvent per RestTemplate call; the event ends when RestTemplate closes the response,
+// so its duration and byte count cover reading the body, not just the status line
+public class SpotifyExchangeRecorder implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        SpotifyExchangeEvent event = new SpotifyExchangeEvent();
+        if (!event.isEnabled() || InstrumentationSuppression.isSuppressed()) {
+            return execution.execute(request, body);
+        }
+
+        event.begin();
+        event.setMethod(request.getMethod().name());
+        event.setEndpoint(endpointOf(request.getURI()));
+        event.setRequestBytes(body.length);
+
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            event.setStatus(response.getStatusCode().value());
+            return new RecordingResponse(response, event);
+        } catch (IOException exception) {
+            event.commit();
+            throw exception;
+        }
+    }
+
+    // query strings can carry codes and tokens, so only host and path are recorded
+    private static String endpointOf(URI uri) {
+        return uri.getHost() + uri.getPath();
+    }
+
+    private static final class RecordingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final SpotifyExchangeEvent event;
+
+        private long responseBytes;
+        private boolean committed;
+
+        private RecordingResponse(ClientHttpResponse response, SpotifyExchangeEvent event) {
+            this.response = response;
+            this.event = event;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(response.getBody()) {
+                @Override
+                public int read() throws IOException {
+                    int value = super.read();
+                    if (value >= 0) {
+                        responseBytes++;
+                    }
+                    return value;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        responseBytes += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            response.close();
+            if (!committed) {
+                committed = true;
+                event.setResponseBytes(responseBytes);
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import com.tough.jukebox.authentication.service.TokenRefreshMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/tokenrefresh[?windowMinutes=N]
+@Component
+@Endpoint(id = "tokenrefresh")
+public class TokenRefreshEndpoint {
+
+    private final TokenRefreshMonitor tokenRefreshMonitor;
+
+    @Autowired
+    public TokenRefreshEndpoint(TokenRefreshMonitor tokenRefreshMonitor) {
+        this.tokenRefreshMonitor = tokenRefreshMonitor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> tokenRefresh(@Nullable Integer windowMinutes) {
+        return tokenRefreshMonitor.getStatus(windowMinutes);
+    }
+}
@@ -0,0 +1,46 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.tough.jukebox.TokenRefreshRun")
+@Label("Token Refresh Run")
+@Category({"Jukebox", "Scheduler"})
+@Description("One scheduled run of the Spotify token refresh")
+@StackTrace(false)
+public class TokenRefreshRunEvent extends Event {
+
+    @Label("Users Scanned")
+    @Description("Users with a token in the refresh window, across all instances")
+    private int usersScanned;
+
+    @Label("Users Owned")
+    @Description("Scanned users this instance is responsible for")
+    private int usersOwned;
+
+    @Label("Users Refreshed")
+    private int usersRefreshed;
+
+    @Label("Users Failed")
+    private int usersFailed;
+
+    public void setUsersScanned(int usersScanned) {
+        this.usersScanned = usersScanned;
+    }
+
+    public void setUsersOwned(int usersOwned) {
+        this.usersOwned = usersOwned;
+    }
+
+    public void setUsersRefreshed(int usersRefreshed) {
+        this.usersRefreshed = usersRefreshed;
+    }
+
+    public void setUsersFailed(int usersFailed) {
+        this.usersFailed = usersFailed;
+    }
+}
@@ -0,0 +1,121 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Streams the JFR jdk.VirtualThreadPinned event, emitted when a virtual thread blocks while it cannot unmount
+// from its carrier (inside a synchronized block or a native frame), e.g. the SQLite driver's synchronized NativeDB calls
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final List<String> PLATFORM_PACKAGES = List.of("java.", "javax.", "jdk.", "sun.", "com.sun.");
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private final Set<String> reportedSources = ConcurrentHashMap.newKeySet();
+
+    private RecordingStream recordingStream;
+
+    @Autowired
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${VIRTUAL_THREAD_PINNING_THRESHOLD_MS:20}") long thresholdMillis) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = Duration.ofMillis(thresholdMillis);
+    }
+
+    @Override
+    public synchronized void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+
+        LOGGER.info("Monitoring virtual thread pinning longer than {} ms", threshold.toMillis());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+            recordingStream = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return recordingStream != null;
+    }
+
+    void onPinned(RecordedEvent event) {
+        String source = findSource(event.getStackTrace());
+
+        Counter.builder("jukebox.virtualthreads.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier thread")
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+        Timer.builder("jukebox.virtualthreads.pinned.duration")
+                .description("Time virtual threads spent blocked while pinned")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(event.getDuration());
+
+        // the full stack is logged once per source; repeats are only counted
+        if (reportedSources.add(source)) {
+            LOGGER.warn("Virtual thread pinned for {} ms in {}:\n{}", event.getDuration().toMillis(), source, formatStackTrace(event.getStackTrace()));
+        } else {
+            LOGGER.debug("Virtual thread pinned for {} ms in {}", event.getDuration().toMillis(), source);
+        }
+    }
+
+    private String findSource(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        return stackTrace.getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(frame -> frame.getMethod().getType().getName())
+                .filter(typeName -> PLATFORM_PACKAGES.stream().noneMatch(typeName::startsWith))
+                .findFirst()
+                .orElse("jdk");
+    }
+
+    private String formatStackTrace(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "\t(no stack trace)";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            builder.append("\tat ")
+                    .append(frame.getMethod().getType().getName())
+                    .append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':')
+                    .append(frame.getLineNumber())
+                    .append('\n');
+        }
+        return builder.toString();
+    }
+}
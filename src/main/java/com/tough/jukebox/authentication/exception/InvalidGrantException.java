@@ -0,0 +1,9 @@
+package com.tough.jukebox.authentication.exception;
+
+// Spotify answered invalid_grant: the refresh token was revoked or has expired, so retrying it can never succeed
+public class InvalidGrantException extends SpotifyAPIException {
+
+    public InvalidGrantException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.tough.jukebox.authentication.exception;
+
+import java.security.GeneralSecurityException;
+
+// the callback's state does not match the login cookie this browser was given, or the cookie is forged or stale
+public class InvalidLoginStateException extends GeneralSecurityException {
+
+    public InvalidLoginStateException(String message) {
+        super(message);
+    }
+}
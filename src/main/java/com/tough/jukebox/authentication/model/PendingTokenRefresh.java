@@ -0,0 +1,28 @@
+package com.tough.jukebox.authentication.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "pending_token_refresh")
+public class PendingTokenRefresh {
+
+    @Id
+    @Column(name = "spotify_user_id", nullable = false)
+    private String spotifyUserId;
+
+    @Column(name = "queued_at", nullable = false)
+    private Instant queuedAt;
+
+    protected PendingTokenRefresh() {}
+
+    public PendingTokenRefresh(String spotifyUserId, Instant queuedAt) {
+        this.spotifyUserId = spotifyUserId;
+        this.queuedAt = queuedAt;
+    }
+
+    public String getSpotifyUserId() { return spotifyUserId; }
+
+    public Instant getQueuedAt() { return queuedAt; }
+}
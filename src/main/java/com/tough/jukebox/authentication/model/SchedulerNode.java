@@ -0,0 +1,30 @@
+package com.tough.jukebox.authentication.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "scheduler_node")
+public class SchedulerNode {
+
+    @Id
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    @Column(name = "last_heartbeat", nullable = false)
+    private Instant lastHeartbeat;
+
+    protected SchedulerNode() {}
+
+    public SchedulerNode(String nodeId, Instant lastHeartbeat) {
+        this.nodeId = nodeId;
+        this.lastHeartbeat = lastHeartbeat;
+    }
+
+    public String getNodeId() { return nodeId; }
+
+    public Instant getLastHeartbeat() { return lastHeartbeat; }
+
+    public void setLastHeartbeat(Instant lastHeartbeat) { this.lastHeartbeat = lastHeartbeat; }
+}
@@ -1,6 +1,7 @@
 package com.tough.jukebox.authentication.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.Instant;
 
@@ -23,6 +24,25 @@ public class SpotifyToken {
     @Column(name = "token_expiry", nullable = false)
     private Instant tokenExpiry;
 
+    @Column(name = "client_id")
+    private String clientId;
+
+    @Column(name = "refresh_failures", nullable = false)
+    @ColumnDefault("0")
+    private int refreshFailures;
+
+    @Column(name = "refresh_retry_at")
+    private Instant refreshRetryAt;
+
+    @Column(name = "quarantined_at")
+    private Instant quarantinedAt;
+
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+
+    public Long getId() { return id; }
+
     public String getRefreshToken() { return refreshToken; }
 
     public void setRefreshToken(String refreshToken) { this.refreshToken = refreshToken; }
@@ -38,4 +58,22 @@ public class SpotifyToken {
     public Instant getTokenExpiry() { return tokenExpiry; }
 
     public void setTokenExpiry(Instant tokenExpiry) { this.tokenExpiry = tokenExpiry; }
+
+    public String getClientId() { return clientId; }
+
+    public void setClientId(String clientId) { this.clientId = clientId; }
+
+    public int getRefreshFailures() { return refreshFailures; }
+
+    public void setRefreshFailures(int refreshFailures) { this.refreshFailures = refreshFailures; }
+
+    public Instant getRefreshRetryAt() { return refreshRetryAt; }
+
+    public void setRefreshRetryAt(Instant refreshRetryAt) { this.refreshRetryAt = refreshRetryAt; }
+
+    public Instant getQuarantinedAt() { return quarantinedAt; }
+
+    public void setQuarantinedAt(Instant quarantinedAt) { this.quarantinedAt = quarantinedAt; }
+
+    public Long getVersion() { return version; }
 }
\ No newline at end of file
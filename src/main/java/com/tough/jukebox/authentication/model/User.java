@@ -1,6 +1,9 @@
 package com.tough.jukebox.authentication.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
 
 @Entity
 public class User {
@@ -22,6 +25,13 @@ public class User {
     @Column(name = "displayName", nullable = false, unique = true)
     private String displayName;
 
+    @Column(name = "last_seen_at")
+    private Instant lastSeenAt;
+
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+
     public Long getId() { return id; }
 
     public String getEmailAddress() { return emailAddress; }
@@ -39,4 +49,10 @@ public class User {
     public SpotifyToken getSpotifyToken() { return spotifyToken; }
 
     public void setSpotifyToken(SpotifyToken spotifyToken) { this.spotifyToken = spotifyToken; }
+
+    public Instant getLastSeenAt() { return lastSeenAt; }
+
+    public void setLastSeenAt(Instant lastSeenAt) { this.lastSeenAt = lastSeenAt; }
+
+    public Long getVersion() { return version; }
 }
\ No newline at end of file
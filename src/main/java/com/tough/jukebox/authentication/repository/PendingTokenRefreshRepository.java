@@ -0,0 +1,15 @@
+package com.tough.jukebox.authentication.repository;
+
+import com.tough.jukebox.authentication.model.PendingTokenRefresh;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PendingTokenRefreshRepository extends JpaRepository<PendingTokenRefresh, String> {
+
+    @Query("SELECT p.spotifyUserId FROM PendingTokenRefresh p")
+    List<String> findAllSpotifyUserIds();
+}
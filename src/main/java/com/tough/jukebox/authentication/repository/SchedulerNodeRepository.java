@@ -0,0 +1,23 @@
+package com.tough.jukebox.authentication.repository;
+
+import com.tough.jukebox.authentication.model.SchedulerNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface SchedulerNodeRepository extends JpaRepository<SchedulerNode, String> {
+
+    @Query("SELECT n.nodeId FROM SchedulerNode n WHERE n.lastHeartbeat > :heartbeatSince ORDER BY n.nodeId")
+    List<String> findLiveNodeIds(Instant heartbeatSince);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SchedulerNode n WHERE n.lastHeartbeat <= :heartbeatBefore")
+    int deleteExpiredNodes(Instant heartbeatBefore);
+}
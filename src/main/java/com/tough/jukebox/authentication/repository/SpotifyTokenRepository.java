@@ -0,0 +1,21 @@
+package com.tough.jukebox.authentication.repository;
+
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface SpotifyTokenRepository extends JpaRepository<SpotifyToken, Long> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM spotify_token WHERE id IN (" +
+            "SELECT st.id FROM spotify_token st " +
+            "LEFT JOIN \"user\" u ON u.spotify_token_id = st.id " +
+            "WHERE u.id IS NULL " +
+            "LIMIT :chunkSize)", nativeQuery = true)
+    int deleteOrphanedTokens(int chunkSize);
+}
@@ -1,21 +1,167 @@
 package com.tough.jukebox.authentication.repository;
 
 import com.tough.jukebox.authentication.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findBySpotifyUserId(String spotifyUserId);
 
+    @Query("SELECT u.id FROM User u WHERE u.spotifyUserId = :spotifyUserId")
+    Optional<Long> findIdBySpotifyUserId(String spotifyUserId);
+
+    // keyset page of [id, tokenExpiry] rows, for loading the token expiry index without holding every user at once
+    @Query("SELECT u.id, st.tokenExpiry FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE u.id > :afterId " +
+            "AND st.quarantinedAt IS NULL " +
+            "ORDER BY u.id")
+    List<Object[]> findTokenExpiriesAfter(Long afterId, Limit limit);
+
+    // quarantined tokens, and tokens backing off after a failed refresh, are left out of every scheduler query
     @Query("SELECT u FROM User u " +
             "JOIN u.spotifyToken st " +
-            "WHERE st.tokenExpiry BETWEEN :currentTime AND :fiveMinutesFromNow")
+            "WHERE st.tokenExpiry BETWEEN :currentTime AND :fiveMinutesFromNow " +
+            "AND st.quarantinedAt IS NULL " +
+            "AND (st.refreshRetryAt IS NULL OR st.refreshRetryAt <= :currentTime)")
     List<User> findUsersWithSpotifyTokenExpiringSoon(Instant currentTime, Instant fiveMinutesFromNow);
-}
\ No newline at end of file
+
+    @Query("SELECT u FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.tokenExpiry BETWEEN :currentTime AND :fiveMinutesFromNow " +
+            "AND u.lastSeenAt >= :activeSince " +
+            "AND st.quarantinedAt IS NULL " +
+            "AND (st.refreshRetryAt IS NULL OR st.refreshRetryAt <= :currentTime)")
+    List<User> findActiveUsersWithSpotifyTokenExpiringSoon(Instant currentTime, Instant fiveMinutesFromNow, Instant activeSince);
+
+    @Query("SELECT u FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE u.id IN :userIds " +
+            "AND st.tokenExpiry BETWEEN :currentTime AND :fiveMinutesFromNow " +
+            "AND st.quarantinedAt IS NULL " +
+            "AND (st.refreshRetryAt IS NULL OR st.refreshRetryAt <= :currentTime)")
+    List<User> findUsersWithSpotifyTokenExpiringSoon(Collection<Long> userIds, Instant currentTime, Instant fiveMinutesFromNow);
+
+    // a retry that falls due within the window counts as due
+    @Query("SELECT u FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE u.spotifyUserId IN :spotifyUserIds " +
+            "AND st.tokenExpiry < :refreshBefore " +
+            "AND st.quarantinedAt IS NULL " +
+            "AND (st.refreshRetryAt IS NULL OR st.refreshRetryAt <= :refreshBefore)")
+    List<User> findUsersWithSpotifyTokenExpiringBefore(Collection<String> spotifyUserIds, Instant refreshBefore);
+
+    // logout unlinks the token, so every expired token still linked has its refresh token; most recently active first
+    @Query("SELECT u.spotifyUserId FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.tokenExpiry < :currentTime " +
+            "AND st.quarantinedAt IS NULL " +
+            "AND (st.refreshRetryAt IS NULL OR st.refreshRetryAt <= :currentTime) " +
+            "ORDER BY u.lastSeenAt DESC NULLS LAST, u.id")
+    List<String> findSpotifyUserIdsWithExpiredSpotifyToken(Instant currentTime, Limit limit);
+
+    @Query("SELECT u.spotifyUserId FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.tokenExpiry < :currentTime " +
+            "AND u.lastSeenAt >= :activeSince " +
+            "AND st.quarantinedAt IS NULL " +
+            "AND (st.refreshRetryAt IS NULL OR st.refreshRetryAt <= :currentTime) " +
+            "ORDER BY u.lastSeenAt DESC, u.id")
+    List<String> findActiveSpotifyUserIdsWithExpiredSpotifyToken(Instant currentTime, Instant activeSince, Limit limit);
+
+    @Query("SELECT COUNT(u) FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.tokenExpiry BETWEEN :currentTime AND :windowEnd " +
+            "AND st.quarantinedAt IS NULL")
+    long countUsersWithSpotifyTokenExpiringBetween(Instant currentTime, Instant windowEnd);
+
+    // quarantined tokens wait for a login rather than a refresh, so they are counted separately
+    @Query("SELECT COUNT(u) FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.tokenExpiry < :currentTime " +
+            "AND st.quarantinedAt IS NULL")
+    long countUsersWithExpiredSpotifyToken(Instant currentTime);
+
+    @Query("SELECT COUNT(u) FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.tokenExpiry < :currentTime " +
+            "AND u.lastSeenAt >= :activeSince " +
+            "AND st.quarantinedAt IS NULL")
+    long countActiveUsersWithExpiredSpotifyToken(Instant currentTime, Instant activeSince);
+
+    @Query("SELECT COUNT(u) FROM User u " +
+            "JOIN u.spotifyToken st " +
+            "WHERE st.quarantinedAt IS NOT NULL")
+    long countUsersWithQuarantinedSpotifyToken();
+
+    boolean existsBySpotifyUserIdAndSpotifyTokenTokenExpiryAfter(String spotifyUserId, Instant currentTime);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.spotifyToken = null, u.version = u.version + 1 " +
+            "WHERE u.spotifyUserId = :spotifyUserId")
+    int clearSpotifyToken(String spotifyUserId);
+
+    // leaves version alone so activity never conflicts with a concurrent token update; never moves backwards
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.lastSeenAt = :lastSeenAt " +
+            "WHERE u.spotifyUserId = :spotifyUserId " +
+            "AND (u.lastSeenAt IS NULL OR u.lastSeenAt < :lastSeenAt)")
+    int updateLastSeenAt(String spotifyUserId, Instant lastSeenAt);
+
+    // only writes a row whose profile changed on Spotify since the last login
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.displayName = :displayName, u.emailAddress = :emailAddress " +
+            "WHERE u.spotifyUserId = :spotifyUserId " +
+            "AND (u.displayName <> :displayName OR u.emailAddress <> :emailAddress)")
+    int updateProfile(String spotifyUserId, String displayName, String emailAddress);
+
+    // a null refreshToken or clientId keeps the stored one; tokens that already outlive tokenExpiry are left untouched.
+    // A stored token is a working one, so any failure state is cleared
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE SpotifyToken st " +
+            "SET st.accessToken = :accessToken, " +
+            "st.refreshToken = COALESCE(:refreshToken, st.refreshToken), " +
+            "st.clientId = COALESCE(:clientId, st.clientId), " +
+            "st.tokenExpiry = :tokenExpiry, " +
+            "st.refreshFailures = 0, " +
+            "st.refreshRetryAt = NULL, " +
+            "st.quarantinedAt = NULL, " +
+            "st.version = st.version + 1 " +
+            "WHERE st.tokenExpiry <= :tokenExpiry " +
+            "AND st.id = (SELECT u.spotifyToken.id FROM User u WHERE u.spotifyUserId = :spotifyUserId)")
+    int updateSpotifyToken(String spotifyUserId, String accessToken, String refreshToken, String clientId, Instant tokenExpiry);
+
+    // found by its primary key and matched on the refresh token that failed, so a token stored by a login in the
+    // meantime is left alone; like updateLastSeenAt it leaves version alone so it never conflicts with that login
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE SpotifyToken st " +
+            "SET st.refreshFailures = st.refreshFailures + 1, " +
+            "st.refreshRetryAt = :retryAt " +
+            "WHERE st.id = :tokenId AND st.refreshToken = :refreshToken")
+    int recordRefreshFailure(Long tokenId, String refreshToken, Instant retryAt);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE SpotifyToken st " +
+            "SET st.refreshFailures = st.refreshFailures + 1, " +
+            "st.refreshRetryAt = NULL, " +
+            "st.quarantinedAt = :quarantinedAt " +
+            "WHERE st.id = :tokenId AND st.refreshToken = :refreshToken")
+    int quarantineRefreshToken(Long tokenId, String refreshToken, Instant quarantinedAt);
+}
@@ -0,0 +1,87 @@
+package com.tough.jukebox.authentication.security;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Additive-increase/multiplicative-decrease limit on requests in flight. The limit grows by one for each on-time
+// response while at least half of it is in use. It shrinks by a tenth on a server error, or when the smoothed latency
+// passes latencyTolerance times the baseline while at least half of it is in use; at low load a slow response says
+// nothing about concurrency, so it never costs capacity. The limit never drops below minLimit.
+final class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SMOOTHING = 0.1;
+    // the baseline is the 90th percentile of the previous window, so a mix of cheap and costly requests is not
+    // judged against the cheapest, and it can follow Spotify slowing down
+    private static final int BASELINE_WINDOW = 500;
+    private static final double BASELINE_PERCENTILE = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private final long[] windowNanos = new long[BASELINE_WINDOW];
+    private int windowSamples;
+    // unknown until the first window fills, and until then latency alone never shrinks the limit
+    private long baselineNanos = Long.MAX_VALUE;
+    private double smoothedNanos;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release(long latencyNanos, boolean failed) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        update(latencyNanos, failed, inFlightBeforeRelease);
+    }
+
+    private synchronized void update(long latencyNanos, boolean failed, int inFlightAtCompletion) {
+        windowNanos[windowSamples++] = latencyNanos;
+        if (windowSamples == BASELINE_WINDOW) {
+            long[] sorted = windowNanos.clone();
+            Arrays.sort(sorted);
+            baselineNanos = sorted[(int) (BASELINE_PERCENTILE * (BASELINE_WINDOW - 1))];
+            windowSamples = 0;
+        }
+        smoothedNanos = smoothedNanos == 0 ? latencyNanos : smoothedNanos + SMOOTHING * (latencyNanos - smoothedNanos);
+
+        boolean busy = inFlightAtCompletion * 2 >= limit;
+        boolean slow = baselineNanos != Long.MAX_VALUE && smoothedNanos > baselineNanos * latencyTolerance;
+        if (failed || (busy && slow)) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (busy) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    // a rejected caller should come back after roughly one recent response time
+    long retryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(smoothedNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+}
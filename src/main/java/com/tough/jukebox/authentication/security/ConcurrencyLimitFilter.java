@@ -0,0 +1,132 @@
+package com.tough.jukebox.authentication.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Sheds load before the JWT filter so a rejected request costs no RSA work. Each class of endpoint has its own
+// limit, so a login storm or a run of introspection batches cannot starve /auth/loginCheck of request threads, and
+// the latency of one class is never judged against the cheaper requests of another.
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private static final String LOGIN_BULKHEAD = "login";
+    private static final String SESSION_BULKHEAD = "session";
+    private static final String INTROSPECT_BULKHEAD = "introspect";
+    private static final String REDIRECT_BULKHEAD = "redirect";
+
+    private final boolean enabled;
+    private final Bulkhead login;
+    private final Bulkhead session;
+    private final Bulkhead introspect;
+    private final Bulkhead redirect;
+
+    // the maxima together stay under Tomcat's 200 request threads, so no one class can take every thread
+    @Autowired
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${CONCURRENCY_LIMIT_ENABLED:true}") boolean enabled,
+                                  @Value("${LOGIN_CONCURRENCY_MAX_LIMIT:64}") int loginMaxLimit,
+                                  @Value("${SESSION_CONCURRENCY_MAX_LIMIT:96}") int sessionMaxLimit,
+                                  @Value("${INTROSPECT_CONCURRENCY_MAX_LIMIT:16}") int introspectMaxLimit,
+                                  @Value("${REDIRECT_CONCURRENCY_MAX_LIMIT:16}") int redirectMaxLimit,
+                                  @Value("${CONCURRENCY_LATENCY_TOLERANCE:2.0}") double latencyTolerance) {
+        this.enabled = enabled;
+        this.login = newBulkhead(meterRegistry, LOGIN_BULKHEAD, loginMaxLimit, latencyTolerance);
+        this.session = newBulkhead(meterRegistry, SESSION_BULKHEAD, sessionMaxLimit, latencyTolerance);
+        this.introspect = newBulkhead(meterRegistry, INTROSPECT_BULKHEAD, introspectMaxLimit, latencyTolerance);
+        this.redirect = newBulkhead(meterRegistry, REDIRECT_BULKHEAD, redirectMaxLimit, latencyTolerance);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        Bulkhead bulkhead = bulkheadFor(request.getRequestURI());
+        AdaptiveConcurrencyLimit limit = bulkhead.limit();
+
+        if (!limit.tryAcquire()) {
+            bulkhead.rejections().increment();
+            setServiceUnavailableResponseHeaders(response, request.getRequestURI(), limit);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        } finally {
+            limit.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Bulkhead bulkheadFor(String requestURI) {
+        if (requestURI.startsWith("/auth/spotifyAuthorizationCallback")) {
+            return login;
+        }
+        if (requestURI.startsWith("/auth/introspect")) {
+            return introspect;
+        }
+        if (requestURI.startsWith("/auth/spotifyRedirectParams")) {
+            return redirect;
+        }
+        return session;
+    }
+
+    // the initial limit is also the floor, so a burst that size is always admitted however the latency has moved
+    private static Bulkhead newBulkhead(MeterRegistry meterRegistry, String name, int maxLimit, double latencyTolerance) {
+        int initialLimit = Math.max(1, maxLimit / 4);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(initialLimit, initialLimit, maxLimit, latencyTolerance);
+        return new Bulkhead(limit, registerMeters(meterRegistry, name, limit));
+    }
+
+    private static Counter registerMeters(MeterRegistry meterRegistry, String bulkhead, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("jukebox.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current adaptive limit on concurrent requests")
+                .tag("bulkhead", bulkhead)
+                .register(meterRegistry);
+        Gauge.builder("jukebox.concurrency.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Requests currently admitted")
+                .tag("bulkhead", bulkhead)
+                .register(meterRegistry);
+        return Counter.builder("jukebox.concurrency.rejected")
+                .description("Requests shed with 503 because the limit was reached")
+                .tag("bulkhead", bulkhead)
+                .register(meterRegistry);
+    }
+
+    private void setServiceUnavailableResponseHeaders(HttpServletResponse response, String requestURI, AdaptiveConcurrencyLimit limit) {
+        LOGGER.warn("Concurrency limit of {} reached for {}, returning 503 SERVICE UNAVAILABLE.", limit.getLimit(), requestURI);
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limit.retryAfterSeconds()));
+        response.setHeader("Access-Control-Allow-Origin", "http://127.0.0.1:3000");
+        response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "*");
+        response.setHeader("Access-Control-Allow-Credentials", "true");
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    private record Bulkhead(AdaptiveConcurrencyLimit limit, Counter rejections) {
+    }
+}
@@ -1,5 +1,8 @@
 package com.tough.jukebox.authentication.security;
 
+import com.tough.jukebox.authentication.service.UserActivityTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -8,23 +11,37 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    static final String FILTER_METRIC = "jukebox.jwt.filter.requests";
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final JwtUtil jwtUtil;
+    private final MeterRegistry meterRegistry;
+    private final UserActivityTracker userActivityTracker;
+    private final String introspectionServiceToken;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtUtil jwtUtil) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, MeterRegistry meterRegistry, UserActivityTracker userActivityTracker,
+                                   @Value("${INTROSPECTION_SERVICE_TOKEN:}") String introspectionServiceToken) {
         this.jwtUtil = jwtUtil;
+        this.meterRegistry = meterRegistry;
+        this.userActivityTracker = userActivityTracker;
+        this.introspectionServiceToken = introspectionServiceToken;
     }
 
     @Override
@@ -37,20 +54,60 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        // introspection callers are gateways with no cookie of their own; they present the service token instead,
+        // checked before the batch is read so an unauthenticated caller cannot spend RSA verifications
+        if (requestURI.startsWith("/auth/introspect")) {
+            if (!isServiceAuthorized(request.getHeader(HttpHeaders.AUTHORIZATION), introspectionServiceToken)) {
+                count(meterRegistry, "rejected", "invalid_service_token");
+                setUnauthorizedResponseHeaders(response, requestURI);
+                return;
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+
         String token = extractTokenFromRequest(request);
 
-        if (token == null || !jwtUtil.validateToken(token)) {
+        if (token == null) {
+            count(meterRegistry, "rejected", "missing_token");
             setUnauthorizedResponseHeaders(response, requestURI);
             return;
         }
 
-        try {
-            request.setAttribute("userId", jwtUtil.getUserIdFromToken(token));
-            request.setAttribute("jwt", token);
-            filterChain.doFilter(request, response);
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+        // a single signature check yields the subject and expiry
+        TokenIntrospection introspection = jwtUtil.introspect(token);
+
+        if (!introspection.valid()) {
+            count(meterRegistry, "rejected", "invalid_token");
             setUnauthorizedResponseHeaders(response, requestURI);
+            return;
         }
+
+        count(meterRegistry, "accepted", "valid_token");
+        userActivityTracker.recordActivity(introspection.subject());
+        request.setAttribute("userId", introspection.subject());
+        request.setAttribute("jwt", token);
+        request.setAttribute("jwtExpiresAt", introspection.expiresAt());
+        filterChain.doFilter(request, response);
+    }
+
+    // an unset service token closes introspection rather than opening it; compared in constant time
+    static boolean isServiceAuthorized(String authorization, String serviceToken) {
+        if (serviceToken.isEmpty() || authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        return MessageDigest.isEqual(authorization.substring(BEARER_PREFIX.length()).getBytes(StandardCharsets.UTF_8),
+                serviceToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // shared with JwtAuthenticationWebFilter so both stacks report the same series
+    static void count(MeterRegistry meterRegistry, String outcome, String reason) {
+        Counter.builder(FILTER_METRIC)
+                .description("Requests to /auth/* accepted or rejected by JWT authentication")
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
     }
 
     private String extractTokenFromRequest(HttpServletRequest request) {
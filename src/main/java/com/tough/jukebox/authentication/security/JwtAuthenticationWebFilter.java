@@ -0,0 +1,103 @@
+package com.tough.jukebox.authentication.security;
+
+import com.tough.jukebox.authentication.service.UserActivityTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+// WebFlux counterpart of JwtAuthenticationFilter, which FilterConfig registers for /auth/* on the servlet stack
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class JwtAuthenticationWebFilter implements WebFilter, Ordered {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwtAuthenticationWebFilter.class);
+
+    private final JwtUtil jwtUtil;
+    private final MeterRegistry meterRegistry;
+    private final UserActivityTracker userActivityTracker;
+    private final String introspectionServiceToken;
+
+    @Autowired
+    public JwtAuthenticationWebFilter(JwtUtil jwtUtil, MeterRegistry meterRegistry, UserActivityTracker userActivityTracker,
+                                      @Value("${INTROSPECTION_SERVICE_TOKEN:}") String introspectionServiceToken) {
+        this.jwtUtil = jwtUtil;
+        this.meterRegistry = meterRegistry;
+        this.userActivityTracker = userActivityTracker;
+        this.introspectionServiceToken = introspectionServiceToken;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        String requestURI = exchange.getRequest().getPath().value();
+
+        if (!requestURI.startsWith("/auth/")
+                || requestURI.startsWith("/auth/spotifyAuthorizationCallback")
+                || requestURI.startsWith("/auth/spotifyRedirectParams")) {
+            return chain.filter(exchange);
+        }
+
+        if (requestURI.startsWith("/auth/introspect")) {
+            if (!JwtAuthenticationFilter.isServiceAuthorized(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION), introspectionServiceToken)) {
+                JwtAuthenticationFilter.count(meterRegistry, "rejected", "invalid_service_token");
+                return setUnauthorizedResponse(exchange.getResponse(), requestURI);
+            }
+            return chain.filter(exchange);
+        }
+
+        HttpCookie cookie = exchange.getRequest().getCookies().getFirst("jwt");
+        String token = cookie == null ? null : cookie.getValue();
+
+        if (token == null) {
+            JwtAuthenticationFilter.count(meterRegistry, "rejected", "missing_token");
+            return setUnauthorizedResponse(exchange.getResponse(), requestURI);
+        }
+
+        TokenIntrospection introspection = jwtUtil.introspect(token);
+
+        if (!introspection.valid()) {
+            JwtAuthenticationFilter.count(meterRegistry, "rejected", "invalid_token");
+            return setUnauthorizedResponse(exchange.getResponse(), requestURI);
+        }
+
+        // exchange attributes reject null values, unlike servlet request attributes
+        if (introspection.subject() != null) {
+            exchange.getAttributes().put("userId", introspection.subject());
+        }
+        exchange.getAttributes().put("jwt", token);
+        exchange.getAttributes().put("jwtExpiresAt", introspection.expiresAt());
+        JwtAuthenticationFilter.count(meterRegistry, "accepted", "valid_token");
+        userActivityTracker.recordActivity(introspection.subject());
+        return chain.filter(exchange);
+    }
+
+    @Override
+    public int getOrder() {
+        return 0;
+    }
+
+    private Mono<Void> setUnauthorizedResponse(ServerHttpResponse response, String requestURI) {
+        LOGGER.info("JWT validation failed for {}, returning 401 UNAUTHORIZED.", requestURI);
+
+        HttpHeaders headers = response.getHeaders();
+        headers.set("Access-Control-Allow-Origin", "http://127.0.0.1:3000");
+        headers.set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+        headers.set("Access-Control-Allow-Headers", "*");
+        headers.set("Access-Control-Allow-Credentials", "true");
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        return response.setComplete();
+    }
+}
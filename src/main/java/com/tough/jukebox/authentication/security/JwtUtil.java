@@ -1,13 +1,18 @@
 package com.tough.jukebox.authentication.security;
 
 import com.tough.jukebox.authentication.config.SecurityConfig;
+import com.tough.jukebox.authentication.diagnostics.JwtOperationEvent;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPrivateKey;
@@ -15,65 +20,187 @@ import java.security.interfaces.RSAPublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 public class JwtUtil {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtUtil.class);
 
+    private static final String OPERATIONS_METRIC = "jukebox.jwt.operations";
+    private static final Pattern ALGORITHM_HEADER = Pattern.compile("\"alg\"\\s*:\\s*\"([^\"]+)\"");
+
     private final SecurityConfig securityConfig;
+    private final ObservationRegistry observationRegistry;
 
     @Autowired
-    public JwtUtil(SecurityConfig securityConfig) {
+    public JwtUtil(SecurityConfig securityConfig, ObservationRegistry observationRegistry) {
         this.securityConfig = securityConfig;
+        this.observationRegistry = observationRegistry;
     }
 
     public String createToken(String userId) throws NoSuchAlgorithmException, InvalidKeySpecException {
 
         LOGGER.info("Creating JWT token for User ID: {}", userId);
 
-        return Jwts.builder()
-                .subject(userId)
-                .claim("roles", List.of("ROLE_USER"))
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60))
-                .signWith(createPrivateKey())
-                .compact();
+        Observation observation = start("sign");
+        JwtOperationEvent event = new JwtOperationEvent();
+        event.begin();
+        String outcome = "failure";
+        String token = null;
+        try {
+            token = sign(userId);
+            outcome = "success";
+            return token;
+        } finally {
+            stop(observation, outcome);
+            commit(event, "sign", outcome, token);
+        }
     }
 
     public boolean validateToken(String token) {
+        Observation observation = start("verify");
+        JwtOperationEvent event = new JwtOperationEvent();
+        event.begin();
+        String outcome = "invalid";
         try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getPublicKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            Claims claims = verify(token);
 
-            return !claims.getExpiration().before(new Date());
+            boolean valid = !claims.getExpiration().before(new Date());
+            outcome = valid ? "success" : "expired";
+            return valid;
 
+        } catch (ExpiredJwtException e) {
+            // jjwt rejects an expired token before the claims are returned, so this is where expiry normally lands
+            outcome = "expired";
+            return false;
         } catch (JwtException | IllegalArgumentException | NoSuchAlgorithmException | InvalidKeySpecException e) {
             return false;
+        } finally {
+            stop(observation, outcome);
+            commit(event, "verify", outcome, token);
         }
     }
 
     public String getUserIdFromToken(String token) throws NoSuchAlgorithmException, InvalidKeySpecException {
 
         if (token != null && !token.isEmpty()) {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getPublicKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-
-            return claims.getSubject();
+            Observation observation = start("parse");
+            JwtOperationEvent event = new JwtOperationEvent();
+            event.begin();
+            String outcome = "failure";
+            try {
+                Claims claims = verify(token);
+
+                outcome = "success";
+                return claims.getSubject();
+            } finally {
+                stop(observation, outcome);
+                commit(event, "parse", outcome, token);
+            }
         } else {
             return "";
         }
     }
 
+    // one verification yields validity, subject and remaining lifetime, for callers that need all three
+    public TokenIntrospection introspect(String token) {
+        Observation observation = start("introspect");
+        JwtOperationEvent event = new JwtOperationEvent();
+        event.begin();
+        String outcome = "invalid";
+        try {
+            Claims claims = verify(token);
+
+            Instant expiresAt = claims.getExpiration().toInstant();
+            long expiresIn = Duration.between(Instant.now(), expiresAt).toSeconds();
+            if (expiresIn <= 0) {
+                outcome = "expired";
+                return TokenIntrospection.invalid();
+            }
+
+            outcome = "success";
+            return new TokenIntrospection(true, claims.getSubject(), expiresIn, expiresAt);
+
+        } catch (ExpiredJwtException e) {
+            outcome = "expired";
+            return TokenIntrospection.invalid();
+        } catch (JwtException | IllegalArgumentException | NoSuchAlgorithmException | InvalidKeySpecException e) {
+            return TokenIntrospection.invalid();
+        } finally {
+            stop(observation, outcome);
+            commit(event, "introspect", outcome, token);
+        }
+    }
+
+    // the same signing and verification as a login and a session check, for the startup warm-up, but with no log line,
+    // timer, span or JFR event, so the warm-up subject never shows up next to real traffic
+    public String signAndVerifyUnobserved(String userId) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return verify(sign(userId)).getSubject();
+    }
+
+    private String sign(String userId) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return Jwts.builder()
+                .subject(userId)
+                .claim("roles", List.of("ROLE_USER"))
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60))
+                .signWith(createPrivateKey())
+                .compact();
+    }
+
+    private Claims verify(String token) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return Jwts.parser()
+                .verifyWith(getPublicKey())
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    // recorded as a jukebox.jwt.operations timer and, when tracing is on, a "jwt <operation>" span
+    private Observation start(String operation) {
+        return Observation.createNotStarted(OPERATIONS_METRIC, observationRegistry)
+                .contextualName("jwt " + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .start();
+    }
+
+    private void stop(Observation observation, String outcome) {
+        observation.lowCardinalityKeyValue("outcome", outcome).stop();
+    }
+
+    private void commit(JwtOperationEvent event, String operation, String outcome, String token) {
+        event.end();
+        // the header is only decoded while a recording has the event enabled
+        if (event.shouldCommit()) {
+            event.setOperation(operation);
+            event.setOutcome(outcome);
+            event.setAlgorithm(algorithmOf(token));
+            event.commit();
+        }
+    }
+
+    static String algorithmOf(String token) {
+        int headerEnd = token == null ? -1 : token.indexOf('.');
+        if (headerEnd <= 0) {
+            return null;
+        }
+
+        try {
+            String header = new String(Base64.getUrlDecoder().decode(token.substring(0, headerEnd)), StandardCharsets.UTF_8);
+            Matcher matcher = ALGORITHM_HEADER.matcher(header);
+            return matcher.find() ? matcher.group(1) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     private RSAPrivateKey createPrivateKey() throws NoSuchAlgorithmException, InvalidKeySpecException {
 
         byte[] privateKeyBytes = Base64.getDecoder().decode(securityConfig.getPrivateKey());
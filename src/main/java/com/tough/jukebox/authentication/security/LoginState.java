@@ -0,0 +1,5 @@
+package com.tough.jukebox.authentication.security;
+
+// state goes to Spotify and back in the URL; cookieValue stays in the browser and is only sent to the callback
+public record LoginState(String state, String cookieValue) {
+}
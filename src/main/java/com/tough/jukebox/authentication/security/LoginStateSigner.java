@@ -0,0 +1,105 @@
+package com.tough.jukebox.authentication.security;
+
+import com.tough.jukebox.authentication.config.SecurityConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+// OAuth state is a random nonce, so a callback only completes in the browser that started the login. The app the
+// login was sent to rides in a cookie MACed over the nonce, so a caller can neither pick the app nor replay another
+// browser's state. The key is LOGIN_STATE_SECRET, shared by every instance so each can check what any other issued
+@Component
+public class LoginStateSigner {
+
+    public static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_BYTES = 16;
+
+    // as long as the HMAC-SHA256 output
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final SecretKeySpec key;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Autowired
+    public LoginStateSigner(SecurityConfig securityConfig) {
+        String secret = securityConfig.getLoginStateSecret();
+        if (secret == null || secret.isBlank()) {
+            this.key = null;
+            return;
+        }
+
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("LOGIN_STATE_SECRET must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        this.key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+    }
+
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    public LoginState issue(String clientId) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("LOGIN_STATE_SECRET is not set");
+        }
+
+        byte[] nonceBytes = new byte[NONCE_BYTES];
+        secureRandom.nextBytes(nonceBytes);
+        String nonce = encode(nonceBytes);
+
+        String payload = nonce + "." + encode(clientId.getBytes(StandardCharsets.UTF_8)) + "." + Instant.now().plus(TIME_TO_LIVE).getEpochSecond();
+        return new LoginState(nonce, payload + "." + mac(payload));
+    }
+
+    // the client id the login was sent to, if the cookie is genuine, unexpired and was issued with this state
+    public Optional<String> verify(String state, String cookieValue) {
+        if (!isEnabled() || state == null || cookieValue == null) {
+            return Optional.empty();
+        }
+
+        String[] parts = cookieValue.split("\\.");
+        if (parts.length != 4) {
+            return Optional.empty();
+        }
+        String payload = parts[0] + "." + parts[1] + "." + parts[2];
+
+        try {
+            boolean genuine = MessageDigest.isEqual(mac(payload).getBytes(StandardCharsets.US_ASCII), parts[3].getBytes(StandardCharsets.US_ASCII));
+            boolean sameState = MessageDigest.isEqual(parts[0].getBytes(StandardCharsets.US_ASCII), state.getBytes(StandardCharsets.US_ASCII));
+            boolean unexpired = Instant.ofEpochSecond(Long.parseLong(parts[2])).isAfter(Instant.now());
+            if (!genuine || !sameState || !unexpired) {
+                return Optional.empty();
+            }
+            return Optional.of(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException exception) {
+            return Optional.empty();
+        }
+    }
+
+    private String mac(String payload) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return encode(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", exception);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,10 @@
+package com.tough.jukebox.authentication.security;
+
+import java.time.Instant;
+
+public record TokenIntrospection(boolean valid, String subject, long expiresIn, Instant expiresAt) {
+
+    public static TokenIntrospection invalid() {
+        return new TokenIntrospection(false, null, 0, null);
+    }
+}
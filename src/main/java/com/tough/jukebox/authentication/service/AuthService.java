@@ -1,56 +1,123 @@
 package com.tough.jukebox.authentication.service;
 
 import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
 import com.tough.jukebox.authentication.config.WebConfig;
+import com.tough.jukebox.authentication.diagnostics.TokenRefreshRunEvent;
+import com.tough.jukebox.authentication.exception.InvalidGrantException;
+import com.tough.jukebox.authentication.exception.InvalidLoginStateException;
 import com.tough.jukebox.authentication.exception.SpotifyAPIException;
 import com.tough.jukebox.authentication.model.SpotifyToken;
 import com.tough.jukebox.authentication.model.User;
 import com.tough.jukebox.authentication.security.JwtUtil;
+import com.tough.jukebox.authentication.security.LoginState;
+import com.tough.jukebox.authentication.security.LoginStateSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.CacheControl;
 import org.springframework.stereotype.Service;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.client.RestClientException;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class AuthService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AuthService.class);
 
+    private static final Duration REFRESH_WINDOW = Duration.ofMinutes(5);
+
     private final SpotifyConfig spotifyConfig;
     private final WebConfig webConfig;
     private final UserService userService;
     private final SpotifyAPIService spotifyAPIService;
     private final JwtUtil jwtUtil;
+    private final ClusterMembershipService clusterMembershipService;
+    private final TokenRefreshMonitor tokenRefreshMonitor;
+    private final TokenRefreshConfig tokenRefreshConfig;
+    private final UserActivityTracker userActivityTracker;
+    private final TokenRefreshCheckpoint tokenRefreshCheckpoint;
+    private final SpotifyCredentialPool spotifyCredentialPool;
+    private final TokenCatchUpQueue tokenCatchUpQueue;
+    private final UserProfileCache userProfileCache;
+    private final LoginStateSigner loginStateSigner;
 
     @Autowired
-    public AuthService(SpotifyConfig spotifyConfig, WebConfig webConfig, UserService userService, SpotifyAPIService spotifyAPIService, JwtUtil jwtUtil) {
+    public AuthService(SpotifyConfig spotifyConfig, WebConfig webConfig, UserService userService, SpotifyAPIService spotifyAPIService, JwtUtil jwtUtil, ClusterMembershipService clusterMembershipService, TokenRefreshMonitor tokenRefreshMonitor, TokenRefreshConfig tokenRefreshConfig, UserActivityTracker userActivityTracker, TokenRefreshCheckpoint tokenRefreshCheckpoint, SpotifyCredentialPool spotifyCredentialPool, TokenCatchUpQueue tokenCatchUpQueue, UserProfileCache userProfileCache, LoginStateSigner loginStateSigner) {
         this.spotifyConfig = spotifyConfig;
         this.webConfig = webConfig;
         this.userService = userService;
         this.spotifyAPIService = spotifyAPIService;
         this.jwtUtil = jwtUtil;
+        this.clusterMembershipService = clusterMembershipService;
+        this.tokenRefreshMonitor = tokenRefreshMonitor;
+        this.tokenRefreshConfig = tokenRefreshConfig;
+        this.userActivityTracker = userActivityTracker;
+        this.tokenRefreshCheckpoint = tokenRefreshCheckpoint;
+        this.spotifyCredentialPool = spotifyCredentialPool;
+        this.tokenCatchUpQueue = tokenCatchUpQueue;
+        this.userProfileCache = userProfileCache;
+        this.loginStateSigner = loginStateSigner;
+
+        // with several apps the callback can only learn which one a code belongs to from the signed login state
+        if (spotifyCredentialPool.size() > 1 && !loginStateSigner.isEnabled()) {
+            throw new IllegalStateException("LOGIN_STATE_SECRET must be set when more than one Spotify app is configured");
+        }
     }
 
+    // the front end passes state through Spotify's authorize page; the app chosen for the login goes in the
+    // loginState cookie instead, so the callback learns it from a value the caller cannot choose
     public Map<String, String> getSpotifyRedirectParams() {
+        SpotifyCredential credential = spotifyCredentialPool.forLogin();
+        if (!loginStateSigner.isEnabled()) {
+            return Map.of(
+                    "clientId", credential.clientId(),
+                    "redirectUri", spotifyConfig.getSpotifyRedirectUri()
+            );
+        }
+
+        LoginState loginState = loginStateSigner.issue(credential.clientId());
         return Map.of(
-                "clientId", spotifyConfig.getSpotifyAppClientId(),
-                "redirectUri", spotifyConfig.getSpotifyRedirectUri()
+                "clientId", credential.clientId(),
+                "redirectUri", spotifyConfig.getSpotifyRedirectUri(),
+                "state", loginState.state(),
+                "loginState", loginState.cookieValue()
         );
     }
 
-    public Map<String, String> completeAuthentication(String spotifyAuthCode) throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException {
+    public Map<String, String> completeAuthentication(String spotifyAuthCode, String state, String loginState) throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidLoginStateException {
+            SpotifyToken newSpotifyToken = spotifyAPIService.authenticate(spotifyAuthCode, verifyLoginState(state, loginState));
+            User user = spotifyAPIService.fetchUserDetails(newSpotifyToken.getAccessToken());
+
+            return completeLogin(user, newSpotifyToken);
+    }
+
+    // the client id of the app the code was issued for; checked before the code is sent to Spotify
+    public String verifyLoginState(String state, String loginState) throws InvalidLoginStateException {
+        // a front end that does not pass state on yet still logs in while there is only the one app to redeem with;
+        // a state that is present is always checked
+        if (state == null && spotifyCredentialPool.size() == 1) {
+            return spotifyCredentialPool.forClientId(null).orElseThrow().clientId();
+        }
+        return loginStateSigner.verify(state, loginState)
+                .orElseThrow(() -> new InvalidLoginStateException("OAuth state does not match this browser's login"));
+    }
+
+    // the blocking half of a login, shared with the reactive stack once the Spotify calls have completed
+    public Map<String, String> completeLogin(User user, SpotifyToken newSpotifyToken) throws NoSuchAlgorithmException, InvalidKeySpecException {
             Map<String, String> authenticationMap = new HashMap<>();
             authenticationMap.put("redirectUri", webConfig.getFrontendRedirectUri());
-            authenticationMap.put("jwt", checkAndCreateUser(
-                    spotifyAPIService.authenticate(spotifyAuthCode))
-            );
+            authenticationMap.put("jwt", checkAndCreateUser(user, newSpotifyToken));
             return authenticationMap;
     }
 
@@ -69,43 +136,233 @@ public class AuthService {
         }
     }
 
+    public LoginStatus getLoginStatus(String spotifyUserId, Instant jwtExpiresAt) {
+        return new LoginStatus(spotifyUserId, jwtExpiresAt, userService.hasValidSpotifyToken(spotifyUserId, Instant.now()));
+    }
+
+    public Optional<UserProfile> getUserProfile(String spotifyUserId) {
+        return userProfileCache.get(spotifyUserId);
+    }
+
+    // lets the reactive stack answer from the cache without hopping onto the JPA scheduler
+    public Optional<UserProfile> getCachedUserProfile(String spotifyUserId) {
+        return userProfileCache.getIfPresent(spotifyUserId);
+    }
+
+    // capped below the JWT lifetime because the Spotify token can be lost or refreshed in the meantime
+    public CacheControl loginCheckCacheControl(LoginStatus loginStatus) {
+        long remainingSeconds = Math.max(0, Duration.between(Instant.now(), loginStatus.expiresAt()).toSeconds());
+        return CacheControl.maxAge(Math.min(remainingSeconds, webConfig.getLoginCheckMaxAgeSeconds()), TimeUnit.SECONDS).cachePrivate();
+    }
+
     @Scheduled(fixedRate = 180000)  // Runs every 3 minutes
     private void checkTokenRefresh() {
+        Queue<User> pendingUsers = new ConcurrentLinkedQueue<>();
+        // once shutdown has begun no new run starts; the pending table carries the work to the next instance
+        if (!tokenRefreshCheckpoint.beginRun(pendingUsers)) {
+            return;
+        }
+        try {
+            refreshExpiringTokens(pendingUsers);
+        } finally {
+            tokenRefreshCheckpoint.endRun();
+        }
+    }
+
+    private void refreshExpiringTokens(Queue<User> pendingUsers) {
         LOGGER.info("Checking database for access tokens expiring soon");
+        Instant runStart = Instant.now();
+        TokenRefreshRunEvent runEvent = new TokenRefreshRunEvent();
+        runEvent.begin();
 
-        List<User> userList = userService.getUsersWithExpiringTokens(
-                Instant.now(),
-                Instant.now().plus(Duration.ofMinutes(5))
-        );
+        Instant now = Instant.now();
+        List<User> expiringUsers = new ArrayList<>(tokenRefreshConfig.getPolicy() == TokenRefreshConfig.RefreshPolicy.ACTIVE
+                ? userService.getActiveUsersWithExpiringTokens(now, now.plus(REFRESH_WINDOW), now.minus(tokenRefreshConfig.getActiveWindow()))
+                : userService.getUsersWithExpiringTokens(now, now.plus(REFRESH_WINDOW)));
+
+        // left by an instance that stopped mid-run; these are refreshed even if their tokens expired while it was down
+        List<String> checkpointedUserIds = tokenRefreshCheckpoint.getPendingUserIds();
+        if (!checkpointedUserIds.isEmpty()) {
+            Set<String> scheduledUserIds = new HashSet<>();
+            expiringUsers.forEach(user -> scheduledUserIds.add(user.getSpotifyUserId()));
+            userService.getUsersWithTokensExpiringBefore(checkpointedUserIds, now.plus(REFRESH_WINDOW)).stream()
+                    .filter(user -> scheduledUserIds.add(user.getSpotifyUserId()))
+                    .forEach(expiringUsers::add);
+        }
+
+        // with several replicas each user is refreshed only by the node that owns it on the hash ring
+        List<User> userList = clusterMembershipService.selectOwnedUsers(expiringUsers);
+        pendingUsers.addAll(userList);
+        releaseCheckpointedUsers(checkpointedUserIds, expiringUsers, userList);
 
-        for (User user : userList) {
+        int refreshedUsers = 0;
+        int failedRefreshes = 0;
+        User user;
+        while (!tokenRefreshCheckpoint.isStopping() && (user = pendingUsers.peek()) != null) {
             LOGGER.info("Access token expiring soon for user: {}", user.getSpotifyUserId());
-            refreshAccessToken(user);
+            if (refreshAccessToken(user)) {
+                refreshedUsers++;
+            } else {
+                failedRefreshes++;
+            }
+            pendingUsers.remove();
+        }
+        if (!pendingUsers.isEmpty()) {
+            LOGGER.info("Shutdown requested; leaving {} token refresh(es) for the next run", pendingUsers.size());
         }
+        tokenRefreshMonitor.recordRun(runStart, refreshedUsers + failedRefreshes, failedRefreshes);
+
+        runEvent.setUsersScanned(expiringUsers.size());
+        runEvent.setUsersOwned(userList.size());
+        runEvent.setUsersRefreshed(refreshedUsers);
+        runEvent.setUsersFailed(failedRefreshes);
+        runEvent.commit();
     }
 
-    private void refreshAccessToken(User user) {
+    // rows for users now queued here, or that no longer need a refresh, are done with; other owners keep theirs
+    private void releaseCheckpointedUsers(List<String> checkpointedUserIds, List<User> expiringUsers, List<User> ownedUsers) {
+        if (checkpointedUserIds.isEmpty()) {
+            return;
+        }
+        Set<String> otherOwnersUserIds = new HashSet<>();
+        expiringUsers.forEach(user -> otherOwnersUserIds.add(user.getSpotifyUserId()));
+        ownedUsers.forEach(user -> otherOwnersUserIds.remove(user.getSpotifyUserId()));
+
+        tokenRefreshCheckpoint.release(checkpointedUserIds.stream()
+                .filter(spotifyUserId -> !otherOwnersUserIds.contains(spotifyUserId))
+                .toList());
+    }
+
+    // Shares the run lock with checkTokenRefresh, so a batch never overlaps a regular run and is drained the same way on
+    // shutdown. Batches stay small to keep regular refreshes on time and Spotify's rate limit clear
+    @Scheduled(fixedDelayString = "${TOKEN_CATCH_UP_INTERVAL_MS:15000}")
+    void catchUpExpiredTokens() {
+        if (!tokenRefreshConfig.isCatchUpEnabled()) {
+            return;
+        }
+        Queue<User> pendingUsers = new ConcurrentLinkedQueue<>();
+        if (!tokenRefreshCheckpoint.beginRun(pendingUsers)) {
+            return;
+        }
         try {
-            SpotifyToken spotifyToken = spotifyAPIService.refreshAccessToken(user.getSpotifyToken().getRefreshToken());
+            List<User> expiredUsers = tokenCatchUpQueue.nextBatch(Instant.now());
+            if (!expiredUsers.isEmpty()) {
+                pendingUsers.addAll(clusterMembershipService.selectOwnedUsers(expiredUsers));
+            }
+
+            User user;
+            while (!tokenRefreshCheckpoint.isStopping() && (user = pendingUsers.peek()) != null) {
+                if (isSpotifyAppRateLimited(user)) {
+                    // picked up again by a later refill once the app has recovered
+                    LOGGER.debug("Skipping catch-up refresh for user: {}; Spotify app rate limited", user.getSpotifyUserId());
+                } else {
+                    LOGGER.info("Catch-up refresh of expired access token for user: {}", user.getSpotifyUserId());
+                    refreshAccessToken(user);
+                }
+                pendingUsers.remove();
+            }
+        } finally {
+            tokenRefreshCheckpoint.endRun();
+        }
+    }
+
+    private boolean isSpotifyAppRateLimited(User user) {
+        return spotifyCredentialPool.forClientId(user.getSpotifyToken().getClientId())
+                .map(spotifyCredentialPool::isRateLimited)
+                .orElse(false);
+    }
+
+    @Scheduled(fixedDelayString = "${USER_ACTIVITY_FLUSH_INTERVAL_MS:30000}")
+    void flushUserActivity() {
+        Map<String, Instant> lastSeenByUser = userActivityTracker.drain();
+        if (lastSeenByUser.isEmpty()) {
+            return;
+        }
+        userService.recordLastSeen(lastSeenByUser);
+
+        if (tokenRefreshConfig.getPolicy() == TokenRefreshConfig.RefreshPolicy.ACTIVE) {
+            refreshReturningUsers(lastSeenByUser.keySet());
+        }
+    }
+
+    // Idle users skipped by checkTokenRefresh get their token back on the first flush after they return. Run like a
+    // catch-up batch: under the run lock and only for owned users, so the refresh is neither repeated by another
+    // replica nor cut off by shutdown. A returning user owned elsewhere is now active, so its owner's catch-up has it
+    private void refreshReturningUsers(Collection<String> spotifyUserIds) {
+        Queue<User> pendingUsers = new ConcurrentLinkedQueue<>();
+        if (!tokenRefreshCheckpoint.beginRun(pendingUsers)) {
+            return;
+        }
+        try {
+            List<User> returningUsers = userService.getUsersWithTokensExpiringBefore(spotifyUserIds, Instant.now().plus(REFRESH_WINDOW));
+            if (!returningUsers.isEmpty()) {
+                pendingUsers.addAll(clusterMembershipService.selectOwnedUsers(returningUsers));
+            }
+
+            User user;
+            while (!tokenRefreshCheckpoint.isStopping() && (user = pendingUsers.peek()) != null) {
+                LOGGER.info("Refreshing Spotify access token for returning user: {}", user.getSpotifyUserId());
+                refreshAccessToken(user);
+                pendingUsers.remove();
+            }
+        } finally {
+            tokenRefreshCheckpoint.endRun();
+        }
+    }
+
+    private boolean refreshAccessToken(User user) {
+        Instant previousExpiry = user.getSpotifyToken().getTokenExpiry();
+        try {
+            SpotifyToken spotifyToken = spotifyAPIService.refreshAccessToken(user.getSpotifyToken().getRefreshToken(), user.getSpotifyToken().getClientId());
             userService.updateSpotifyTokens(user, spotifyToken);
-        } catch (SpotifyAPIException exception) {
-            LOGGER.error(exception.getMessage());
+            tokenRefreshMonitor.recordRefresh(previousExpiry, Instant.now(), true);
+            return true;
+        } catch (InvalidGrantException exception) {
+            // the user revoked the app or the token is dead; retrying cannot help, only a new login can
+            LOGGER.error("Spotify refresh token rejected for user: {}: {}", user.getSpotifyUserId(), exception.getMessage());
+            recordRefreshFailure(user, () -> userService.quarantineRefreshToken(user, Instant.now()));
+        } catch (SpotifyAPIException | RestClientException exception) {
+            LOGGER.error("Spotify access token refresh failed for user: {}: {}", user.getSpotifyUserId(), exception.getMessage());
+            // a 429, or an app already backing off, is not this user's fault, so only the app waits
+            if (!isSpotifyAppRateLimited(user)) {
+                recordRefreshFailure(user, () -> userService.recordRefreshFailure(user, Instant.now().plus(backoffAfter(user.getSpotifyToken().getRefreshFailures()))));
+            }
+        } catch (DataAccessException exception) {
+            LOGGER.error("Refreshed Spotify access token could not be stored for user: {}: {}", user.getSpotifyUserId(), exception.getMessage());
         }
+        // one user's failure is counted and the run moves on to the rest
+        tokenRefreshMonitor.recordRefresh(previousExpiry, Instant.now(), false);
+        return false;
+    }
+
+    // doubles with each consecutive failure, from one scheduler period up to the cap
+    private Duration backoffAfter(int previousFailures) {
+        Duration backoff = tokenRefreshConfig.getBackoffBase().multipliedBy(1L << Math.min(previousFailures, 20));
+        return backoff.compareTo(tokenRefreshConfig.getBackoffMax()) > 0 ? tokenRefreshConfig.getBackoffMax() : backoff;
     }
 
-    private String checkAndCreateUser(SpotifyToken newSpotifyToken) throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException {
+    private void recordRefreshFailure(User user, Runnable failureUpdate) {
+        try {
+            failureUpdate.run();
+        } catch (DataAccessException exception) {
+            LOGGER.error("Unable to record the refresh failure for user: {}: {}", user.getSpotifyUserId(), exception.getMessage());
+        }
+    }
 
-        User user = spotifyAPIService.fetchUserDetails(newSpotifyToken.getAccessToken());
+    private String checkAndCreateUser(User user, SpotifyToken newSpotifyToken) throws NoSuchAlgorithmException, InvalidKeySpecException {
 
         // check if user exists in database (i.e. has previously logged in) and update
         userService.getUserBySpotifyUserId(user.getSpotifyUserId()).ifPresentOrElse(
                 userEntity -> {
+                    userService.updateUserProfile(userEntity, user);
                     userService.updateSpotifyTokens(userEntity, newSpotifyToken);
                     LOGGER.info("New access tokens created for existing user: {}.", userEntity.getSpotifyUserId());
                 }, () -> {
                     userService.updateSpotifyTokens(user, newSpotifyToken);
                     LOGGER.info("New user profile (and access tokens) created for user: {}.", user.getSpotifyUserId());
                 });
+        userProfileCache.evict(user.getSpotifyUserId());
+        userActivityTracker.recordActivity(user.getSpotifyUserId());
         return jwtUtil.createToken(user.getSpotifyUserId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.ClusterConfig;
+import com.tough.jukebox.authentication.model.SchedulerNode;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.repository.SchedulerNodeRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+@Service
+public class ClusterMembershipService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterMembershipService.class);
+
+    private static final int MISSED_HEARTBEATS_BEFORE_EXPIRY = 3;
+
+    private final SchedulerNodeRepository schedulerNodeRepository;
+    private final String nodeId;
+    private final Duration nodeExpiry;
+    private final int virtualNodes;
+
+    private volatile ConsistentHashRing ring;
+
+    @Autowired
+    public ClusterMembershipService(SchedulerNodeRepository schedulerNodeRepository, ClusterConfig clusterConfig, MeterRegistry meterRegistry) {
+        this.schedulerNodeRepository = schedulerNodeRepository;
+        // without a configured id every process gets a fresh one, so a restart never inherits a stale heartbeat row
+        this.nodeId = clusterConfig.getNodeId() == null || clusterConfig.getNodeId().isBlank()
+                ? UUID.randomUUID().toString()
+                : clusterConfig.getNodeId();
+        this.nodeExpiry = Duration.ofMillis(clusterConfig.getHeartbeatIntervalMillis() * MISSED_HEARTBEATS_BEFORE_EXPIRY);
+        this.virtualNodes = clusterConfig.getVirtualNodes();
+        this.ring = new ConsistentHashRing(List.of(nodeId), virtualNodes);
+
+        Gauge.builder("jukebox.cluster.nodes", this, service -> service.ring.getNodeIds().size())
+                .description("Live instances sharing the token refresh work, as of the last refresh run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedRateString = "${CLUSTER_HEARTBEAT_INTERVAL_MS:15000}")
+    public void heartbeat() {
+        Instant now = Instant.now();
+        schedulerNodeRepository.save(new SchedulerNode(nodeId, now));
+
+        // rows this old belong to instances that died without deregistering
+        int removedNodes = schedulerNodeRepository.deleteExpiredNodes(now.minus(nodeExpiry.multipliedBy(2)));
+        if (removedNodes > 0) {
+            LOGGER.info("Removed {} expired scheduler node(s)", removedNodes);
+        }
+    }
+
+    public List<User> selectOwnedUsers(List<User> users) {
+        ConsistentHashRing currentRing = refreshRing();
+
+        List<User> ownedUsers = users.stream()
+                .filter(user -> nodeId.equals(currentRing.ownerOf(user.getSpotifyUserId())))
+                .toList();
+
+        LOGGER.info("Node {} owns {} of {} user(s) due for refresh across {} node(s)", nodeId, ownedUsers.size(), users.size(), currentRing.getNodeIds().size());
+        return ownedUsers;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PreDestroy
+    public void leave() {
+        // the remaining nodes rebalance on their next refresh run instead of waiting for this row to expire
+        try {
+            schedulerNodeRepository.deleteById(nodeId);
+            LOGGER.info("Scheduler node {} deregistered", nodeId);
+        } catch (DataAccessException exception) {
+            LOGGER.warn("Scheduler node {} could not deregister: {}", nodeId, exception.getMessage());
+        }
+    }
+
+    private ConsistentHashRing refreshRing() {
+        Set<String> liveNodeIds = new TreeSet<>(schedulerNodeRepository.findLiveNodeIds(Instant.now().minus(nodeExpiry)));
+        // this node is always a member, even before its first heartbeat has been written
+        liveNodeIds.add(nodeId);
+
+        if (!liveNodeIds.equals(new TreeSet<>(ring.getNodeIds()))) {
+            LOGGER.info("Token refresh ownership rebalanced across {} node(s): {}", liveNodeIds.size(), liveNodeIds);
+            ring = new ConsistentHashRing(liveNodeIds, virtualNodes);
+        }
+        return ring;
+    }
+}
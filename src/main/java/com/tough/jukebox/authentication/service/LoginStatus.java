@@ -0,0 +1,15 @@
+package com.tough.jukebox.authentication.service;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+public record LoginStatus(String userId, Instant expiresAt, boolean spotifyTokenHeld) {
+
+    // changes on re-login (new expiry) or when the Spotify token is lost or restored
+    public String eTag() {
+        String state = userId + "|" + expiresAt.getEpochSecond() + "|" + spotifyTokenHeld;
+        return "\"" + DigestUtils.md5DigestAsHex(state.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
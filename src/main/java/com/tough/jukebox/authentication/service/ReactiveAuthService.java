@@ -0,0 +1,63 @@
+package com.tough.jukebox.authentication.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthService {
+
+    private final AuthService authService;
+    private final ReactiveSpotifyAPIService reactiveSpotifyAPIService;
+    private final Scheduler jpaScheduler;
+
+    @Autowired
+    public ReactiveAuthService(AuthService authService, ReactiveSpotifyAPIService reactiveSpotifyAPIService, @Qualifier("jpaScheduler") Scheduler jpaScheduler) {
+        this.authService = authService;
+        this.reactiveSpotifyAPIService = reactiveSpotifyAPIService;
+        this.jpaScheduler = jpaScheduler;
+    }
+
+    public Map<String, String> getSpotifyRedirectParams() {
+        return authService.getSpotifyRedirectParams();
+    }
+
+    // Spotify calls stay on the event loop; only the database write and JWT signing hop to the bounded scheduler
+    public Mono<Map<String, String>> completeAuthentication(String spotifyAuthCode, String state, String loginState) {
+        return Mono.fromCallable(() -> authService.verifyLoginState(state, loginState))
+                .flatMap(clientId -> reactiveSpotifyAPIService.authenticate(spotifyAuthCode, clientId))
+                .flatMap(newSpotifyToken -> reactiveSpotifyAPIService.fetchUserDetails(newSpotifyToken.getAccessToken())
+                        .flatMap(user -> Mono.fromCallable(() -> authService.completeLogin(user, newSpotifyToken))
+                                .subscribeOn(jpaScheduler)));
+    }
+
+    public Mono<LoginStatus> getLoginStatus(String spotifyUserId, Instant jwtExpiresAt) {
+        return Mono.fromCallable(() -> authService.getLoginStatus(spotifyUserId, jwtExpiresAt))
+                .subscribeOn(jpaScheduler);
+    }
+
+    // a cache hit is answered on the calling thread; only a miss goes to the database
+    public Mono<UserProfile> getUserProfile(String spotifyUserId) {
+        return Mono.justOrEmpty(authService.getCachedUserProfile(spotifyUserId))
+                .switchIfEmpty(Mono.fromCallable(() -> authService.getUserProfile(spotifyUserId))
+                        .subscribeOn(jpaScheduler)
+                        .flatMap(Mono::justOrEmpty));
+    }
+
+    public CacheControl loginCheckCacheControl(LoginStatus loginStatus) {
+        return authService.loginCheckCacheControl(loginStatus);
+    }
+
+    public Mono<Boolean> logOut(String jwt) {
+        return Mono.fromCallable(() -> authService.logOut(jwt))
+                .subscribeOn(jpaScheduler);
+    }
+}
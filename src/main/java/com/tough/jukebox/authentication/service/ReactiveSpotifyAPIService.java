@@ -0,0 +1,111 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import com.tough.jukebox.authentication.exception.InvalidGrantException;
+import com.tough.jukebox.authentication.exception.SpotifyAPIException;
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import com.tough.jukebox.authentication.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSpotifyAPIService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveSpotifyAPIService.class);
+
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE = new ParameterizedTypeReference<>() {};
+
+    private final WebClient webClient;
+    private final SpotifyConfig spotifyConfig;
+    private final SpotifyCredentialPool spotifyCredentialPool;
+
+    @Autowired
+    public ReactiveSpotifyAPIService(WebClient.Builder webClientBuilder, SpotifyConfig spotifyConfig, SpotifyCredentialPool spotifyCredentialPool) {
+        this.webClient = webClientBuilder.build();
+        this.spotifyConfig = spotifyConfig;
+        this.spotifyCredentialPool = spotifyCredentialPool;
+    }
+
+    public Mono<SpotifyToken> authenticate(String authCode, String clientId) {
+        return requestAccessToken(SpotifyAPIService.authorizationCodeRequestBody(authCode, spotifyConfig.getSpotifyRedirectUri()), clientId);
+    }
+
+    public Mono<SpotifyToken> refreshAccessToken(String refreshToken, String clientId) {
+        return requestAccessToken(SpotifyAPIService.refreshTokenRequestBody(refreshToken), clientId);
+    }
+
+    public Mono<User> fetchUserDetails(String accessToken) {
+        return webClient.get()
+                .uri(spotifyConfig.getSpotifyCurrentUserUri())
+                .headers(headers -> headers.setBearerAuth(accessToken))
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response -> response.releaseBody()
+                        .then(Mono.error(new SpotifyAPIException("No User returned from Spotify"))))
+                .bodyToMono(RESPONSE_TYPE)
+                .switchIfEmpty(Mono.error(() -> new SpotifyAPIException("No User returned from Spotify")))
+                .map(SpotifyAPIService::toUser)
+                .doOnNext(user -> LOGGER.info("User returned from Spotify: {}", user.getSpotifyUserId()));
+    }
+
+    // the WebClient has its own connection pool, separate from the RestTemplate's. Both calls are subscribed on the
+    // caller's thread, where the warm-up's instrumentation suppression is set
+    public Mono<Void> warmUpConnection() {
+        return Mono.when(
+                webClient.post()
+                        .uri(spotifyConfig.getSpotifyTokenUri())
+                        .exchangeToMono(response -> response.releaseBody()),
+                webClient.get()
+                        .uri(spotifyConfig.getSpotifyCurrentUserUri())
+                        .exchangeToMono(response -> response.releaseBody()));
+    }
+
+    private Mono<SpotifyToken> requestAccessToken(MultiValueMap<String, String> requestBodyMap, String clientId) {
+        SpotifyCredential credential = spotifyCredentialPool.forClientId(clientId).orElse(null);
+        if (credential == null) {
+            return Mono.error(new SpotifyAPIException("Spotify app is not configured: " + clientId));
+        }
+        if (spotifyCredentialPool.isRateLimited(credential)) {
+            return Mono.error(new SpotifyAPIException("Spotify app " + credential.clientId() + " is rate limited"));
+        }
+
+        return webClient.post()
+                .uri(spotifyConfig.getSpotifyTokenUri())
+                .headers(headers -> headers.setBasicAuth(SpotifyAPIService.clientCredentials(credential)))
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData(requestBodyMap))
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response -> {
+                    if (response.statusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+                        spotifyCredentialPool.recordRateLimit(credential, response.headers().asHttpHeaders());
+                    }
+                    return response.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .flatMap(responseBody -> Mono.error(SpotifyAPIService.isInvalidGrant(response.statusCode(), responseBody)
+                                    ? new InvalidGrantException("Spotify rejected the grant: " + responseBody)
+                                    : new SpotifyAPIException("Spotify token could not be retrieved from the Spotify API")));
+                })
+                .bodyToMono(RESPONSE_TYPE)
+                .switchIfEmpty(Mono.error(() -> new SpotifyAPIException("Spotify token could not be retrieved from the Spotify API")))
+                .map(responseBody -> {
+                    SpotifyToken spotifyToken = SpotifyAPIService.toSpotifyToken(responseBody);
+                    spotifyToken.setClientId(credential.clientId());
+                    return spotifyToken;
+                });
+    }
+}
@@ -0,0 +1,141 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.ShardRoutingDataSource;
+import com.tough.jukebox.authentication.config.ShardingConfig;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// A user's rows live on the shard picked by a hash of their Spotify id. Work is bound to one shard for its whole
+// transaction; scans that need every user run on all shards at once, each on its own connection
+@Service
+public class ShardRouter {
+
+    private final int shardCount;
+    private final TransactionTemplate transactionTemplate;
+    // platform threads: the SQLite driver holds monitors during native calls, which would pin virtual threads
+    private final ExecutorService fanOutExecutor;
+
+    @Autowired
+    public ShardRouter(ShardingConfig shardingConfig, PlatformTransactionManager transactionManager) {
+        this.shardCount = shardingConfig.getShardCount();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.fanOutExecutor = shardCount == 1 ? null : Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // MD5 for its spread, as in ConsistentHashRing; the reshard tool places rows with the same function
+    public static int shardOf(String spotifyUserId, int shardCount) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(spotifyUserId.getBytes(StandardCharsets.UTF_8));
+            return Math.floorMod(ByteBuffer.wrap(digest).getLong(), shardCount);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardOf(String spotifyUserId) {
+        return shardCount == 1 ? 0 : shardOf(spotifyUserId, shardCount);
+    }
+
+    public <T> T forUser(String spotifyUserId, Supplier<T> work) {
+        return onShard(shardOf(spotifyUserId), work);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> work) {
+        Integer previousShard = ShardRoutingDataSource.getCurrentShard();
+        // a transaction keeps the connection it began with, so switching inside one would silently use the wrong file
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !Objects.equals(previousShard == null ? 0 : previousShard, shard)) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard " + previousShard);
+        }
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previousShard);
+        }
+    }
+
+    public void inTransaction(int shard, Runnable work) {
+        onShard(shard, () -> {
+            transactionTemplate.executeWithoutResult(status -> work.run());
+            return null;
+        });
+    }
+
+    // results come back in shard order
+    public <T> List<T> onEachShard(IntFunction<T> work) {
+        if (shardCount == 1) {
+            return Collections.singletonList(onShard(0, () -> work.apply(0)));
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            int targetShard = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> onShard(targetShard, () -> work.apply(targetShard)), fanOutExecutor));
+        }
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    public <T> List<T> flatMapEachShard(IntFunction<List<T>> work) {
+        return onEachShard(work).stream().flatMap(List::stream).toList();
+    }
+
+    public long sumEachShard(IntFunction<Long> work) {
+        return onEachShard(work).stream().mapToLong(Long::longValue).sum();
+    }
+
+    public <K> Map<Integer, List<K>> groupByShard(Collection<K> keys, Function<K, String> spotifyUserIdOf) {
+        Map<Integer, List<K>> keysByShard = new TreeMap<>();
+        for (K key : keys) {
+            keysByShard.computeIfAbsent(shardOf(spotifyUserIdOf.apply(key)), shard -> new ArrayList<>()).add(key);
+        }
+        return keysByShard;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdown();
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package com.tough.jukebox.authentication.service;
 
 import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import com.tough.jukebox.authentication.exception.InvalidGrantException;
 import com.tough.jukebox.authentication.exception.SpotifyAPIException;
 import com.tough.jukebox.authentication.model.SpotifyToken;
 import com.tough.jukebox.authentication.model.User;
+import io.micrometer.core.instrument.binder.http.Outcome;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,12 +17,15 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Instant;
 import java.util.Base64;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Service
 public class SpotifyAPIService {
@@ -32,22 +40,27 @@ public class SpotifyAPIService {
     private static final String REFRESH_TOKEN_LABEL = "refresh_token";
     private static final String SPOTIFY_RESPONSE_TYPE_CODE = "code";
 
+    private static final String REQUESTS_METRIC = "jukebox.spotify.requests";
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE = new ParameterizedTypeReference<>() {};
+    private static final Pattern INVALID_GRANT = Pattern.compile("\"error\"\\s*:\\s*\"invalid_grant\"");
+
     private final RestTemplate restTemplate;
     private final SpotifyConfig spotifyConfig;
+    private final SpotifyCredentialPool spotifyCredentialPool;
+    private final ObservationRegistry observationRegistry;
 
 
     @Autowired
-    public SpotifyAPIService(RestTemplate restTemplate, SpotifyConfig spotifyConfig) {
+    public SpotifyAPIService(RestTemplate restTemplate, SpotifyConfig spotifyConfig, SpotifyCredentialPool spotifyCredentialPool, ObservationRegistry observationRegistry) {
         this.restTemplate = restTemplate;
         this.spotifyConfig = spotifyConfig;
+        this.spotifyCredentialPool = spotifyCredentialPool;
+        this.observationRegistry = observationRegistry;
     }
 
-    public SpotifyToken refreshAccessToken(String refreshToken) throws SpotifyAPIException {
-        MultiValueMap<String, String> requestBodyMap = new LinkedMultiValueMap<>();
-        requestBodyMap.add(GRANT_TYPE_LABEL, REFRESH_TOKEN_LABEL);
-        requestBodyMap.add(REFRESH_TOKEN_LABEL, refreshToken);
-
-        return requestAccessToken(requestBodyMap);
+    // clientId is the Spotify app recorded with the token; a refresh token is only accepted by the app that issued it
+    public SpotifyToken refreshAccessToken(String refreshToken, String clientId) throws SpotifyAPIException {
+        return requestAccessToken("refresh", refreshTokenRequestBody(refreshToken), credentialFor(clientId));
     }
 
     public User fetchUserDetails(String accessToken) throws SpotifyAPIException {
@@ -57,12 +70,7 @@ public class SpotifyAPIService {
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<String> request = new HttpEntity<>(headers);
 
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                spotifyConfig.getSpotifyCurrentUserUri(),
-                HttpMethod.GET,
-                request,
-                new ParameterizedTypeReference<>() {}
-        );
+        ResponseEntity<Map<String, Object>> response = exchange("current_user", spotifyConfig.getSpotifyCurrentUserUri(), HttpMethod.GET, request);
 
         User user = getUserFromSpotifyResponse(response);
         LOGGER.info("User returned from Spotify: {}", user.getSpotifyUserId());
@@ -74,8 +82,10 @@ public class SpotifyAPIService {
             throw new SpotifyAPIException("No User returned from Spotify");
         }
 
-        Map<String, Object> responseBody = Objects.requireNonNull(response.getBody(), "Response body is unexpectedly null");
+        return toUser(Objects.requireNonNull(response.getBody(), "Response body is unexpectedly null"));
+    }
 
+    static User toUser(Map<String, Object> responseBody) {
         String spotifyUserId = (String) responseBody.get("id");
         String email = (String) responseBody.get("email");
         String displayName = (String) responseBody.get("display_name");
@@ -87,44 +97,130 @@ public class SpotifyAPIService {
         return user;
     }
 
-    public SpotifyToken authenticate(String authCode) throws SpotifyAPIException {
-        MultiValueMap<String, String> requestBodyMap = new LinkedMultiValueMap<>();
-        requestBodyMap.add(REDIRECT_URI_LABEL, spotifyConfig.getSpotifyRedirectUri());
-        requestBodyMap.add(GRANT_TYPE_LABEL, AUTHORIZATION_CODE_LABEL);
-        requestBodyMap.add(SPOTIFY_RESPONSE_TYPE_CODE, authCode);
+    // Spotify answers an unauthenticated call with a 4xx, which is enough to resolve the host and leave a pooled TLS
+    // connection. A login reaches both the accounts host for the token and the API host for the profile
+    public void warmUpConnection() {
+        warmUpConnection(spotifyConfig.getSpotifyTokenUri(), HttpMethod.POST);
+        warmUpConnection(spotifyConfig.getSpotifyCurrentUserUri(), HttpMethod.GET);
+    }
 
-        return requestAccessToken(requestBodyMap);
+    private void warmUpConnection(String uri, HttpMethod method) {
+        try {
+            exchange("warm_up", uri, method, HttpEntity.EMPTY);
+        } catch (RestClientResponseException exception) {
+            LOGGER.debug("Spotify warm-up call to {} answered with status {}", uri, exception.getStatusCode().value());
+        }
     }
 
-    private SpotifyToken requestAccessToken(MultiValueMap<String, String> requestBodyMap) throws SpotifyAPIException {
+    // clientId is the app the login was sent to, carried back in the signed login state; codes are bound to it
+    public SpotifyToken authenticate(String authCode, String clientId) throws SpotifyAPIException {
+        return requestAccessToken("authorize", authorizationCodeRequestBody(authCode, spotifyConfig.getSpotifyRedirectUri()), credentialFor(clientId));
+    }
+
+    private SpotifyCredential credentialFor(String clientId) throws SpotifyAPIException {
+        return spotifyCredentialPool.forClientId(clientId)
+                .orElseThrow(() -> new SpotifyAPIException("Spotify app is not configured: " + clientId));
+    }
+
+    private SpotifyToken requestAccessToken(String operation, MultiValueMap<String, String> requestBodyMap, SpotifyCredential credential) throws SpotifyAPIException {
+        // skip the call while the app is backing off; a request now would only extend the limit
+        Optional<Instant> rateLimitedUntil = spotifyCredentialPool.getRateLimitedUntil(credential);
+        if (rateLimitedUntil.isPresent()) {
+            throw new SpotifyAPIException("Spotify app " + credential.clientId() + " is rate limited until " + rateLimitedUntil.get());
+        }
+
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        headers.setBasicAuth(Base64.getEncoder().encodeToString((spotifyConfig.getSpotifyAppClientId() + ":" + spotifyConfig.getSpotifyAppClientSecret()).getBytes()));
+        headers.setBasicAuth(clientCredentials(credential));
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(requestBodyMap, headers);
 
-        ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                spotifyConfig.getSpotifyTokenUri(),
-                HttpMethod.POST,
-                request,
-                new ParameterizedTypeReference<>() {}
-        );
-
-        SpotifyToken spotifyToken = new SpotifyToken();
+        ResponseEntity<Map<String, Object>> response;
+        try {
+            response = exchange(operation, spotifyConfig.getSpotifyTokenUri(), HttpMethod.POST, request);
+        } catch (RestClientResponseException exception) {
+            if (exception.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+                spotifyCredentialPool.recordRateLimit(credential, exception.getResponseHeaders());
+            }
+            if (isInvalidGrant(exception.getStatusCode(), exception.getResponseBodyAsString())) {
+                throw new InvalidGrantException("Spotify rejected the grant: " + exception.getResponseBodyAsString());
+            }
+            throw exception;
+        }
 
         if (response.getStatusCode().is2xxSuccessful()) {
-
-            Map<String, Object> responseBody = Objects.requireNonNull(response.getBody(), "Response body is unexpectedly null");
-
-            String refreshToken = (String) responseBody.get(REFRESH_TOKEN_LABEL);
-            spotifyToken.setRefreshToken((refreshToken == null ? "" : refreshToken));
-            spotifyToken.setAccessToken((String) responseBody.get(ACCESS_TOKEN_LABEL));
-            spotifyToken.setTokenExpiry(
-                    Instant.now().plusSeconds( (int) responseBody.get(EXPIRES_IN_LABEL))
-            );
+            SpotifyToken spotifyToken = toSpotifyToken(Objects.requireNonNull(response.getBody(), "Response body is unexpectedly null"));
+            spotifyToken.setClientId(credential.clientId());
+            return spotifyToken;
         } else {
             throw new SpotifyAPIException("Spotify token could not be retrieved from the Spotify API");
         }
+    }
+
+    // http.client.requests only sees the URI; this observation names the OAuth step, keeps error statuses the
+    // default error handler turns into exceptions, and is the parent span of the traced HTTP call
+    private ResponseEntity<Map<String, Object>> exchange(String operation, String uri, HttpMethod method, HttpEntity<?> request) {
+        Observation observation = Observation.createNotStarted(REQUESTS_METRIC, observationRegistry)
+                .contextualName("spotify " + operation)
+                .lowCardinalityKeyValue("operation", operation)
+                .start();
+        String status = "IO_ERROR";
+        String outcome = Outcome.UNKNOWN.name();
+        try (Observation.Scope scope = observation.openScope()) {
+            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(uri, method, request, RESPONSE_TYPE);
+            status = String.valueOf(response.getStatusCode().value());
+            outcome = Outcome.forStatus(response.getStatusCode().value()).name();
+            return response;
+        } catch (RestClientResponseException exception) {
+            status = String.valueOf(exception.getStatusCode().value());
+            outcome = Outcome.forStatus(exception.getStatusCode().value()).name();
+            observation.error(exception);
+            throw exception;
+        } catch (RuntimeException exception) {
+            observation.error(exception);
+            throw exception;
+        } finally {
+            observation.lowCardinalityKeyValue("status", status)
+                    .lowCardinalityKeyValue("outcome", outcome)
+                    .stop();
+        }
+    }
+
+    // RFC 6749 5.2: a revoked or expired refresh token, or a spent authorisation code, is a 400 with error invalid_grant
+    static boolean isInvalidGrant(HttpStatusCode statusCode, String responseBody) {
+        return statusCode.isSameCodeAs(HttpStatus.BAD_REQUEST)
+                && responseBody != null
+                && INVALID_GRANT.matcher(responseBody).find();
+    }
+
+    static String clientCredentials(SpotifyCredential credential) {
+        return Base64.getEncoder().encodeToString((credential.clientId() + ":" + credential.clientSecret()).getBytes());
+    }
+
+    static MultiValueMap<String, String> authorizationCodeRequestBody(String authCode, String redirectUri) {
+        MultiValueMap<String, String> requestBodyMap = new LinkedMultiValueMap<>();
+        requestBodyMap.add(REDIRECT_URI_LABEL, redirectUri);
+        requestBodyMap.add(GRANT_TYPE_LABEL, AUTHORIZATION_CODE_LABEL);
+        requestBodyMap.add(SPOTIFY_RESPONSE_TYPE_CODE, authCode);
+        return requestBodyMap;
+    }
+
+    static MultiValueMap<String, String> refreshTokenRequestBody(String refreshToken) {
+        MultiValueMap<String, String> requestBodyMap = new LinkedMultiValueMap<>();
+        requestBodyMap.add(GRANT_TYPE_LABEL, REFRESH_TOKEN_LABEL);
+        requestBodyMap.add(REFRESH_TOKEN_LABEL, refreshToken);
+        return requestBodyMap;
+    }
+
+    static SpotifyToken toSpotifyToken(Map<String, Object> responseBody) {
+        SpotifyToken spotifyToken = new SpotifyToken();
+
+        String refreshToken = (String) responseBody.get(REFRESH_TOKEN_LABEL);
+        spotifyToken.setRefreshToken((refreshToken == null ? "" : refreshToken));
+        spotifyToken.setAccessToken((String) responseBody.get(ACCESS_TOKEN_LABEL));
+        spotifyToken.setTokenExpiry(
+                Instant.now().plusSeconds( (int) responseBody.get(EXPIRES_IN_LABEL))
+        );
         return spotifyToken;
     }
 }
@@ -0,0 +1,122 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Spotify rate-limits each app separately. A login can use any app, but the tokens it gets are bound to that app,
+// so later refreshes stay on the app recorded with the token and only logins are spread over the pool
+@Service
+public class SpotifyCredentialPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpotifyCredentialPool.class);
+
+    // used when a 429 carries no usable Retry-After
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(30);
+
+    private final List<SpotifyCredential> credentials;
+    private final Map<String, SpotifyCredential> credentialsByClientId = new LinkedHashMap<>();
+    private final Map<String, Instant> rateLimitedUntil = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rateLimitCounters = new LinkedHashMap<>();
+    private final AtomicInteger nextLogin = new AtomicInteger();
+
+    @Autowired
+    public SpotifyCredentialPool(SpotifyConfig spotifyConfig, MeterRegistry meterRegistry) {
+        this.credentials = List.copyOf(spotifyConfig.getSpotifyAppCredentials());
+
+        for (SpotifyCredential credential : credentials) {
+            if (credentialsByClientId.putIfAbsent(credential.clientId(), credential) != null) {
+                throw new IllegalStateException("Spotify app configured twice: " + credential.clientId());
+            }
+            rateLimitCounters.put(credential.clientId(), Counter.builder("jukebox.spotify.rate_limited")
+                    .description("429 responses from Spotify, per Spotify app")
+                    .tag("client_id", credential.clientId())
+                    .register(meterRegistry));
+            Gauge.builder("jukebox.spotify.rate_limited.active", this, pool -> pool.isRateLimited(credential) ? 1 : 0)
+                    .description("1 while the Spotify app is backing off after a 429")
+                    .tag("client_id", credential.clientId())
+                    .register(meterRegistry);
+        }
+        LOGGER.info("Spotify app pool has {} app(s)", credentials.size());
+    }
+
+    // round robin over the apps that are not backing off; if all are, the one that recovers first
+    public SpotifyCredential forLogin() {
+        int start = Math.floorMod(nextLogin.getAndIncrement(), credentials.size());
+        for (int i = 0; i < credentials.size(); i++) {
+            SpotifyCredential credential = credentials.get((start + i) % credentials.size());
+            if (!isRateLimited(credential)) {
+                return credential;
+            }
+        }
+        return credentials.stream()
+                .min(Comparator.comparing(credential -> rateLimitedUntil.getOrDefault(credential.clientId(), Instant.MIN)))
+                .orElseThrow();
+    }
+
+    // tokens stored before the pool existed carry no client id and were all issued to the first app
+    public Optional<SpotifyCredential> forClientId(String clientId) {
+        if (clientId == null || clientId.isEmpty()) {
+            return Optional.of(credentials.get(0));
+        }
+        return Optional.ofNullable(credentialsByClientId.get(clientId));
+    }
+
+    public boolean isRateLimited(SpotifyCredential credential) {
+        Instant until = rateLimitedUntil.get(credential.clientId());
+        return until != null && until.isAfter(Instant.now());
+    }
+
+    public Optional<Instant> getRateLimitedUntil(SpotifyCredential credential) {
+        return Optional.ofNullable(rateLimitedUntil.get(credential.clientId())).filter(until -> until.isAfter(Instant.now()));
+    }
+
+    public void recordRateLimit(SpotifyCredential credential, HttpHeaders responseHeaders) {
+        Duration retryAfter = retryAfter(responseHeaders);
+        Instant until = Instant.now().plus(retryAfter);
+        rateLimitedUntil.merge(credential.clientId(), until, (current, next) -> next.isAfter(current) ? next : current);
+
+        Counter counter = rateLimitCounters.get(credential.clientId());
+        if (counter != null) {
+            counter.increment();
+        }
+        LOGGER.warn("Spotify app {} rate limited; backing off for {} s", credential.clientId(), retryAfter.toSeconds());
+    }
+
+    public int size() {
+        return credentials.size();
+    }
+
+    // Spotify sends Retry-After in seconds
+    private static Duration retryAfter(HttpHeaders responseHeaders) {
+        String value = responseHeaders == null ? null : responseHeaders.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value != null) {
+            try {
+                long seconds = Long.parseLong(value.trim());
+                if (seconds > 0) {
+                    return Duration.ofSeconds(seconds);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring Retry-After value: {}", value);
+            }
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+}
@@ -0,0 +1,120 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.diagnostics.InstrumentationSuppression;
+import com.tough.jukebox.authentication.security.JwtUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Boot only moves readiness to ACCEPTING_TRAFFIC once every ApplicationRunner has returned, so the readiness probe
+// keeps the instance out of the load balancer until the JWT, database and Spotify paths have been exercised
+@Component
+public class StartupWarmUp implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupWarmUp.class);
+
+    private static final String WARM_UP_METRIC = "jukebox.startup.warmup";
+    // never a real Spotify id, so the database step only ever reads
+    private static final String WARM_UP_USER_ID = "jukebox-warm-up";
+    private static final Duration SPOTIFY_TIMEOUT = Duration.ofSeconds(10);
+
+    private final JwtUtil jwtUtil;
+    private final UserService userService;
+    private final SpotifyAPIService spotifyAPIService;
+    private final ObjectProvider<ReactiveSpotifyAPIService> reactiveSpotifyAPIService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int iterations;
+
+    @Autowired
+    public StartupWarmUp(JwtUtil jwtUtil,
+                         UserService userService,
+                         SpotifyAPIService spotifyAPIService,
+                         ObjectProvider<ReactiveSpotifyAPIService> reactiveSpotifyAPIService,
+                         MeterRegistry meterRegistry,
+                         @Value("${WARM_UP_ENABLED:true}") boolean enabled,
+                         @Value("${WARM_UP_ITERATIONS:300}") int iterations) {
+        this.jwtUtil = jwtUtil;
+        this.userService = userService;
+        this.spotifyAPIService = spotifyAPIService;
+        this.reactiveSpotifyAPIService = reactiveSpotifyAPIService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        step("jwt", this::warmUpJwt);
+        step("database", this::warmUpDatabase);
+        step("spotify", this::warmUpSpotify);
+        Duration elapsed = record("total", start);
+
+        LOGGER.info("Warm-up finished in {} ms ({} iterations); accepting traffic", elapsed.toMillis(), iterations);
+    }
+
+    // signing and verifying are the RSA paths every login and authenticated request takes; run below the
+    // instrumentation so the warm-up adds nothing to the JWT logs, timers, spans or JFR events
+    private void warmUpJwt() throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            jwtUtil.signAndVerifyUnobserved(WARM_UP_USER_ID);
+        }
+    }
+
+    // compiles the login's lookup and the session check through Hibernate and prepares their statements
+    private void warmUpDatabase() {
+        Instant now = Instant.now();
+        for (int i = 0; i < iterations; i++) {
+            userService.getUserBySpotifyUserId(WARM_UP_USER_ID);
+            userService.hasValidSpotifyToken(WARM_UP_USER_ID, now);
+        }
+    }
+
+    private void warmUpSpotify() {
+        spotifyAPIService.warmUpConnection();
+        reactiveSpotifyAPIService.ifAvailable(service -> service.warmUpConnection().block(SPOTIFY_TIMEOUT));
+    }
+
+    // a failed step is logged and skipped; the instance still becomes ready, just less warm. Steps run suppressed,
+    // so their database and Spotify calls add nothing to the request metrics, spans or JFR events
+    private void step(String name, WarmUpStep warmUpStep) {
+        long start = System.nanoTime();
+        try {
+            InstrumentationSuppression.suppress(warmUpStep::run);
+            LOGGER.info("Warm-up step {} took {} ms", name, record(name, start).toMillis());
+        } catch (Exception exception) {
+            record(name, start);
+            LOGGER.warn("Warm-up step {} failed: {}", name, exception.getMessage());
+        }
+    }
+
+    private Duration record(String name, long startNanos) {
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        Timer.builder(WARM_UP_METRIC)
+                .description("Time spent warming up before the instance reports ready")
+                .tag("step", name)
+                .register(meterRegistry)
+                .record(elapsed);
+        return elapsed;
+    }
+
+    @FunctionalInterface
+    private interface WarmUpStep {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,84 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
+import com.tough.jukebox.authentication.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Tokens that expired while no instance refreshed them fall outside the scheduler's five-minute window for good.
+// This queue holds them, most recently active user first, and hands them out a small batch at a time
+@Service
+public class TokenCatchUpQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenCatchUpQueue.class);
+
+    private final UserService userService;
+    private final TokenRefreshConfig tokenRefreshConfig;
+
+    private final Deque<String> queuedUserIds = new ArrayDeque<>();
+    private Instant lastRefill = Instant.MIN;
+
+    @Autowired
+    public TokenCatchUpQueue(UserService userService, TokenRefreshConfig tokenRefreshConfig, MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.tokenRefreshConfig = tokenRefreshConfig;
+
+        Gauge.builder("jukebox.token.refresh.catchup.queued", this, TokenCatchUpQueue::size)
+                .description("Expired Spotify tokens waiting for a catch-up refresh on this instance")
+                .register(meterRegistry);
+    }
+
+    public synchronized List<User> nextBatch(Instant now) {
+        // refilled at most once per interval, so tokens that keep failing are not retried on every tick
+        if (queuedUserIds.isEmpty() && !lastRefill.isAfter(now.minus(tokenRefreshConfig.getCatchUpRefillInterval()))) {
+            refill(now);
+        }
+
+        List<String> batchUserIds = new ArrayList<>();
+        while (batchUserIds.size() < tokenRefreshConfig.getCatchUpBatchSize() && !queuedUserIds.isEmpty()) {
+            batchUserIds.add(queuedUserIds.poll());
+        }
+        if (batchUserIds.isEmpty()) {
+            return List.of();
+        }
+
+        // re-read, since a login, the regular run or another replica may have refreshed some of them since they were queued
+        Map<String, User> stillExpired = userService.getUsersWithTokensExpiringBefore(batchUserIds, now).stream()
+                .collect(Collectors.toMap(User::getSpotifyUserId, Function.identity()));
+        return batchUserIds.stream()
+                .map(stillExpired::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public synchronized int size() {
+        return queuedUserIds.size();
+    }
+
+    private void refill(Instant now) {
+        lastRefill = now;
+        int queueSize = tokenRefreshConfig.getCatchUpQueueSize();
+        List<String> expiredUserIds = tokenRefreshConfig.getPolicy() == TokenRefreshConfig.RefreshPolicy.ACTIVE
+                ? userService.getActiveUserIdsWithExpiredTokens(now, now.minus(tokenRefreshConfig.getActiveWindow()), queueSize)
+                : userService.getUserIdsWithExpiredTokens(now, queueSize);
+
+        queuedUserIds.addAll(expiredUserIds);
+        if (!expiredUserIds.isEmpty()) {
+            LOGGER.info("Queued {} expired Spotify token(s) for catch-up refresh", expiredUserIds.size());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.repository.SpotifyTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class TokenCompactionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenCompactionService.class);
+
+    private static final int PURGE_CHUNK_SIZE = 500;
+    private static final int MAX_PURGE_CHUNKS_PER_RUN = 200;
+    private static final int VACUUM_PAGES_PER_RUN = 2048;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final SpotifyTokenRepository spotifyTokenRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+
+    private final Counter reclaimedRowsCounter;
+    private final Counter reclaimedBytesCounter;
+    private final AtomicLong databaseSizeBytes = new AtomicLong();
+
+    @Autowired
+    public TokenCompactionService(SpotifyTokenRepository spotifyTokenRepository, JdbcTemplate jdbcTemplate, ShardRouter shardRouter, MeterRegistry meterRegistry) {
+        this.spotifyTokenRepository = spotifyTokenRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+
+        this.reclaimedRowsCounter = Counter.builder("jukebox.token.compaction.rows.reclaimed")
+                .description("Orphaned spotify_token rows deleted by compaction")
+                .register(meterRegistry);
+        this.reclaimedBytesCounter = Counter.builder("jukebox.token.compaction.bytes.reclaimed")
+                .description("Bytes released from the SQLite file by incremental vacuum")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("jukebox.database.size", databaseSizeBytes, AtomicLong::get)
+                .description("SQLite database size, summed over every shard, as of the last compaction run")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void enableIncrementalVacuum() {
+        shardRouter.onEachShard(shard -> {
+            enableIncrementalVacuum(shard);
+            return null;
+        });
+        databaseSizeBytes.set(shardRouter.sumEachShard(shard -> getDatabaseSizeBytes()));
+    }
+
+    // each shard is its own file, so each is purged and vacuumed on its own
+    @Scheduled(fixedDelay = 3600000, initialDelay = 300000)  // Runs hourly, starting 5 minutes after startup
+    public void compactSpotifyTokens() {
+        databaseSizeBytes.set(shardRouter.sumEachShard(this::compactShard));
+    }
+
+    private void enableIncrementalVacuum(int shard) {
+        Integer autoVacuum = jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class);
+
+        if (autoVacuum != null && autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+            // switching auto_vacuum mode only takes effect after a full VACUUM, which is a one-off cost
+            LOGGER.info("Enabling incremental auto-vacuum on SQLite shard {}", shard);
+            jdbcTemplate.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            jdbcTemplate.execute("VACUUM");
+        }
+    }
+
+    private long compactShard(int shard) {
+        long sizeBefore = getDatabaseSizeBytes();
+
+        int reclaimedRows = purgeOrphanedTokens();
+
+        // incremental_vacuum frees one page per step; only a plain Statement.executeUpdate steps it to completion
+        jdbcTemplate.execute((StatementCallback<Integer>) statement ->
+                statement.executeUpdate("PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_RUN + ")"));
+
+        long sizeAfter = getDatabaseSizeBytes();
+        long reclaimedBytes = Math.max(0, sizeBefore - sizeAfter);
+
+        reclaimedRowsCounter.increment(reclaimedRows);
+        reclaimedBytesCounter.increment(reclaimedBytes);
+
+        LOGGER.info("Token compaction complete on shard {}: {} orphaned token row(s) deleted, database size {} -> {} bytes", shard, reclaimedRows, sizeBefore, sizeAfter);
+        return sizeAfter;
+    }
+
+    private int purgeOrphanedTokens() {
+        int reclaimedRows = 0;
+
+        // short chunked deletes keep each write transaction brief so logins are not blocked behind the purge
+        for (int chunk = 0; chunk < MAX_PURGE_CHUNKS_PER_RUN; chunk++) {
+            int deletedRows = spotifyTokenRepository.deleteOrphanedTokens(PURGE_CHUNK_SIZE);
+            reclaimedRows += deletedRows;
+
+            if (deletedRows < PURGE_CHUNK_SIZE) {
+                break;
+            }
+        }
+        return reclaimedRows;
+    }
+
+    private long getDatabaseSizeBytes() {
+        Long pageCount = jdbcTemplate.queryForObject("PRAGMA page_count", Long.class);
+        Long pageSize = jdbcTemplate.queryForObject("PRAGMA page_size", Long.class);
+
+        return (pageCount == null || pageSize == null) ? 0 : pageCount * pageSize;
+    }
+}
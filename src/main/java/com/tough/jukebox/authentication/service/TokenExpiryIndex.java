@@ -0,0 +1,244 @@
+package com.tough.jukebox.authentication.service;
+
+import java.util.Arrays;
+
+// Min-heap of (user id, expiry epoch second) in parallel long arrays, plus an open-addressing map from user id to heap slot.
+// No per-entry objects: about 16 bytes per heap slot and 12 per map slot, so a million users take under 50 MB
+final class TokenExpiryIndex {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] heapUserIds;
+    private long[] heapExpiries;
+    private int size;
+
+    // linear probing, at most half full, with backward-shift deletion so there are no tombstones
+    private long[] slotUserIds;
+    private int[] slotPositions;
+
+    TokenExpiryIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    TokenExpiryIndex(int expectedSize) {
+        int heapCapacity = Math.max(expectedSize, 16);
+        heapUserIds = new long[heapCapacity];
+        heapExpiries = new long[heapCapacity];
+        allocateSlots(tableSizeFor(heapCapacity));
+    }
+
+    synchronized void put(long userId, long expiryEpochSecond) {
+        if (userId == EMPTY) {
+            throw new IllegalArgumentException("Unsupported user id: " + userId);
+        }
+        int slot = findSlot(userId);
+
+        if (slotUserIds[slot] == userId) {
+            int position = slotPositions[slot];
+            long previousExpiry = heapExpiries[position];
+            heapExpiries[position] = expiryEpochSecond;
+            if (expiryEpochSecond < previousExpiry) {
+                siftUp(position);
+            } else {
+                siftDown(position);
+            }
+            return;
+        }
+
+        if (size == heapUserIds.length) {
+            int capacity = size + (size >> 1);
+            heapUserIds = Arrays.copyOf(heapUserIds, capacity);
+            heapExpiries = Arrays.copyOf(heapExpiries, capacity);
+        }
+        if ((size + 1) * 2 > slotUserIds.length) {
+            rehash(slotUserIds.length * 2);
+            slot = findSlot(userId);
+        }
+
+        slotUserIds[slot] = userId;
+        heapUserIds[size] = userId;
+        heapExpiries[size] = expiryEpochSecond;
+        slotPositions[slot] = size;
+        siftUp(size++);
+    }
+
+    // keeps the later expiry, matching the guard on UserRepository.updateSpotifyToken
+    synchronized void advance(long userId, long expiryEpochSecond) {
+        int slot = findSlot(userId);
+        if (slotUserIds[slot] != userId || heapExpiries[slotPositions[slot]] < expiryEpochSecond) {
+            put(userId, expiryEpochSecond);
+        }
+    }
+
+    synchronized boolean remove(long userId) {
+        int slot = findSlot(userId);
+        if (slotUserIds[slot] != userId) {
+            return false;
+        }
+        int position = slotPositions[slot];
+        deleteSlot(slot);
+
+        int last = --size;
+        if (position != last) {
+            move(last, position);
+            if (position > 0 && heapExpiries[position] < heapExpiries[parent(position)]) {
+                siftUp(position);
+            } else {
+                siftDown(position);
+            }
+        }
+        return true;
+    }
+
+    synchronized long expiryOf(long userId) {
+        int slot = findSlot(userId);
+        return slotUserIds[slot] == userId ? heapExpiries[slotPositions[slot]] : EMPTY;
+    }
+
+    synchronized boolean contains(long userId) {
+        return slotUserIds[findSlot(userId)] == userId;
+    }
+
+    // walks only the part of the heap at or before the window's end, so the cost follows the number of due and expired entries
+    synchronized long[] dueBetween(long fromEpochSecond, long toEpochSecond) {
+        long[] due = new long[16];
+        int found = 0;
+        int[] stack = new int[32];
+        int depth = 0;
+
+        if (size > 0) {
+            stack[depth++] = 0;
+        }
+        while (depth > 0) {
+            int position = stack[--depth];
+            long expiry = heapExpiries[position];
+            if (expiry > toEpochSecond) {
+                continue;
+            }
+            if (expiry >= fromEpochSecond) {
+                if (found == due.length) {
+                    due = Arrays.copyOf(due, found * 2);
+                }
+                due[found++] = heapUserIds[position];
+            }
+            int left = 2 * position + 1;
+            if (left < size) {
+                if (depth + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[depth++] = left;
+                if (left + 1 < size) {
+                    stack[depth++] = left + 1;
+                }
+            }
+        }
+        return Arrays.copyOf(due, found);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void siftUp(int position) {
+        long userId = heapUserIds[position];
+        long expiry = heapExpiries[position];
+
+        while (position > 0) {
+            int parent = parent(position);
+            if (heapExpiries[parent] <= expiry) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        place(userId, expiry, position);
+    }
+
+    private void siftDown(int position) {
+        long userId = heapUserIds[position];
+        long expiry = heapExpiries[position];
+
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heapExpiries[child + 1] < heapExpiries[child]) {
+                child++;
+            }
+            if (heapExpiries[child] >= expiry) {
+                break;
+            }
+            move(child, position);
+            position = child;
+        }
+        place(userId, expiry, position);
+    }
+
+    private void move(int from, int to) {
+        place(heapUserIds[from], heapExpiries[from], to);
+    }
+
+    private void place(long userId, long expiry, int position) {
+        heapUserIds[position] = userId;
+        heapExpiries[position] = expiry;
+        slotPositions[findSlot(userId)] = position;
+    }
+
+    private static int parent(int position) {
+        return (position - 1) >>> 1;
+    }
+
+    private int findSlot(long userId) {
+        int mask = slotUserIds.length - 1;
+        int slot = mix(userId) & mask;
+        while (slotUserIds[slot] != EMPTY && slotUserIds[slot] != userId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void deleteSlot(int slot) {
+        int mask = slotUserIds.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+
+        while (slotUserIds[next] != EMPTY) {
+            int home = mix(slotUserIds[next]) & mask;
+            // an entry can fill the gap only if its home slot is not between the gap and where it sits now
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                slotUserIds[gap] = slotUserIds[next];
+                slotPositions[gap] = slotPositions[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slotUserIds[gap] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        allocateSlots(capacity);
+        for (int position = 0; position < size; position++) {
+            int slot = findSlot(heapUserIds[position]);
+            slotUserIds[slot] = heapUserIds[position];
+            slotPositions[slot] = position;
+        }
+    }
+
+    private void allocateSlots(int capacity) {
+        slotUserIds = new long[capacity];
+        slotPositions = new int[capacity];
+        Arrays.fill(slotUserIds, EMPTY);
+    }
+
+    private static int tableSizeFor(int entries) {
+        return Integer.highestOneBit(Math.max(entries * 2 - 1, 1)) << 1;
+    }
+
+    // user ids are sequential, so spread them before masking
+    private static int mix(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
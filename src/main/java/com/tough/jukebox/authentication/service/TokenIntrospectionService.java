@@ -0,0 +1,54 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.security.JwtUtil;
+import com.tough.jukebox.authentication.security.TokenIntrospection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class TokenIntrospectionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenIntrospectionService.class);
+
+    private final JwtUtil jwtUtil;
+    private final int maxBatchSize;
+
+    @Autowired
+    public TokenIntrospectionService(JwtUtil jwtUtil, @Value("${INTROSPECTION_MAX_BATCH_SIZE:20}") int maxBatchSize) {
+        this.jwtUtil = jwtUtil;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public List<TokenIntrospection> introspect(List<String> tokens) {
+        if (tokens == null || tokens.isEmpty() || tokens.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Introspection batch must contain between 1 and " + maxBatchSize + " tokens");
+        }
+
+        LOGGER.info("Introspecting batch of {} tokens", tokens.size());
+
+        // RSA verification is CPU-bound, so the common pool's one-thread-per-core width fits; results keep request order
+        return tokens.parallelStream()
+                .map(jwtUtil::introspect)
+                .toList();
+    }
+
+    // only an all-valid batch is cacheable, until its first token expires; any invalid verdict makes the response no-store
+    public CacheControl cacheControl(List<TokenIntrospection> results) {
+        if (results.isEmpty() || !results.stream().allMatch(TokenIntrospection::valid)) {
+            return CacheControl.noStore();
+        }
+
+        long maxAge = results.stream()
+                .mapToLong(TokenIntrospection::expiresIn)
+                .min()
+                .getAsLong();
+        return CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePrivate();
+    }
+}
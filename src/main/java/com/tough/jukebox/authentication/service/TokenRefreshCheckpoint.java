@@ -0,0 +1,123 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.model.PendingTokenRefresh;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.repository.PendingTokenRefreshRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Lets shutdown wait for the refresh run in progress, and keeps the users it had not reached in pending_token_refresh
+// so that the next run on any instance picks them up, even if their tokens expire in the meantime
+@Service
+public class TokenRefreshCheckpoint implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRefreshCheckpoint.class);
+
+    private final PendingTokenRefreshRepository pendingTokenRefreshRepository;
+    private final Duration drainTimeout;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private volatile Queue<User> pendingUsers;
+
+    @Autowired
+    public TokenRefreshCheckpoint(PendingTokenRefreshRepository pendingTokenRefreshRepository,
+                                  @Value("${TOKEN_REFRESH_DRAIN_TIMEOUT_MS:20000}") long drainTimeoutMillis) {
+        this.pendingTokenRefreshRepository = pendingTokenRefreshRepository;
+        this.drainTimeout = Duration.ofMillis(drainTimeoutMillis);
+    }
+
+    // the run takes users from the head of the queue and removes each one only once its refresh has been stored
+    public boolean beginRun(Queue<User> pendingUsers) {
+        runLock.lock();
+        if (stopping) {
+            runLock.unlock();
+            return false;
+        }
+        this.pendingUsers = pendingUsers;
+        return true;
+    }
+
+    public void endRun() {
+        try {
+            if (!pendingUsers.isEmpty()) {
+                save(pendingUsers);
+            }
+        } finally {
+            pendingUsers = null;
+            runLock.unlock();
+        }
+    }
+
+    public boolean isStopping() {
+        return stopping;
+    }
+
+    public List<String> getPendingUserIds() {
+        return pendingTokenRefreshRepository.findAllSpotifyUserIds();
+    }
+
+    public void release(Collection<String> spotifyUserIds) {
+        if (!spotifyUserIds.isEmpty()) {
+            pendingTokenRefreshRepository.deleteAllById(spotifyUserIds);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        stopping = true;
+        try {
+            // a run that finishes in time saves its own leftovers in endRun
+            if (runLock.tryLock(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                runLock.unlock();
+            } else {
+                Queue<User> remainingUsers = pendingUsers;
+                LOGGER.warn("Token refresh run still busy after {} ms; saving its remaining users", drainTimeout.toMillis());
+                if (remainingUsers != null) {
+                    save(remainingUsers);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void save(Collection<User> users) {
+        Instant now = Instant.now();
+        List<PendingTokenRefresh> pendingRefreshes = users.stream()
+                .map(user -> new PendingTokenRefresh(user.getSpotifyUserId(), now))
+                .toList();
+        try {
+            pendingTokenRefreshRepository.saveAll(pendingRefreshes);
+            LOGGER.info("Saved {} pending token refresh(es) for the next run", pendingRefreshes.size());
+        } catch (DataAccessException exception) {
+            LOGGER.error("Unable to save {} pending token refresh(es): {}", pendingRefreshes.size(), exception.getMessage());
+        }
+    }
+}
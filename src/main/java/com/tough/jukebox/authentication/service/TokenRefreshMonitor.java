@@ -0,0 +1,170 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class TokenRefreshMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRefreshMonitor.class);
+
+    private final UserService userService;
+    private final TokenRefreshConfig tokenRefreshConfig;
+    private final int backlogWindowMinutes;
+
+    private final Timer runTimer;
+    private final DistributionSummary runFailuresSummary;
+    private final Counter refreshedCounter;
+    private final Counter failedCounter;
+    private final Timer lagTimer;
+    private final AtomicLong expiringTokens = new AtomicLong();
+    private final AtomicLong expiredTokens = new AtomicLong();
+    private final AtomicLong idleExpiredTokens = new AtomicLong();
+    private final AtomicLong quarantinedTokens = new AtomicLong();
+
+    private volatile RefreshRun lastRun;
+
+    @Autowired
+    public TokenRefreshMonitor(UserService userService, TokenRefreshConfig tokenRefreshConfig, MeterRegistry meterRegistry,
+                               @Value("${TOKEN_REFRESH_BACKLOG_WINDOW_MINUTES:15}") int backlogWindowMinutes) {
+        this.userService = userService;
+        this.tokenRefreshConfig = tokenRefreshConfig;
+        this.backlogWindowMinutes = backlogWindowMinutes;
+
+        this.runTimer = Timer.builder("jukebox.token.refresh.run")
+                .description("Duration of each scheduled token refresh run")
+                .register(meterRegistry);
+        this.runFailuresSummary = DistributionSummary.builder("jukebox.token.refresh.run.failures")
+                .description("Token refreshes that failed in each run")
+                .register(meterRegistry);
+        this.refreshedCounter = Counter.builder("jukebox.token.refresh.attempts")
+                .description("Scheduled Spotify token refreshes by outcome")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("jukebox.token.refresh.attempts")
+                .description("Scheduled Spotify token refreshes by outcome")
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("jukebox.token.refresh.lag")
+                .description("Time between a token expiring and its refresh, zero when refreshed ahead of expiry")
+                .register(meterRegistry);
+
+        // refreshed at the end of each run so a scrape never queries the database
+        Gauge.builder("jukebox.tokens.expiring", expiringTokens, AtomicLong::get)
+                .description("Spotify tokens expiring within the backlog window, as of the last refresh run")
+                .tag("window", backlogWindowMinutes + "m")
+                .register(meterRegistry);
+        Gauge.builder("jukebox.tokens.expired", expiredTokens, AtomicLong::get)
+                .description("Spotify tokens already expired but still held by a user the refresh policy covers, as of the last refresh run")
+                .register(meterRegistry);
+        Gauge.builder("jukebox.tokens.expired.idle", idleExpiredTokens, AtomicLong::get)
+                .description("Spotify tokens left to expire because their user is idle under the active refresh policy, as of the last refresh run")
+                .register(meterRegistry);
+        Gauge.builder("jukebox.tokens.quarantined", quarantinedTokens, AtomicLong::get)
+                .description("Spotify refresh tokens rejected with invalid_grant and waiting for the user to log in again, as of the last refresh run")
+                .register(meterRegistry);
+        TimeGauge.builder("jukebox.token.refresh.last.run.age", this, TimeUnit.MILLISECONDS, TokenRefreshMonitor::millisSinceLastRun)
+                .description("Time since the last refresh run on this instance finished; keeps growing if the scheduler stalls")
+                .register(meterRegistry);
+    }
+
+    public void recordRefresh(Instant previousExpiry, Instant refreshedAt, boolean success) {
+        if (!success) {
+            failedCounter.increment();
+            return;
+        }
+
+        refreshedCounter.increment();
+        if (previousExpiry != null) {
+            Duration lag = Duration.between(previousExpiry, refreshedAt);
+            lagTimer.record(lag.isNegative() ? Duration.ZERO : lag);
+        }
+    }
+
+    public void recordRun(Instant startedAt, int attempted, int failed) {
+        Instant finishedAt = Instant.now();
+        runTimer.record(Duration.between(startedAt, finishedAt));
+        runFailuresSummary.record(failed);
+
+        lastRun = new RefreshRun(startedAt, finishedAt, attempted, failed);
+
+        Map<String, Long> backlog = countBacklog(finishedAt, backlogWindowMinutes);
+        expiringTokens.set(backlog.get("expiring"));
+        expiredTokens.set(backlog.get("expired"));
+        idleExpiredTokens.set(backlog.get("expiredIdle"));
+        quarantinedTokens.set(backlog.get("quarantined"));
+
+        if (failed > 0 || backlog.get("expired") > 0) {
+            LOGGER.warn("Token refresh run finished with {} of {} refresh(es) failed; {} token(s) expired and not yet refreshed", failed, attempted, backlog.get("expired"));
+        }
+    }
+
+    public Map<String, Object> getStatus(Integer windowMinutes) {
+        int window = windowMinutes == null || windowMinutes <= 0 ? backlogWindowMinutes : windowMinutes;
+        Map<String, Long> backlog = countBacklog(Instant.now(), window);
+        RefreshRun run = lastRun;
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("status", run == null ? "NOT_RUN" : (run.failed() > 0 || backlog.get("expired") > 0 ? "BEHIND" : "OK"));
+        status.put("windowMinutes", window);
+        status.put("expiringWithinWindow", backlog.get("expiring"));
+        status.put("expiredStillReferenced", backlog.get("expired"));
+        status.put("expiredIdle", backlog.get("expiredIdle"));
+        status.put("quarantined", backlog.get("quarantined"));
+
+        if (run != null) {
+            Map<String, Object> lastRunDetails = new LinkedHashMap<>();
+            lastRunDetails.put("startedAt", run.startedAt());
+            lastRunDetails.put("durationMs", Duration.between(run.startedAt(), run.finishedAt()).toMillis());
+            lastRunDetails.put("attempted", run.attempted());
+            lastRunDetails.put("failed", run.failed());
+            status.put("lastRun", lastRunDetails);
+        }
+
+        Map<String, Object> lag = new LinkedHashMap<>();
+        lag.put("count", lagTimer.count());
+        lag.put("meanMs", lagTimer.mean(TimeUnit.MILLISECONDS));
+        lag.put("maxMs", lagTimer.max(TimeUnit.MILLISECONDS));
+        status.put("refreshLag", lag);
+        return status;
+    }
+
+    // under the active policy idle users' tokens expire by design, so only active users' expired tokens mean behind
+    private Map<String, Long> countBacklog(Instant now, int windowMinutes) {
+        long expired = userService.countUsersWithExpiredTokens(now);
+        long activeExpired = tokenRefreshConfig.getPolicy() == TokenRefreshConfig.RefreshPolicy.ACTIVE
+                ? userService.countActiveUsersWithExpiredTokens(now, now.minus(tokenRefreshConfig.getActiveWindow()))
+                : expired;
+
+        return Map.of(
+                "expiring", userService.countUsersWithExpiringTokens(now, now.plus(Duration.ofMinutes(windowMinutes))),
+                "expired", activeExpired,
+                "expiredIdle", expired - activeExpired,
+                "quarantined", userService.countUsersWithQuarantinedTokens()
+        );
+    }
+
+    private double millisSinceLastRun() {
+        RefreshRun run = lastRun;
+        return run == null ? 0 : Duration.between(run.finishedAt(), Instant.now()).toMillis();
+    }
+
+    private record RefreshRun(Instant startedAt, Instant finishedAt, int attempted, int failed) {}
+}
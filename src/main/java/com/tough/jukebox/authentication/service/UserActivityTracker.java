@@ -0,0 +1,34 @@
+package com.tough.jukebox.authentication.service;
+
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Collects the users seen by the JWT filters in memory so that activity costs no database write per request;
+// AuthService persists it in batches
+@Service
+public class UserActivityTracker {
+
+    private final ConcurrentHashMap<String, Instant> pendingActivity = new ConcurrentHashMap<>();
+
+    public void recordActivity(String spotifyUserId) {
+        if (spotifyUserId != null && !spotifyUserId.isEmpty()) {
+            pendingActivity.put(spotifyUserId, Instant.now());
+        }
+    }
+
+    // hands over each user's latest activity since the previous drain
+    public Map<String, Instant> drain() {
+        Map<String, Instant> drained = new HashMap<>();
+        for (String spotifyUserId : pendingActivity.keySet()) {
+            Instant lastSeenAt = pendingActivity.remove(spotifyUserId);
+            if (lastSeenAt != null) {
+                drained.put(spotifyUserId, lastSeenAt);
+            }
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,19 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.model.User;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+public record UserProfile(String userId, String displayName, String emailAddress) {
+
+    static UserProfile of(User user) {
+        return new UserProfile(user.getSpotifyUserId(), user.getDisplayName(), user.getEmailAddress());
+    }
+
+    // strong: derived from every field served, so equal ETags mean byte-identical bodies
+    public String eTag() {
+        String state = userId + "|" + displayName + "|" + emailAddress;
+        return "\"" + DigestUtils.md5DigestAsHex(state.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -0,0 +1,161 @@
+package com.tough.jukebox.authentication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Profiles are read on every page load but only change on login. Each instance keeps the most recently used ones;
+// a login evicts locally, and the TTL bounds how long another replica can serve the profile from before it
+@Service
+public class UserProfileCache {
+
+    private final UserService userService;
+    private final int maxSize;
+    private final int trimmedSize;
+    private final Duration timeToLive;
+    private final Counter hits;
+    private final Counter misses;
+
+    // reads take no lock; the least recently used entries are found by their access time only once the cache overflows
+    private final ConcurrentHashMap<String, Entry> profiles = new ConcurrentHashMap<>();
+    private final Object trimLock = new Object();
+    // bumped by every evict, so a load that read the database before a login cannot keep the stale profile after it
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public UserProfileCache(UserService userService,
+                            MeterRegistry meterRegistry,
+                            @Value("${USER_PROFILE_CACHE_SIZE:10000}") int maxSize,
+                            @Value("${USER_PROFILE_CACHE_TTL_SECONDS:300}") long timeToLiveSeconds) {
+        this.userService = userService;
+        this.maxSize = maxSize;
+        // trimming a tenth below the limit spreads the scan over many inserts
+        this.trimmedSize = maxSize - maxSize / 10;
+        this.timeToLive = Duration.ofSeconds(timeToLiveSeconds);
+        this.hits = Counter.builder("jukebox.user.profile.cache")
+                .description("User profile lookups, by whether this instance's cache answered them")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("jukebox.user.profile.cache")
+                .description("User profile lookups, by whether this instance's cache answered them")
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        Gauge.builder("jukebox.user.profile.cache.size", this, UserProfileCache::size)
+                .description("User profiles held in this instance's cache")
+                .register(meterRegistry);
+    }
+
+    public Optional<UserProfile> getIfPresent(String spotifyUserId) {
+        Optional<UserProfile> profile = cached(spotifyUserId, Instant.now());
+        profile.ifPresent(cachedProfile -> hits.increment());
+        return profile;
+    }
+
+    // unknown users are not cached, so a first login is seen without waiting for an evict
+    public Optional<UserProfile> get(String spotifyUserId) {
+        Instant now = Instant.now();
+        long evictionsBeforeLoad = evictions.get();
+        Optional<UserProfile> profile = cached(spotifyUserId, now);
+        if (profile.isPresent()) {
+            hits.increment();
+            return profile;
+        }
+        misses.increment();
+
+        Optional<UserProfile> loaded = userService.getUserBySpotifyUserId(spotifyUserId).map(UserProfile::of);
+        loaded.ifPresent(loadedProfile -> store(spotifyUserId, new Entry(loadedProfile, now.plus(timeToLive)), evictionsBeforeLoad));
+        return loaded;
+    }
+
+    public void evict(String spotifyUserId) {
+        evictions.incrementAndGet();
+        profiles.remove(spotifyUserId);
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    private Optional<UserProfile> cached(String spotifyUserId, Instant now) {
+        Entry entry = profiles.get(spotifyUserId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!entry.expiresAt().isAfter(now)) {
+            profiles.remove(spotifyUserId, entry);
+            return Optional.empty();
+        }
+        entry.touch();
+        return Optional.of(entry.profile());
+    }
+
+    private void store(String spotifyUserId, Entry entry, long evictionsBeforeLoad) {
+        if (evictions.get() != evictionsBeforeLoad) {
+            return;
+        }
+        profiles.put(spotifyUserId, entry);
+        // an evict between the check and the put has to take this entry back out
+        if (evictions.get() != evictionsBeforeLoad) {
+            profiles.remove(spotifyUserId, entry);
+            return;
+        }
+        if (profiles.size() > maxSize) {
+            trim();
+        }
+    }
+
+    private void trim() {
+        synchronized (trimLock) {
+            int excess = profiles.size() - trimmedSize;
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<String, Entry>> leastRecentlyUsed = new ArrayList<>(profiles.entrySet());
+            leastRecentlyUsed.sort(Comparator.comparingLong(cached -> cached.getValue().lastAccessed()));
+            leastRecentlyUsed.stream()
+                    .limit(excess)
+                    .forEach(cached -> profiles.remove(cached.getKey(), cached.getValue()));
+        }
+    }
+
+    private static final class Entry {
+        private final UserProfile profile;
+        private final Instant expiresAt;
+        private volatile long lastAccessed = System.nanoTime();
+
+        private Entry(UserProfile profile, Instant expiresAt) {
+            this.profile = profile;
+            this.expiresAt = expiresAt;
+        }
+
+        UserProfile profile() {
+            return profile;
+        }
+
+        Instant expiresAt() {
+            return expiresAt;
+        }
+
+        long lastAccessed() {
+            return lastAccessed;
+        }
+
+        void touch() {
+            lastAccessed = System.nanoTime();
+        }
+    }
+}
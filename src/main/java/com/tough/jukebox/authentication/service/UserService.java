@@ -1,15 +1,25 @@
 package com.tough.jukebox.authentication.service;
 
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
 import com.tough.jukebox.authentication.model.SpotifyToken;
 import com.tough.jukebox.authentication.model.User;
 import com.tough.jukebox.authentication.repository.UserRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,33 +27,320 @@ public class UserService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(UserService.class);
 
+    private static final int MAX_TOKEN_UPDATE_ATTEMPTS = 3;
+    private static final int EXPIRY_INDEX_PAGE_SIZE = 10000;
+    // stays well inside SQLite's limit on bound parameters
+    private static final int USER_ID_BATCH_SIZE = 500;
+    // user ids are per shard, so the expiry index keys each one by its shard in the top bits
+    private static final int INDEX_SHARD_SHIFT = 48;
+    private static final long INDEX_USER_ID_MASK = (1L << INDEX_SHARD_SHIFT) - 1;
+
     private final UserRepository userRepository;
+    private final ObservationRegistry observationRegistry;
+    private final TokenRefreshConfig tokenRefreshConfig;
+    private final ShardRouter shardRouter;
+
+    // null until the first load, when the scheduler falls back to the expiry range query
+    private volatile TokenExpiryIndex tokenExpiryIndex;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, ObservationRegistry observationRegistry, TokenRefreshConfig tokenRefreshConfig, ShardRouter shardRouter) {
         this.userRepository = userRepository;
+        this.observationRegistry = observationRegistry;
+        this.tokenRefreshConfig = tokenRefreshConfig;
+        this.shardRouter = shardRouter;
     }
 
     public Optional<User> getUserBySpotifyUserId(String spotifyUserId) {
-        return userRepository.findBySpotifyUserId(spotifyUserId);
+        return observation("find").observe(() -> shardRouter.forUser(spotifyUserId, () -> userRepository.findBySpotifyUserId(spotifyUserId)));
     }
 
     public List<User> getUsersWithExpiringTokens(Instant currentTime, Instant expiryTime) {
-        return userRepository.findUsersWithSpotifyTokenExpiringSoon(currentTime, expiryTime);
+        TokenExpiryIndex index = tokenExpiryIndex;
+        if (index == null) {
+            return shardRouter.flatMapEachShard(shard -> userRepository.findUsersWithSpotifyTokenExpiringSoon(currentTime, expiryTime));
+        }
+        return findIndexedUsersWithExpiringTokens(index, currentTime, expiryTime);
+    }
+
+    public List<User> getActiveUsersWithExpiringTokens(Instant currentTime, Instant expiryTime, Instant activeSince) {
+        TokenExpiryIndex index = tokenExpiryIndex;
+        if (index == null) {
+            return shardRouter.flatMapEachShard(shard -> userRepository.findActiveUsersWithSpotifyTokenExpiringSoon(currentTime, expiryTime, activeSince));
+        }
+        return findIndexedUsersWithExpiringTokens(index, currentTime, expiryTime).stream()
+                .filter(user -> user.getLastSeenAt() != null && !user.getLastSeenAt().isBefore(activeSince))
+                .toList();
+    }
+
+    // Logins served by other replicas, and updates made while a rebuild is reading, only reach this replica's index here,
+    // so the interval must stay well below the Spotify token lifetime less the refresh window
+    @Scheduled(fixedDelayString = "${TOKEN_EXPIRY_INDEX_REBUILD_INTERVAL_MS:600000}")
+    public void rebuildTokenExpiryIndex() {
+        if (!tokenRefreshConfig.isExpiryIndexEnabled()) {
+            return;
+        }
+
+        TokenExpiryIndex index = new TokenExpiryIndex();
+        shardRouter.onEachShard(shard -> {
+            loadTokenExpiries(index, shard);
+            return null;
+        });
+
+        tokenExpiryIndex = index;
+        LOGGER.info("Token expiry index loaded with {} user(s)", index.size());
+    }
+
+    public List<User> getUsersWithTokensExpiringBefore(Collection<String> spotifyUserIds, Instant refreshBefore) {
+        Map<Integer, List<String>> userIdsByShard = shardRouter.groupByShard(spotifyUserIds, spotifyUserId -> spotifyUserId);
+        if (userIdsByShard.isEmpty()) {
+            return List.of();
+        }
+        if (userIdsByShard.size() == 1) {
+            Map.Entry<Integer, List<String>> shardUserIds = userIdsByShard.entrySet().iterator().next();
+            return shardRouter.onShard(shardUserIds.getKey(), () -> userRepository.findUsersWithSpotifyTokenExpiringBefore(shardUserIds.getValue(), refreshBefore));
+        }
+        return shardRouter.flatMapEachShard(shard -> userIdsByShard.containsKey(shard)
+                ? userRepository.findUsersWithSpotifyTokenExpiringBefore(userIdsByShard.get(shard), refreshBefore)
+                : List.of());
+    }
+
+    public List<String> getUserIdsWithExpiredTokens(Instant currentTime, int limit) {
+        return interleave(shardRouter.onEachShard(shard -> userRepository.findSpotifyUserIdsWithExpiredSpotifyToken(currentTime, Limit.of(limit))), limit);
+    }
+
+    public List<String> getActiveUserIdsWithExpiredTokens(Instant currentTime, Instant activeSince, int limit) {
+        return interleave(shardRouter.onEachShard(shard -> userRepository.findActiveSpotifyUserIdsWithExpiredSpotifyToken(currentTime, activeSince, Limit.of(limit))), limit);
+    }
+
+    // one transaction per shard for the whole batch, so each SQLite file syncs to disk once rather than once per user
+    public void recordLastSeen(Map<String, Instant> lastSeenByUser) {
+        Map<Integer, List<String>> userIdsByShard = shardRouter.groupByShard(lastSeenByUser.keySet(), spotifyUserId -> spotifyUserId);
+        shardRouter.onEachShard(shard -> {
+            List<String> shardUserIds = userIdsByShard.getOrDefault(shard, List.of());
+            if (!shardUserIds.isEmpty()) {
+                shardRouter.inTransaction(shard, () -> shardUserIds.forEach(spotifyUserId -> userRepository.updateLastSeenAt(spotifyUserId, lastSeenByUser.get(spotifyUserId))));
+            }
+            return null;
+        });
+        LOGGER.info("Recorded activity for {} user(s)", lastSeenByUser.size());
+    }
+
+    public long countUsersWithExpiringTokens(Instant currentTime, Instant expiryTime) {
+        return shardRouter.sumEachShard(shard -> userRepository.countUsersWithSpotifyTokenExpiringBetween(currentTime, expiryTime));
+    }
+
+    public long countUsersWithExpiredTokens(Instant currentTime) {
+        return shardRouter.sumEachShard(shard -> userRepository.countUsersWithExpiredSpotifyToken(currentTime));
+    }
+
+    public long countActiveUsersWithExpiredTokens(Instant currentTime, Instant activeSince) {
+        return shardRouter.sumEachShard(shard -> userRepository.countActiveUsersWithExpiredSpotifyToken(currentTime, activeSince));
+    }
+
+    public long countUsersWithQuarantinedTokens() {
+        return shardRouter.sumEachShard(shard -> userRepository.countUsersWithQuarantinedSpotifyToken());
+    }
+
+    public boolean hasValidSpotifyToken(String spotifyUserId, Instant currentTime) {
+        return shardRouter.forUser(spotifyUserId, () -> userRepository.existsBySpotifyUserIdAndSpotifyTokenTokenExpiryAfter(spotifyUserId, currentTime));
     }
 
     public boolean clearUserTokens(String spotifyUserId) {
-        return userRepository.findBySpotifyUserId(spotifyUserId)
-                .map(returnedUser -> {
-                    returnedUser.setSpotifyToken(null);
-                    userRepository.save(returnedUser);
-                    LOGGER.info("User's Spotify tokens cleared: {}", returnedUser.getDisplayName());
-                    return true;
-                })
-                .orElse(false);
+        int shard = shardRouter.shardOf(spotifyUserId);
+        TokenExpiryIndex index = tokenExpiryIndex;
+        if (index != null) {
+            shardRouter.onShard(shard, () -> userRepository.findIdBySpotifyUserId(spotifyUserId))
+                    .ifPresent(userId -> index.remove(indexKey(shard, userId)));
+        }
+
+        int clearedRows = shardRouter.onShard(shard, () -> userRepository.clearSpotifyToken(spotifyUserId));
+
+        if (clearedRows > 0) {
+            LOGGER.info("User's Spotify tokens cleared: {} ({} row(s) updated)", spotifyUserId, clearedRows);
+        }
+        return clearedRows > 0;
+    }
+
+    public void recordRefreshFailure(User user, Instant retryAt) {
+        SpotifyToken spotifyToken = user.getSpotifyToken();
+        int updatedRows = shardRouter.forUser(user.getSpotifyUserId(),
+                () -> userRepository.recordRefreshFailure(spotifyToken.getId(), spotifyToken.getRefreshToken(), retryAt));
+        if (updatedRows > 0) {
+            LOGGER.info("Spotify token refresh for user: {} backing off until {}", user.getSpotifyUserId(), retryAt);
+        }
+    }
+
+    // a quarantined token never comes due again, so it also leaves the expiry index until the user's next login puts it back
+    public void quarantineRefreshToken(User user, Instant quarantinedAt) {
+        int shard = shardRouter.shardOf(user.getSpotifyUserId());
+        SpotifyToken spotifyToken = user.getSpotifyToken();
+        int updatedRows = shardRouter.onShard(shard,
+                () -> userRepository.quarantineRefreshToken(spotifyToken.getId(), spotifyToken.getRefreshToken(), quarantinedAt));
+
+        TokenExpiryIndex index = tokenExpiryIndex;
+        if (index != null && user.getId() != null && updatedRows > 0) {
+            index.remove(indexKey(shard, user.getId()));
+        }
+        if (updatedRows > 0) {
+            LOGGER.warn("Spotify refresh token for user: {} quarantined until they log in again", user.getSpotifyUserId());
+        }
+    }
+
+    // the token update only writes spotify_token, so a profile changed on Spotify needs its own statement
+    public void updateUserProfile(User user, User spotifyUser) {
+        if (spotifyUser.getDisplayName() == null || spotifyUser.getEmailAddress() == null
+                || (spotifyUser.getDisplayName().equals(user.getDisplayName()) && spotifyUser.getEmailAddress().equals(user.getEmailAddress()))) {
+            return;
+        }
+
+        user.setDisplayName(spotifyUser.getDisplayName());
+        user.setEmailAddress(spotifyUser.getEmailAddress());
+        int updatedRows = shardRouter.forUser(user.getSpotifyUserId(),
+                () -> userRepository.updateProfile(user.getSpotifyUserId(), spotifyUser.getDisplayName(), spotifyUser.getEmailAddress()));
+        if (updatedRows > 0) {
+            LOGGER.info("Profile updated for user: {}", user.getSpotifyUserId());
+        }
     }
 
     public void updateSpotifyTokens(User user, SpotifyToken newSpotifyToken) {
+        int shard = shardRouter.shardOf(user.getSpotifyUserId());
+        observation("update_tokens").observe(() -> shardRouter.onShard(shard, () -> {
+            storeSpotifyTokens(user, newSpotifyToken);
+            return null;
+        }));
+
+        TokenExpiryIndex index = tokenExpiryIndex;
+        if (index != null && user.getId() != null && newSpotifyToken.getTokenExpiry() != null) {
+            index.advance(indexKey(shard, user.getId()), newSpotifyToken.getTokenExpiry().getEpochSecond());
+        }
+    }
+
+    private void loadTokenExpiries(TokenExpiryIndex index, int shard) {
+        Long afterId = 0L;
+        List<Object[]> page;
+
+        do {
+            page = userRepository.findTokenExpiriesAfter(afterId, Limit.of(EXPIRY_INDEX_PAGE_SIZE));
+            for (Object[] row : page) {
+                afterId = (Long) row[0];
+                if (row[1] != null) {
+                    index.put(indexKey(shard, afterId), ((Instant) row[1]).getEpochSecond());
+                }
+            }
+        } while (page.size() == EXPIRY_INDEX_PAGE_SIZE);
+    }
+
+    // the index only nominates candidates; each row is re-checked because another replica may have refreshed it since
+    private List<User> findIndexedUsersWithExpiringTokens(TokenExpiryIndex index, Instant currentTime, Instant expiryTime) {
+        long[] dueKeys = index.dueBetween(currentTime.getEpochSecond(), expiryTime.getEpochSecond());
+
+        return shardRouter.flatMapEachShard(shard -> {
+            long[] dueUserIds = Arrays.stream(dueKeys)
+                    .filter(key -> key >>> INDEX_SHARD_SHIFT == shard)
+                    .map(key -> key & INDEX_USER_ID_MASK)
+                    .toArray();
+            List<User> users = new ArrayList<>();
+
+            for (int from = 0; from < dueUserIds.length; from += USER_ID_BATCH_SIZE) {
+                List<Long> batch = Arrays.stream(dueUserIds, from, Math.min(from + USER_ID_BATCH_SIZE, dueUserIds.length))
+                        .boxed()
+                        .toList();
+                users.addAll(userRepository.findUsersWithSpotifyTokenExpiringSoon(batch, currentTime, expiryTime));
+            }
+            return users;
+        });
+    }
+
+    private static long indexKey(int shard, long userId) {
+        return ((long) shard << INDEX_SHARD_SHIFT) | userId;
+    }
+
+    // each shard's list is already ordered most recently active first; taking from them in turn keeps that order
+    // within a shard and gives every shard a fair share of the limit
+    private static List<String> interleave(List<List<String>> shardUserIds, int limit) {
+        if (shardUserIds.size() == 1) {
+            return shardUserIds.get(0);
+        }
+        List<String> userIds = new ArrayList<>();
+        int longest = shardUserIds.stream().mapToInt(List::size).max().orElse(0);
+        for (int position = 0; position < longest && userIds.size() < limit; position++) {
+            for (List<String> userIdsOnShard : shardUserIds) {
+                if (position < userIdsOnShard.size() && userIds.size() < limit) {
+                    userIds.add(userIdsOnShard.get(position));
+                }
+            }
+        }
+        return userIds;
+    }
+
+    private void storeSpotifyTokens(User user, SpotifyToken newSpotifyToken) {
+        User targetUser = user;
+
+        // existing token rows are updated in place with a single statement, no entity load or dirty check
+        if (user.getId() != null && user.getSpotifyToken() != null) {
+            String refreshToken = newSpotifyToken.getRefreshToken().isEmpty() ? null : newSpotifyToken.getRefreshToken();
+
+            for (int attempt = 1; ; attempt++) {
+                int updatedRows = userRepository.updateSpotifyToken(
+                        user.getSpotifyUserId(),
+                        newSpotifyToken.getAccessToken(),
+                        refreshToken,
+                        newSpotifyToken.getClientId(),
+                        newSpotifyToken.getTokenExpiry()
+                );
+
+                if (updatedRows > 0) {
+                    LOGGER.info("Spotify access token updated for user: {} ({} row(s) updated). Token valid until: {}", user.getSpotifyUserId(), updatedRows, newSpotifyToken.getTokenExpiry());
+                    return;
+                }
+
+                // nothing matched: either a token that outlives this one is stored, or the token row has gone
+                Optional<User> latestUser = userRepository.findBySpotifyUserId(user.getSpotifyUserId());
+                if (latestUser.isEmpty() || latestUser.get().getSpotifyToken() == null) {
+                    targetUser = latestUser.orElse(user);
+                    break;
+                }
+                if (hasNewerToken(latestUser.get(), newSpotifyToken)) {
+                    LOGGER.info("Newer Spotify access token already stored for user: {}. Skipping update", user.getSpotifyUserId());
+                    return;
+                }
+                // replaced between the update and the reload by a token that does not outlive this one
+                if (attempt >= MAX_TOKEN_UPDATE_ATTEMPTS) {
+                    LOGGER.error("Spotify access token update for user: {} abandoned after {} conflicting attempts", user.getSpotifyUserId(), attempt);
+                    throw new ObjectOptimisticLockingFailureException(SpotifyToken.class, latestUser.get().getSpotifyToken().getId());
+                }
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                saveSpotifyTokens(targetUser, newSpotifyToken);
+                return;
+            } catch (ObjectOptimisticLockingFailureException exception) {
+                if (attempt >= MAX_TOKEN_UPDATE_ATTEMPTS) {
+                    LOGGER.error("Spotify access token update for user: {} abandoned after {} conflicting attempts", user.getSpotifyUserId(), attempt);
+                    throw exception;
+                }
+                LOGGER.warn("Concurrent Spotify token update detected for user: {}. Retrying (attempt {} of {})", user.getSpotifyUserId(), attempt + 1, MAX_TOKEN_UPDATE_ATTEMPTS);
+
+                Optional<User> latestUser = userRepository.findBySpotifyUserId(user.getSpotifyUserId());
+                if (latestUser.isEmpty()) {
+                    // the user row was created concurrently and has since gone, nothing to merge into
+                    throw exception;
+                }
+                targetUser = latestUser.get();
+
+                // the competing writer has already stored a token that outlives this one, so keep theirs
+                if (hasNewerToken(targetUser, newSpotifyToken)) {
+                    LOGGER.info("Newer Spotify access token already stored for user: {}. Skipping update", user.getSpotifyUserId());
+                    return;
+                }
+            }
+        }
+    }
+
+    private void saveSpotifyTokens(User user, SpotifyToken newSpotifyToken) {
         SpotifyToken spotifyToken = Optional.ofNullable(user.getSpotifyToken())
                 .orElse(new SpotifyToken());
 
@@ -53,9 +350,31 @@ public class UserService {
         if (!newSpotifyToken.getRefreshToken().isEmpty()) {
             spotifyToken.setRefreshToken(newSpotifyToken.getRefreshToken());
         }
+        if (newSpotifyToken.getClientId() != null) {
+            spotifyToken.setClientId(newSpotifyToken.getClientId());
+        }
+        spotifyToken.setRefreshFailures(0);
+        spotifyToken.setRefreshRetryAt(null);
+        spotifyToken.setQuarantinedAt(null);
 
         user.setSpotifyToken(spotifyToken);
         userRepository.save(user);
         LOGGER.info("Spotify access token updated for user: {}. Token valid until: {}", user.getSpotifyUserId(), newSpotifyToken.getTokenExpiry());
     }
+
+    // the login's database stage as a span; the individual repository calls are timed by spring.data.repository.invocations
+    private Observation observation(String operation) {
+        return Observation.createNotStarted("jukebox.user.store", observationRegistry)
+                .contextualName("user " + operation)
+                .lowCardinalityKeyValue("operation", operation);
+    }
+
+    private boolean hasNewerToken(User user, SpotifyToken newSpotifyToken) {
+        SpotifyToken storedToken = user.getSpotifyToken();
+
+        return storedToken != null
+                && storedToken.getTokenExpiry() != null
+                && newSpotifyToken.getTokenExpiry() != null
+                && storedToken.getTokenExpiry().isAfter(newSpotifyToken.getTokenExpiry());
+    }
 }
\ No newline at end of file
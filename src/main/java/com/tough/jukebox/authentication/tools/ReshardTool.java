@@ -0,0 +1,204 @@
+package com.tough.jukebox.authentication.tools;
+
+import com.tough.jukebox.authentication.config.ShardMetadata;
+import com.tough.jukebox.authentication.service.ShardRouter;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Offline: copies every user and their token from the current shard files into a new, empty set of files laid out for
+// a different shard count. The sources are only read, so they stay as the rollback until the new files are swapped in.
+//
+// java -cp app.jar -Dloader.main=com.tough.jukebox.authentication.tools.ReshardTool \
+//     org.springframework.boot.loader.launch.PropertiesLauncher --from <jdbc url>,... --to <jdbc url>,...
+public class ReshardTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReshardTool.class);
+
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String SELECT_USERS = "SELECT u.id, u.display_name, u.email_address, u.spotify_user_id, u.version, u.last_seen_at, " +
+            "st.id, st.access_token, st.refresh_token, st.token_expiry, st.version, st.client_id, " +
+            "st.refresh_failures, st.refresh_retry_at, st.quarantined_at " +
+            "FROM \"user\" u LEFT JOIN spotify_token st ON st.id = u.spotify_token_id " +
+            "WHERE u.id > ? ORDER BY u.id LIMIT ?";
+    private static final String INSERT_TOKEN = "INSERT INTO spotify_token " +
+            "(access_token, refresh_token, token_expiry, version, client_id, refresh_failures, refresh_retry_at, quarantined_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_USER = "INSERT INTO \"user\" " +
+            "(display_name, email_address, spotify_user_id, version, last_seen_at, spotify_token_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final List<String> sourceUrls;
+    private final List<String> targetUrls;
+
+    public ReshardTool(List<String> sourceUrls, List<String> targetUrls) {
+        if (sourceUrls.isEmpty() || targetUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one source and one target database are required");
+        }
+        if (sourceUrls.stream().anyMatch(targetUrls::contains)) {
+            throw new IllegalArgumentException("Targets must be new databases, not any of the sources");
+        }
+        this.sourceUrls = List.copyOf(sourceUrls);
+        this.targetUrls = List.copyOf(targetUrls);
+    }
+
+    public static void main(String[] args) {
+        try {
+            ReshardTool reshardTool = new ReshardTool(option(args, "--from"), option(args, "--to"));
+            reshardTool.run();
+        } catch (Exception exception) {
+            LOGGER.error("Resharding failed: {}", exception.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // returns the number of users written to each target, in target order
+    public List<Long> run() throws SQLException {
+        targetUrls.forEach(ReshardTool::migrate);
+
+        List<Connection> targets = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < targetUrls.size(); shard++) {
+                Connection target = DriverManager.getConnection(targetUrls.get(shard));
+                targets.add(target);
+                if (countUsers(target) > 0) {
+                    throw new IllegalStateException("Target database already holds users: " + targetUrls.get(shard));
+                }
+                // the service will only start on these files with DATABASE_SHARD_COUNT set to the number of targets
+                ShardMetadata.recordOrVerify(target, shard, targetUrls.size());
+                target.setAutoCommit(false);
+            }
+
+            long[] copiedUsers = new long[targets.size()];
+            long sourceUsers = 0;
+            for (String sourceUrl : sourceUrls) {
+                try (Connection source = DriverManager.getConnection(sourceUrl)) {
+                    sourceUsers += countUsers(source);
+                    copyUsers(source, targets, copiedUsers);
+                    // the cluster tables are only read on shard 0
+                    copyPendingRefreshes(source, targets.get(0));
+                }
+                LOGGER.info("Copied users from {}", sourceUrl);
+            }
+
+            long targetUsers = Arrays.stream(copiedUsers).sum();
+            if (targetUsers != sourceUsers) {
+                throw new IllegalStateException("Copied " + targetUsers + " user(s) but the sources hold " + sourceUsers);
+            }
+            for (int shard = 0; shard < targets.size(); shard++) {
+                LOGGER.info("Shard {} ({}): {} user(s)", shard, targetUrls.get(shard), copiedUsers[shard]);
+            }
+            return Arrays.stream(copiedUsers).boxed().toList();
+        } finally {
+            for (Connection target : targets) {
+                target.close();
+            }
+        }
+    }
+
+    // ids are reassigned on the target, so the token is written first and the user row points at its new id
+    private void copyUsers(Connection source, List<Connection> targets, long[] copiedUsers) throws SQLException {
+        long afterId = 0;
+        int pageRows;
+
+        do {
+            pageRows = 0;
+            try (PreparedStatement select = source.prepareStatement(SELECT_USERS)) {
+                select.setLong(1, afterId);
+                select.setInt(2, PAGE_SIZE);
+
+                try (ResultSet row = select.executeQuery()) {
+                    while (row.next()) {
+                        pageRows++;
+                        afterId = row.getLong(1);
+                        String spotifyUserId = row.getString(4);
+                        int shard = ShardRouter.shardOf(spotifyUserId, targets.size());
+                        Connection target = targets.get(shard);
+
+                        Long tokenId = row.getObject(7) == null ? null : insertToken(target, row);
+                        try (PreparedStatement insertUser = target.prepareStatement(INSERT_USER)) {
+                            insertUser.setObject(1, row.getObject(2));
+                            insertUser.setObject(2, row.getObject(3));
+                            insertUser.setObject(3, spotifyUserId);
+                            insertUser.setObject(4, row.getObject(5));
+                            insertUser.setObject(5, row.getObject(6));
+                            insertUser.setObject(6, tokenId);
+                            insertUser.executeUpdate();
+                        }
+                        copiedUsers[shard]++;
+                    }
+                }
+            }
+            // one commit per page on each target, so each file syncs once per page rather than once per user
+            for (Connection target : targets) {
+                target.commit();
+            }
+        } while (pageRows == PAGE_SIZE);
+    }
+
+    // timestamps are copied as stored, whichever representation the source file uses
+    private static long insertToken(Connection target, ResultSet row) throws SQLException {
+        try (PreparedStatement insertToken = target.prepareStatement(INSERT_TOKEN, Statement.RETURN_GENERATED_KEYS)) {
+            for (int column = 8; column <= 15; column++) {
+                insertToken.setObject(column - 7, row.getObject(column));
+            }
+            insertToken.executeUpdate();
+
+            try (ResultSet generatedKeys = insertToken.getGeneratedKeys()) {
+                generatedKeys.next();
+                return generatedKeys.getLong(1);
+            }
+        }
+    }
+
+    private static void copyPendingRefreshes(Connection source, Connection target) throws SQLException {
+        try (Statement select = source.createStatement();
+             ResultSet row = select.executeQuery("SELECT spotify_user_id, queued_at FROM pending_token_refresh");
+             PreparedStatement insert = target.prepareStatement("INSERT OR IGNORE INTO pending_token_refresh (spotify_user_id, queued_at) VALUES (?, ?)")) {
+            while (row.next()) {
+                insert.setObject(1, row.getObject(1));
+                insert.setObject(2, row.getObject(2));
+                insert.executeUpdate();
+            }
+        }
+        target.commit();
+    }
+
+    private static long countUsers(Connection connection) throws SQLException {
+        try (Statement count = connection.createStatement();
+             ResultSet row = count.executeQuery("SELECT COUNT(*) FROM \"user\"")) {
+            row.next();
+            return row.getLong(1);
+        }
+    }
+
+    // same migrations and baseline as the service, so the service finds the new files up to date
+    private static void migrate(String url) {
+        Flyway.configure()
+                .dataSource(url, null, null)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+
+    private static List<String> option(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return Arrays.stream(args[i + 1].split(",")).map(String::trim).filter(url -> !url.isEmpty()).toList();
+            }
+        }
+        throw new IllegalArgumentException("Missing " + name + " <jdbc url>,...");
+    }
+}
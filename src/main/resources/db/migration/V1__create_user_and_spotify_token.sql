@@ -0,0 +1,18 @@
+-- Exactly the schema hibernate ddl-auto=update generated before migrations were introduced, so existing databases
+-- baseline through it as a no-op; every column added since has its own migration
+CREATE TABLE IF NOT EXISTS spotify_token (
+    id integer,
+    access_token varchar(255) not null unique,
+    refresh_token varchar(255) not null unique,
+    token_expiry timestamp not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS user (
+    id integer,
+    display_name varchar(255) not null unique,
+    email_address varchar(255) not null unique,
+    spotify_user_id varchar(255) not null unique,
+    spotify_token_id bigint unique,
+    primary key (id)
+);
@@ -0,0 +1,3 @@
+-- @Version columns; existing rows start at 0
+ALTER TABLE spotify_token ADD COLUMN version bigint default 0;
+ALTER TABLE user ADD COLUMN version bigint default 0;
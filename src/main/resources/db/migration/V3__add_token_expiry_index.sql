@@ -0,0 +1,2 @@
+-- Serves the scheduler's expiring-soon range scan, which otherwise reads the whole spotify_token table
+CREATE INDEX IF NOT EXISTS idx_spotify_token_token_expiry ON spotify_token (token_expiry);
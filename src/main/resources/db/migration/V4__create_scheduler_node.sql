@@ -0,0 +1,8 @@
+-- One row per running instance; rows whose heartbeat has lapsed drop out of the refresh hash ring
+CREATE TABLE IF NOT EXISTS scheduler_node (
+    node_id varchar(255) not null,
+    last_heartbeat timestamp not null,
+    primary key (node_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_scheduler_node_last_heartbeat ON scheduler_node (last_heartbeat);
@@ -0,0 +1,4 @@
+-- Last request accepted for the user; NULL until they are next seen, so existing users start out idle
+ALTER TABLE user ADD COLUMN last_seen_at timestamp;
+
+CREATE INDEX IF NOT EXISTS idx_user_last_seen_at ON user (last_seen_at);
@@ -0,0 +1,6 @@
+-- Users whose refresh was due when an instance shut down; picked up by the next refresh run on any instance
+CREATE TABLE IF NOT EXISTS pending_token_refresh (
+    spotify_user_id varchar(255) not null,
+    queued_at timestamp not null,
+    primary key (spotify_user_id)
+);
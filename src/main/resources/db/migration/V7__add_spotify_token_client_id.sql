@@ -0,0 +1,2 @@
+-- Spotify app that issued the token, which is the only one that can refresh it; NULL means the primary app
+ALTER TABLE spotify_token ADD COLUMN client_id varchar(255);
@@ -0,0 +1,5 @@
+-- Consecutive refresh failures since the token was last stored. A transient failure backs off until refresh_retry_at;
+-- invalid_grant sets quarantined_at and the scheduler skips the token until the user logs in again
+ALTER TABLE spotify_token ADD COLUMN refresh_failures integer not null default 0;
+ALTER TABLE spotify_token ADD COLUMN refresh_retry_at timestamp;
+ALTER TABLE spotify_token ADD COLUMN quarantined_at timestamp;
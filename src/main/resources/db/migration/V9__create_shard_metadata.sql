@@ -0,0 +1,7 @@
+-- One row per database file: which shard it is and how many shards it was written for. Checked on every start, so a
+-- changed DATABASE_SHARD_COUNT fails fast instead of looking for users on the wrong file
+CREATE TABLE IF NOT EXISTS shard_metadata (
+    id integer primary key check (id = 1),
+    shard_index integer not null,
+    shard_count integer not null
+);
@@ -0,0 +1,44 @@
+package com.tough.jukebox.authentication.config;
+
+import com.tough.jukebox.authentication.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeHint;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeImageHintsTest {
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    void setUp() {
+        hints = new RuntimeHints();
+        new NativeImageHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testEntitiesRegisteredForReflection() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(User.class)
+                .withMemberCategories(MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)
+                .test(hints));
+    }
+
+    @Test
+    void testJjwtServiceFilesIncluded() {
+        assertTrue(RuntimeHintsPredicates.resource()
+                .forResource("META-INF/services/io.jsonwebtoken.io.Serializer")
+                .test(hints));
+    }
+
+    @Test
+    void testRegisteredTypesExistOnClasspath() {
+        // guards against typos and library upgrades that move classes
+        hints.reflection().typeHints()
+                .map(TypeHint::getType)
+                .forEach(type -> assertDoesNotThrow(() -> Class.forName(type.getName()), type.getName()));
+    }
+}
@@ -1,13 +1,25 @@
 package com.tough.jukebox.authentication.controller.integration;
 
 import com.tough.jukebox.authentication.controller.AuthController;
+import com.tough.jukebox.authentication.exception.InvalidLoginStateException;
 import com.tough.jukebox.authentication.exception.SpotifyAPIException;
 import com.tough.jukebox.authentication.security.JwtUtil;
+import com.tough.jukebox.authentication.security.TokenIntrospection;
 import com.tough.jukebox.authentication.service.AuthService;
+import com.tough.jukebox.authentication.service.LoginStatus;
+import com.tough.jukebox.authentication.service.TokenIntrospectionService;
+import com.tough.jukebox.authentication.service.UserActivityTracker;
+import com.tough.jukebox.authentication.service.UserProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.Cookie;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -15,25 +27,51 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 
-@WebMvcTest(controllers = AuthController.class)
+@WebMvcTest(controllers = AuthController.class, properties = "INTROSPECTION_SERVICE_TOKEN=test-service-token")
+// slices leave out metrics, which the JWT filter records to
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
 class AuthControllerIntegrationTest {
 
+    private static final Instant TOKEN_EXPIRY = Instant.parse("2030-01-01T00:00:00Z");
+    private static final TokenIntrospection VALID_TOKEN = new TokenIntrospection(true, "test-user-id", 3600, TOKEN_EXPIRY);
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private AuthService authService;
 
+    @MockitoBean
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @MockitoBean
+    private UserActivityTracker userActivityTracker;
+
     @MockitoBean
     JwtUtil jwtUtil;
 
@@ -41,13 +79,32 @@ class AuthControllerIntegrationTest {
     void testGetSpotifyRedirectParamsSuccess() throws Exception {
         when(authService.getSpotifyRedirectParams()).thenReturn(Map.of(
                 "clientId", "test-client-id",
-                "redirectUri", "http://test-redirect-uri"
+                "redirectUri", "http://test-redirect-uri",
+                "state", "test-state",
+                "loginState", "test-login-state"
         ));
 
         mockMvc.perform(get("/auth/spotifyRedirectParams"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(content().json("{\"clientId\":\"test-client-id\",\"redirectUri\":\"http://test-redirect-uri\"}"));
+                .andExpect(content().json("{\"clientId\":\"test-client-id\",\"redirectUri\":\"http://test-redirect-uri\",\"state\":\"test-state\"}", true))
+                .andExpect(cookie().value("loginState", "test-login-state"))
+                .andExpect(cookie().httpOnly("loginState", true))
+                .andExpect(cookie().path("loginState", "/auth/spotifyAuthorizationCallback"))
+                .andExpect(cookie().sameSite("loginState", "Lax"));
+    }
+
+    @Test
+    void testGetSpotifyRedirectParamsWithoutLoginState() throws Exception {
+        when(authService.getSpotifyRedirectParams()).thenReturn(Map.of(
+                "clientId", "test-client-id",
+                "redirectUri", "http://test-redirect-uri"
+        ));
+
+        mockMvc.perform(get("/auth/spotifyRedirectParams"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"clientId\":\"test-client-id\",\"redirectUri\":\"http://test-redirect-uri\"}", true))
+                .andExpect(header().doesNotExist(HttpHeaders.SET_COOKIE));
     }
 
     @Test
@@ -60,23 +117,159 @@ class AuthControllerIntegrationTest {
 
     @Test
     void testLoginCheckSuccess() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        LoginStatus loginStatus = new LoginStatus("test-user-id", TOKEN_EXPIRY, true);
+        when(authService.getLoginStatus("test-user-id", TOKEN_EXPIRY)).thenReturn(loginStatus);
+        when(authService.loginCheckCacheControl(loginStatus)).thenReturn(CacheControl.maxAge(Duration.ofSeconds(300)).cachePrivate());
+        double accepted = filterCount("accepted", "valid_token");
 
         mockMvc.perform(get("/auth/loginCheck")
                 .cookie(new Cookie("jwt", "mock-jwt-value")))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=300, private"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.COOKIE)))
+                .andExpect(header().string(HttpHeaders.ETAG, loginStatus.eTag()))
+                .andExpect(content().json("{\"userId\":\"test-user-id\",\"expiresAt\":\"2030-01-01T00:00:00Z\",\"spotifyTokenHeld\":true}"));
+
+        assertEquals(accepted + 1, filterCount("accepted", "valid_token"));
+        verify(userActivityTracker).recordActivity("test-user-id");
+    }
+
+    @Test
+    void testLoginCheckNotModified304() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        LoginStatus loginStatus = new LoginStatus("test-user-id", TOKEN_EXPIRY, true);
+        when(authService.getLoginStatus("test-user-id", TOKEN_EXPIRY)).thenReturn(loginStatus);
+        when(authService.loginCheckCacheControl(loginStatus)).thenReturn(CacheControl.maxAge(Duration.ofSeconds(300)).cachePrivate());
+
+        mockMvc.perform(get("/auth/loginCheck")
+                .header(HttpHeaders.IF_NONE_MATCH, loginStatus.eTag())
+                .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=300, private"))
+                .andExpect(content().string(""));
     }
 
     @Test
     void testLoginCheckFailureInvalidToken401() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(TokenIntrospection.invalid());
+        double rejected = filterCount("rejected", "invalid_token");
+
         mockMvc.perform(get("/auth/loginCheck")
                  .cookie(new Cookie("jwt", "mock-jwt-value")))
                 .andExpect(status().isUnauthorized());
+
+        assertEquals(rejected + 1, filterCount("rejected", "invalid_token"));
+    }
+
+    @Test
+    void testLoginCheckFailureNoCookie401() throws Exception {
+        double rejected = filterCount("rejected", "missing_token");
+
+        mockMvc.perform(get("/auth/loginCheck"))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(userActivityTracker);
+
+        assertEquals(rejected + 1, filterCount("rejected", "missing_token"));
+    }
+
+    @Test
+    void testProfileSuccess() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        UserProfile userProfile = new UserProfile("test-user-id", "Test User", "test@example.com");
+        when(authService.getUserProfile("test-user-id")).thenReturn(Optional.of(userProfile));
+
+        mockMvc.perform(get("/auth/profile")
+                .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.COOKIE)))
+                .andExpect(header().string(HttpHeaders.ETAG, userProfile.eTag()))
+                .andExpect(content().json("{\"userId\":\"test-user-id\",\"displayName\":\"Test User\",\"emailAddress\":\"test@example.com\"}"));
+    }
+
+    @Test
+    void testProfileNotModified304() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        UserProfile userProfile = new UserProfile("test-user-id", "Test User", "test@example.com");
+        when(authService.getUserProfile("test-user-id")).thenReturn(Optional.of(userProfile));
+
+        mockMvc.perform(get("/auth/profile")
+                .header(HttpHeaders.IF_NONE_MATCH, userProfile.eTag())
+                .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, userProfile.eTag()))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void testProfileFailureUnknownUser404() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        when(authService.getUserProfile("test-user-id")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/auth/profile")
+                .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testProfileFailureNoCookie401() throws Exception {
+        mockMvc.perform(get("/auth/profile"))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void testIntrospectSuccessWithServiceTokenAndNoCookie() throws Exception {
+        List<TokenIntrospection> results = List.of(
+                new TokenIntrospection(true, "test-user-id", 600, Instant.parse("2030-01-01T00:00:00Z")),
+                TokenIntrospection.invalid());
+        when(tokenIntrospectionService.introspect(List.of("valid-jwt", "invalid-jwt"))).thenReturn(results);
+        when(tokenIntrospectionService.cacheControl(results)).thenReturn(CacheControl.maxAge(Duration.ofSeconds(600)).cachePrivate());
+
+        mockMvc.perform(post("/auth/introspect")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer test-service-token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tokens\":[\"valid-jwt\",\"invalid-jwt\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=600, private"))
+                .andExpect(content().json("{\"results\":[{\"valid\":true,\"subject\":\"test-user-id\",\"expiresIn\":600,\"expiresAt\":\"2030-01-01T00:00:00Z\"},"
+                        + "{\"valid\":false,\"subject\":null,\"expiresIn\":0}]}"));
+    }
+
+    @Test
+    void testIntrospectFailureBatchRejected400() throws Exception {
+        when(tokenIntrospectionService.introspect(any())).thenThrow(new IllegalArgumentException("Introspection batch must contain between 1 and 20 tokens"));
+
+        mockMvc.perform(post("/auth/introspect")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer test-service-token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tokens\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testIntrospectFailureWithoutServiceToken401() throws Exception {
+        mockMvc.perform(post("/auth/introspect")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tokens\":[\"valid-jwt\"]}"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/auth/introspect")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer wrong-service-token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tokens\":[\"valid-jwt\"]}"))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(tokenIntrospectionService, jwtUtil);
+        assertEquals(2, meterRegistry.get("jukebox.jwt.filter.requests").tag("reason", "invalid_service_token").counter().count());
     }
 
     @Test
     void testLogoutSuccess() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
         when(authService.logOut(anyString())).thenReturn(true);
 
         mockMvc.perform(post("/auth/logout")
@@ -86,6 +279,7 @@ class AuthControllerIntegrationTest {
 
     @Test
     void testLogoutFailureInvalidToken401() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(TokenIntrospection.invalid());
         mockMvc.perform(post("/auth/logout")
                 .cookie(new Cookie("jwt", "mock-jwt-value")))
                 .andExpect(status().isUnauthorized());
@@ -93,7 +287,7 @@ class AuthControllerIntegrationTest {
 
     @Test
     void testLogoutFailureNoValidUser404() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
         when(authService.logOut(anyString())).thenReturn(false);
 
         mockMvc.perform(post("/auth/logout")
@@ -103,24 +297,61 @@ class AuthControllerIntegrationTest {
 
     @Test
     void testSpotifyAuthorizationCallbackSuccess() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
         when(authService.completeAuthentication(
-                anyString()
+                anyString(),
+                eq("test-state"),
+                eq("test-login-state")
         )).thenReturn(Map.of("redirectUri", "http://test-redirect-uri", "jwt", "test-jwt-value"));
 
         mockMvc.perform(get("/auth/spotifyAuthorizationCallback")
                 .param("code", "test-code")
-                .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .param("state", "test-state")
+                .cookie(new Cookie("jwt", "mock-jwt-value"), new Cookie("loginState", "test-login-state")))
                 .andExpect(status().isSeeOther())
                 .andExpect(header().exists(HttpHeaders.LOCATION))
-                .andExpect(header().exists(HttpHeaders.SET_COOKIE));
+                .andExpect(cookie().value("jwt", "test-jwt-value"))
+                .andExpect(cookie().maxAge("loginState", 0));
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackSuccessWithoutState() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        when(authService.completeAuthentication(anyString(), isNull(), isNull()))
+                .thenReturn(Map.of("redirectUri", "http://test-redirect-uri", "jwt", "test-jwt-value"));
+
+        mockMvc.perform(get("/auth/spotifyAuthorizationCallback")
+                .param("code", "test-code")
+                .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .andExpect(status().isSeeOther())
+                .andExpect(cookie().value("jwt", "test-jwt-value"))
+                .andExpect(cookie().doesNotExist("loginState"));
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackFailureInvalidLoginState() throws Exception {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        when(authService.completeAuthentication(
+                anyString(),
+                eq("forged-state"),
+                isNull()
+        )).thenThrow(new InvalidLoginStateException("OAuth state does not match this browser's login"));
+
+        mockMvc.perform(get("/auth/spotifyAuthorizationCallback")
+                        .param("code", "test-code")
+                        .param("state", "forged-state")
+                        .cookie(new Cookie("jwt", "mock-jwt-value")))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().doesNotExist(HttpHeaders.SET_COOKIE));
     }
 
     @Test
     void testSpotifyAuthorizationCallbackFailureSpotifyAPIException() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
         when(authService.completeAuthentication(
-                anyString()
+                anyString(),
+                isNull(),
+                isNull()
         )).thenThrow(new SpotifyAPIException("Spotify API Exception"));
 
         mockMvc.perform(get("/auth/spotifyAuthorizationCallback")
@@ -132,9 +363,11 @@ class AuthControllerIntegrationTest {
 
     @Test
     void testSpotifyAuthorizationCallbackFailureNoSuchAlgorithmException() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
         when(authService.completeAuthentication(
-                anyString()
+                anyString(),
+                isNull(),
+                isNull()
         )).thenThrow(new NoSuchAlgorithmException("Spotify API Exception"));
 
         mockMvc.perform(get("/auth/spotifyAuthorizationCallback")
@@ -146,9 +379,11 @@ class AuthControllerIntegrationTest {
 
     @Test
     void testSpotifyAuthorizationCallbackFailureInvalidKeySpecException() throws Exception {
-        when(jwtUtil.validateToken(anyString())).thenReturn(true);
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
         when(authService.completeAuthentication(
-                anyString()
+                anyString(),
+                isNull(),
+                isNull()
         )).thenThrow(new InvalidKeySpecException("Spotify API Exception"));
 
         mockMvc.perform(get("/auth/spotifyAuthorizationCallback")
@@ -165,4 +400,9 @@ class AuthControllerIntegrationTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(header().doesNotExist(HttpHeaders.SET_COOKIE));
     }
-}
\ No newline at end of file
+
+    private double filterCount(String outcome, String reason) {
+        Counter counter = meterRegistry.find("jukebox.jwt.filter.requests").tags("outcome", outcome, "reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
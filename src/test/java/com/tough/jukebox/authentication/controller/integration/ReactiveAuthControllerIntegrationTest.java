@@ -0,0 +1,311 @@
+package com.tough.jukebox.authentication.controller.integration;
+
+import com.tough.jukebox.authentication.controller.ReactiveAuthController;
+import com.tough.jukebox.authentication.exception.InvalidLoginStateException;
+import com.tough.jukebox.authentication.exception.SpotifyAPIException;
+import com.tough.jukebox.authentication.security.JwtUtil;
+import com.tough.jukebox.authentication.security.TokenIntrospection;
+import com.tough.jukebox.authentication.service.LoginStatus;
+import com.tough.jukebox.authentication.service.ReactiveAuthService;
+import com.tough.jukebox.authentication.service.TokenIntrospectionService;
+import com.tough.jukebox.authentication.service.UserActivityTracker;
+import com.tough.jukebox.authentication.service.UserProfile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.security.InvalidKeyException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = ReactiveAuthController.class, properties = "INTROSPECTION_SERVICE_TOKEN=test-service-token")
+@ImportAutoConfiguration({MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
+class ReactiveAuthControllerIntegrationTest {
+
+    private static final Instant TOKEN_EXPIRY = Instant.parse("2030-01-01T00:00:00Z");
+    private static final TokenIntrospection VALID_TOKEN = new TokenIntrospection(true, "test-user-id", 3600, TOKEN_EXPIRY);
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockitoBean
+    private ReactiveAuthService reactiveAuthService;
+
+    @MockitoBean
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @MockitoBean
+    private UserActivityTracker userActivityTracker;
+
+    @MockitoBean
+    JwtUtil jwtUtil;
+
+    @Test
+    void testGetSpotifyRedirectParamsSuccess() {
+        when(reactiveAuthService.getSpotifyRedirectParams()).thenReturn(Map.of(
+                "clientId", "test-client-id",
+                "redirectUri", "http://test-redirect-uri",
+                "state", "test-state",
+                "loginState", "test-login-state"
+        ));
+
+        webTestClient.get().uri("/auth/spotifyRedirectParams")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectHeader().value(HttpHeaders.SET_COOKIE, cookie -> assertTrue(cookie.startsWith("loginState=test-login-state;")
+                        && cookie.contains("Path=/auth/spotifyAuthorizationCallback")
+                        && cookie.contains("HttpOnly")
+                        && cookie.contains("SameSite=Lax")))
+                .expectBody().json("{\"clientId\":\"test-client-id\",\"redirectUri\":\"http://test-redirect-uri\",\"state\":\"test-state\"}", true);
+    }
+
+    @Test
+    void testGetSpotifyRedirectParamsWithoutLoginState() {
+        when(reactiveAuthService.getSpotifyRedirectParams()).thenReturn(Map.of(
+                "clientId", "test-client-id",
+                "redirectUri", "http://test-redirect-uri"
+        ));
+
+        webTestClient.get().uri("/auth/spotifyRedirectParams")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE)
+                .expectBody().json("{\"clientId\":\"test-client-id\",\"redirectUri\":\"http://test-redirect-uri\"}", true);
+    }
+
+    @Test
+    void testLoginCheckSuccess() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        LoginStatus loginStatus = new LoginStatus("test-user-id", TOKEN_EXPIRY, false);
+        when(reactiveAuthService.getLoginStatus("test-user-id", TOKEN_EXPIRY)).thenReturn(Mono.just(loginStatus));
+        when(reactiveAuthService.loginCheckCacheControl(loginStatus)).thenReturn(CacheControl.maxAge(Duration.ofSeconds(300)).cachePrivate());
+
+        webTestClient.get().uri("/auth/loginCheck")
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofSeconds(300)).cachePrivate())
+                .expectHeader().valueEquals(HttpHeaders.ETAG, loginStatus.eTag())
+                .expectBody().json("{\"userId\":\"test-user-id\",\"expiresAt\":\"2030-01-01T00:00:00Z\",\"spotifyTokenHeld\":false}");
+    }
+
+    @Test
+    void testLoginCheckNotModified304() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        LoginStatus loginStatus = new LoginStatus("test-user-id", TOKEN_EXPIRY, false);
+        when(reactiveAuthService.getLoginStatus("test-user-id", TOKEN_EXPIRY)).thenReturn(Mono.just(loginStatus));
+        when(reactiveAuthService.loginCheckCacheControl(loginStatus)).thenReturn(CacheControl.maxAge(Duration.ofSeconds(300)).cachePrivate());
+
+        webTestClient.get().uri("/auth/loginCheck")
+                .header(HttpHeaders.IF_NONE_MATCH, loginStatus.eTag())
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void testLoginCheckFailureInvalidToken401() {
+        when(jwtUtil.introspect(anyString())).thenReturn(TokenIntrospection.invalid());
+        webTestClient.get().uri("/auth/loginCheck")
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().valueEquals("Access-Control-Allow-Credentials", "true");
+    }
+
+    @Test
+    void testLoginCheckFailureNoCookie401() {
+        webTestClient.get().uri("/auth/loginCheck")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void testProfileSuccess() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        UserProfile userProfile = new UserProfile("test-user-id", "Test User", "test@example.com");
+        when(reactiveAuthService.getUserProfile("test-user-id")).thenReturn(Mono.just(userProfile));
+
+        webTestClient.get().uri("/auth/profile")
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.noCache().cachePrivate())
+                .expectHeader().valueEquals(HttpHeaders.ETAG, userProfile.eTag())
+                .expectBody().json("{\"userId\":\"test-user-id\",\"displayName\":\"Test User\",\"emailAddress\":\"test@example.com\"}");
+    }
+
+    @Test
+    void testProfileNotModified304() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        UserProfile userProfile = new UserProfile("test-user-id", "Test User", "test@example.com");
+        when(reactiveAuthService.getUserProfile("test-user-id")).thenReturn(Mono.just(userProfile));
+
+        webTestClient.get().uri("/auth/profile")
+                .header(HttpHeaders.IF_NONE_MATCH, userProfile.eTag())
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void testProfileFailureUnknownUser404() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        when(reactiveAuthService.getUserProfile("test-user-id")).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/auth/profile")
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testIntrospectSuccessWithServiceTokenAndNoCookie() {
+        List<TokenIntrospection> results = List.of(TokenIntrospection.invalid());
+        when(tokenIntrospectionService.introspect(List.of("invalid-jwt"))).thenReturn(results);
+        when(tokenIntrospectionService.cacheControl(results)).thenReturn(CacheControl.noStore());
+
+        webTestClient.post().uri("/auth/introspect")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer test-service-token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"tokens\":[\"invalid-jwt\"]}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.noStore())
+                .expectBody().json("{\"results\":[{\"valid\":false,\"expiresIn\":0}]}");
+    }
+
+    @Test
+    void testIntrospectFailureWithoutServiceToken401() {
+        webTestClient.post().uri("/auth/introspect")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"tokens\":[\"valid-jwt\"]}")
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        webTestClient.post().uri("/auth/introspect")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer wrong-service-token")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"tokens\":[\"valid-jwt\"]}")
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        verifyNoInteractions(tokenIntrospectionService, jwtUtil);
+    }
+
+    @Test
+    void testLogoutSuccess() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        when(reactiveAuthService.logOut("mock-jwt-value")).thenReturn(Mono.just(true));
+
+        webTestClient.post().uri("/auth/logout")
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.SET_COOKIE, cookie -> cookie.contains("Max-Age=0"));
+    }
+
+    @Test
+    void testLogoutFailureNoValidUser404() {
+        when(jwtUtil.introspect(anyString())).thenReturn(VALID_TOKEN);
+        when(reactiveAuthService.logOut(anyString())).thenReturn(Mono.just(false));
+
+        webTestClient.post().uri("/auth/logout")
+                .cookie("jwt", "mock-jwt-value")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackSuccess() {
+        when(reactiveAuthService.completeAuthentication(anyString(), eq("test-state"), eq("test-login-state")))
+                .thenReturn(Mono.just(Map.of("redirectUri", "http://test-redirect-uri", "jwt", "test-jwt-value")));
+
+        webTestClient.get().uri("/auth/spotifyAuthorizationCallback?code=test-code&state=test-state")
+                .cookie("loginState", "test-login-state")
+                .exchange()
+                .expectStatus().isSeeOther()
+                .expectHeader().location("http://test-redirect-uri")
+                .expectHeader().values(HttpHeaders.SET_COOKIE, cookies -> {
+                    assertTrue(cookies.get(0).startsWith("jwt=test-jwt-value"));
+                    assertTrue(cookies.get(1).startsWith("loginState=;") && cookies.get(1).contains("Max-Age=0"));
+                });
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackSuccessWithoutState() {
+        when(reactiveAuthService.completeAuthentication(anyString(), isNull(), isNull()))
+                .thenReturn(Mono.just(Map.of("redirectUri", "http://test-redirect-uri", "jwt", "test-jwt-value")));
+
+        webTestClient.get().uri("/auth/spotifyAuthorizationCallback?code=test-code")
+                .exchange()
+                .expectStatus().isSeeOther()
+                .expectHeader().values(HttpHeaders.SET_COOKIE, cookies -> {
+                    assertEquals(1, cookies.size());
+                    assertTrue(cookies.get(0).startsWith("jwt=test-jwt-value"));
+                });
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackFailureInvalidLoginState() {
+        when(reactiveAuthService.completeAuthentication(anyString(), eq("forged-state"), isNull()))
+                .thenReturn(Mono.error(new InvalidLoginStateException("OAuth state does not match this browser's login")));
+
+        webTestClient.get().uri("/auth/spotifyAuthorizationCallback?code=test-code&state=forged-state")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE);
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackFailureSpotifyAPIException() {
+        when(reactiveAuthService.completeAuthentication(anyString(), isNull(), isNull()))
+                .thenReturn(Mono.error(new SpotifyAPIException("Spotify API Exception")));
+
+        webTestClient.get().uri("/auth/spotifyAuthorizationCallback?code=test-code")
+                .exchange()
+                .expectStatus().is5xxServerError()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE);
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackFailureKeyException() {
+        when(reactiveAuthService.completeAuthentication(anyString(), isNull(), isNull()))
+                .thenReturn(Mono.error(new InvalidKeyException("Key Exception")));
+
+        webTestClient.get().uri("/auth/spotifyAuthorizationCallback?code=test-code")
+                .exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE);
+    }
+
+    @Test
+    void testSpotifyAuthorizationCallbackFailureBadRequest400() {
+        webTestClient.get().uri("/auth/spotifyAuthorizationCallback")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectHeader().doesNotExist(HttpHeaders.SET_COOKIE);
+    }
+}
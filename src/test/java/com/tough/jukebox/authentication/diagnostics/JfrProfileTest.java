@@ -0,0 +1,39 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrProfileTest {
+
+    private static final Path PROFILE = Path.of("src/main/jfr/jukebox.jfc");
+
+    @Test
+    void testProfileEnablesServiceEvents() throws IOException, ParseException {
+        Map<String, String> settings = Configuration.create(PROFILE).getSettings();
+
+        assertEquals("true", settings.get("com.tough.jukebox.JwtOperation#enabled"));
+        assertEquals("true", settings.get("com.tough.jukebox.SpotifyExchange#enabled"));
+        assertEquals("true", settings.get("com.tough.jukebox.TokenRefreshRun#enabled"));
+    }
+
+    @Test
+    void testProfileOverlaysDefaultSettings() throws IOException, ParseException {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        settings.putAll(Configuration.create(PROFILE).getSettings());
+
+        // a recording started with both settings files accepts the merged result
+        try (Recording recording = new Recording(settings)) {
+            assertEquals("10 ms", recording.getSettings().get("jdk.NativeMethodSample#period"));
+            assertEquals("true", recording.getSettings().get("jdk.GarbageCollection#enabled"));
+        }
+    }
+}
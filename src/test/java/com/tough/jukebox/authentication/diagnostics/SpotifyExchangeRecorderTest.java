@@ -0,0 +1,105 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import com.tough.jukebox.authentication.support.SpotifyStubServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpotifyExchangeRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private SpotifyStubServer spotifyStubServer;
+    private RestTemplate restTemplate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        spotifyStubServer = SpotifyStubServer.start();
+        restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(new SpotifyExchangeRecorder());
+    }
+
+    @AfterEach
+    void tearDown() {
+        spotifyStubServer.close();
+    }
+
+    @Test
+    void testExchangeRecordedWithStatusAndBytes() throws IOException {
+        String requestBody = "grant_type=refresh_token&refresh_token=test-refresh-token";
+        String responseBody;
+
+        try (Recording recording = new Recording()) {
+            recording.enable(SpotifyExchangeEvent.class);
+            recording.start();
+            responseBody = restTemplate.postForObject(spotifyStubServer.getTokenUri(), new HttpEntity<>(requestBody, new HttpHeaders()), String.class);
+            recording.stop();
+
+            List<RecordedEvent> events = readEvents(recording);
+
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals("POST", event.getString("method"));
+            assertEquals("127.0.0.1/api/token", event.getString("endpoint"));
+            assertEquals(200, event.getInt("status"));
+            assertEquals(requestBody.getBytes(StandardCharsets.UTF_8).length, event.getLong("requestBytes"));
+            assertEquals(responseBody.getBytes(StandardCharsets.UTF_8).length, event.getLong("responseBytes"));
+        }
+    }
+
+    @Test
+    void testErrorResponseRecordedWithoutQueryString() throws IOException {
+        try (Recording recording = new Recording()) {
+            recording.enable(SpotifyExchangeEvent.class);
+            recording.start();
+            URI uri = URI.create(spotifyStubServer.getCurrentUserUri() + "?access_token=secret");
+            assertThrows(HttpClientErrorException.class, () -> restTemplate.getForObject(uri, String.class));
+            recording.stop();
+
+            List<RecordedEvent> events = readEvents(recording);
+
+            assertEquals(1, events.size());
+            assertEquals("127.0.0.1/v1/me", events.get(0).getString("endpoint"));
+            assertEquals(401, events.get(0).getInt("status"));
+        }
+    }
+
+    @Test
+    void testSuppressedExchangeNotRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(SpotifyExchangeEvent.class);
+            recording.start();
+            InstrumentationSuppression.suppress(() -> assertThrows(HttpClientErrorException.class,
+                    () -> restTemplate.getForObject(spotifyStubServer.getCurrentUserUri(), String.class)));
+            recording.stop();
+
+            assertTrue(readEvents(recording).isEmpty());
+            assertEquals(1, spotifyStubServer.getUserRequests());
+        }
+    }
+
+    private List<RecordedEvent> readEvents(Recording recording) throws IOException {
+        Path recordingFile = tempDir.resolve("exchange.jfr");
+        recording.dump(recordingFile);
+        return RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getEventType().getName().equals("com.tough.jukebox.SpotifyExchange"))
+                .toList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.tough.jukebox.authentication.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final Object lock = new Object();
+
+    private SimpleMeterRegistry meterRegistry;
+    private VirtualThreadPinningMonitor virtualThreadPinningMonitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        virtualThreadPinningMonitor = new VirtualThreadPinningMonitor(meterRegistry, 10);
+        virtualThreadPinningMonitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        virtualThreadPinningMonitor.stop();
+    }
+
+    @Test
+    void testPinnedVirtualThreadCounted() throws InterruptedException {
+        Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+        Counter pinnedCounter = awaitPinnedCounter();
+
+        assertNotNull(pinnedCounter);
+        assertEquals(getClass().getName(), pinnedCounter.getId().getTag("source"));
+        assertTrue(pinnedCounter.count() >= 1);
+    }
+
+    @Test
+    void testUnpinnedVirtualThreadNotCounted() throws InterruptedException {
+        Thread.ofVirtual().start(this::sleep).join();
+        Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+        // wait for the pinned event, so any event from the unpinned thread would have been delivered too
+        assertNotNull(awaitPinnedCounter());
+        assertEquals(1, meterRegistry.find("jukebox.virtualthreads.pinned").counters().size());
+        assertEquals(1, meterRegistry.get("jukebox.virtualthreads.pinned").counter().count());
+    }
+
+    @Test
+    void testStopClosesRecording() {
+        assertTrue(virtualThreadPinningMonitor.isRunning());
+
+        virtualThreadPinningMonitor.stop();
+
+        assertFalse(virtualThreadPinningMonitor.isRunning());
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            sleep();
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Counter awaitPinnedCounter() throws InterruptedException {
+        // JFR streams deliver events on a roughly one second flush cycle
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Counter counter = meterRegistry.find("jukebox.virtualthreads.pinned").counter();
+            if (counter != null) {
+                return counter;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,179 @@
+package com.tough.jukebox.authentication.integration;
+
+import com.tough.jukebox.authentication.AuthApplication;
+import com.tough.jukebox.authentication.support.LoginRequests;
+import com.tough.jukebox.authentication.support.SpotifyStubServer;
+import com.tough.jukebox.authentication.support.TestKeys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compares concurrent login callbacks on Tomcat's platform-thread pool, Tomcat on virtual threads and the reactive stack.
+// Each callback makes two calls to the Spotify stub (with simulated latency) and a SQLite write.
+//   ./mvnw test -Dtest=LoginThroughputBenchmarkIntegrationTest -Dbenchmark=true
+// Optional: -Dbenchmark.logins=2000 -Dbenchmark.concurrency=400 -Dbenchmark.latencyMs=100 -Dbenchmark.platformThreads=200
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoginThroughputBenchmarkIntegrationTest {
+
+    private static final int LOGINS = Integer.getInteger("benchmark.logins", 2000);
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 400);
+    private static final int SPOTIFY_LATENCY_MILLIS = Integer.getInteger("benchmark.latencyMs", 100);
+    private static final int PLATFORM_THREADS = Integer.getInteger("benchmark.platformThreads", 200);
+    private static final int WARM_UP_LOGINS = 200;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCompareLoginThroughput() throws Exception {
+        try (SpotifyStubServer spotifyStubServer = SpotifyStubServer.start()) {
+            spotifyStubServer.setLatency(Duration.ofMillis(SPOTIFY_LATENCY_MILLIS));
+
+            Result platformThreads = run("platform", spotifyStubServer, "--spring.threads.virtual.enabled=false");
+            Result virtualThreads = run("virtual", spotifyStubServer, "--spring.threads.virtual.enabled=true");
+            Result reactive = run("reactive", spotifyStubServer, "--spring.main.web-application-type=reactive");
+
+            System.out.printf("%d logins, %d concurrent, %d ms Spotify latency per call, %d Tomcat platform threads%n",
+                    LOGINS, CONCURRENCY, SPOTIFY_LATENCY_MILLIS, PLATFORM_THREADS);
+            System.out.println("| Stack | Logins/s | p50 | p99 | Failed | Pinned events |");
+            System.out.println("|---|---|---|---|---|---|");
+            platformThreads.print();
+            virtualThreads.print();
+            reactive.print();
+
+            // failures are reported rather than asserted: concurrent SQLite writers can still surface SQLITE_BUSY
+            assertFalse(platformThreads.latencies.isEmpty());
+            assertFalse(virtualThreads.latencies.isEmpty());
+            assertFalse(reactive.latencies.isEmpty());
+        }
+    }
+
+    private Result run(String label, SpotifyStubServer spotifyStubServer, String stackArgument) throws Exception {
+        try (ConfigurableApplicationContext context = start(label, spotifyStubServer, stackArgument)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            login(port, WARM_UP_LOGINS);
+
+            long startedAt = System.nanoTime();
+            List<Long> latencies = login(port, LOGINS);
+            long elapsedNanos = System.nanoTime() - startedAt;
+
+            double pinnedEvents = context.getBean(MeterRegistry.class).find("jukebox.virtualthreads.pinned").counters()
+                    .stream()
+                    .mapToDouble(Counter::count)
+                    .sum();
+
+            return new Result(label, latencies, elapsedNanos, (long) pinnedEvents);
+        }
+    }
+
+    private ConfigurableApplicationContext start(String label, SpotifyStubServer spotifyStubServer, String stackArgument) {
+        return new SpringApplicationBuilder(AuthApplication.class)
+                .run(
+                        stackArgument,
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "--server.tomcat.accept-count=" + CONCURRENCY,
+                        // measures what each stack can absorb, so nothing is shed
+                        "--CONCURRENCY_LIMIT_ENABLED=false",
+                        "--spring.datasource.url=jdbc:sqlite:" + tempDir.resolve(label + ".sqlite"),
+                        "--logging.level.com.tough.jukebox=WARN",
+                        "--PRIVATE_KEY=" + TestKeys.PRIVATE_KEY,
+                        "--PUBLIC_KEY=" + TestKeys.PUBLIC_KEY,
+                        "--LOGIN_STATE_SECRET=" + TestKeys.LOGIN_STATE_SECRET,
+                        "--SPOTIFY_REDIRECT_URI=http://127.0.0.1/callback",
+                        "--SPOTIFY_APP_CLIENT_ID=benchmark-client-id",
+                        "--SPOTIFY_APP_CLIENT_SECRET=benchmark-client-secret",
+                        "--SPOTIFY_TOKEN_URI=" + spotifyStubServer.getTokenUri(),
+                        "--SPOTIFY_CURRENT_USER_URI=" + spotifyStubServer.getCurrentUserUri(),
+                        "--FRONT_END_REDIRECT=http://127.0.0.1:3000");
+    }
+
+    // returns the latency in nanoseconds of each successful login; failures are recorded as -1
+    private List<Long> login(int port, int logins) throws Exception {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        List<Future<Long>> results = new ArrayList<>(logins);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < logins; i++) {
+                inFlight.acquire();
+                String code = "benchmark-" + i;
+
+                results.add(executor.submit(() -> {
+                    try {
+                        // the redirect params call is the front end's, before the user goes to Spotify; only the callback is timed
+                        HttpRequest request = LoginRequests.callback(httpClient, port, code)
+                                .timeout(Duration.ofSeconds(60))
+                                .build();
+                        long startedAt = System.nanoTime();
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        return response.statusCode() == 303 ? System.nanoTime() - startedAt : -1L;
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+        }
+
+        List<Long> latencies = new ArrayList<>(logins);
+        for (Future<Long> result : results) {
+            latencies.add(result.get());
+        }
+        return latencies;
+    }
+
+    private static final class Result {
+
+        private final String label;
+        private final List<Long> latencies;
+        private final long elapsedNanos;
+        private final long pinnedEvents;
+        private final long failed;
+
+        private Result(String label, List<Long> latencies, long elapsedNanos, long pinnedEvents) {
+            this.label = label;
+            this.latencies = latencies.stream().filter(latency -> latency >= 0).sorted().toList();
+            this.elapsedNanos = elapsedNanos;
+            this.pinnedEvents = pinnedEvents;
+            this.failed = latencies.size() - this.latencies.size();
+        }
+
+        private void print() {
+            double throughput = latencies.size() / (elapsedNanos / 1_000_000_000.0);
+            System.out.printf("| %s | %.1f | %d ms | %d ms | %d | %d |%n",
+                    label, throughput, percentileMillis(0.50), percentileMillis(0.99), failed, pinnedEvents);
+        }
+
+        private long percentileMillis(double percentile) {
+            if (latencies.isEmpty()) {
+                return -1;
+            }
+            int index = (int) Math.ceil(percentile * latencies.size()) - 1;
+            return Duration.ofNanos(latencies.get(Math.max(0, Math.min(index, latencies.size() - 1)))).toMillis();
+        }
+    }
+}
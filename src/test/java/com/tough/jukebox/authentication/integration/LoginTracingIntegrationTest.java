@@ -0,0 +1,135 @@
+package com.tough.jukebox.authentication.integration;
+
+import com.tough.jukebox.authentication.support.LoginRequests;
+import com.tough.jukebox.authentication.support.SpotifyStubServer;
+import com.tough.jukebox.authentication.support.TestKeys;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "management.tracing.sampling.probability=1.0")
+@AutoConfigureObservability
+// closes the context, and its schedulers with it, before the @TempDir database is deleted
+@DirtiesContext
+class LoginTracingIntegrationTest {
+
+    private static final String CALLBACK_SPAN = "http get /auth/spotifyAuthorizationCallback";
+
+    @TempDir
+    static Path tempDir;
+
+    private static SpotifyStubServer spotifyStubServer;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private SdkTracerProvider sdkTracerProvider;
+
+    @TestConfiguration
+    static class InMemoryExporterConfiguration {
+
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        spotifyStubServer = SpotifyStubServer.start();
+
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + tempDir.resolve("tracing.sqlite"));
+        registry.add("TRACING_EXPORT_FILE", () -> tempDir.resolve("spans.jsonl").toString());
+        registry.add("PRIVATE_KEY", () -> TestKeys.PRIVATE_KEY);
+        registry.add("PUBLIC_KEY", () -> TestKeys.PUBLIC_KEY);
+        registry.add("LOGIN_STATE_SECRET", () -> TestKeys.LOGIN_STATE_SECRET);
+        registry.add("SPOTIFY_REDIRECT_URI", () -> "http://127.0.0.1/callback");
+        registry.add("SPOTIFY_APP_CLIENT_ID", () -> "tracing-client-id");
+        registry.add("SPOTIFY_APP_CLIENT_SECRET", () -> "tracing-client-secret");
+        registry.add("SPOTIFY_TOKEN_URI", spotifyStubServer::getTokenUri);
+        registry.add("SPOTIFY_CURRENT_USER_URI", spotifyStubServer::getCurrentUserUri);
+        registry.add("FRONT_END_REDIRECT", () -> "http://127.0.0.1:3000");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        spotifyStubServer.close();
+    }
+
+    @Test
+    void testLoginCallbackStagesShareOneTrace() throws Exception {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpResponse<Void> response = httpClient.send(
+                LoginRequests.callback(httpClient, port, "tracing-code").build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertEquals(303, response.statusCode());
+
+        SpanData callbackSpan = awaitSpan(CALLBACK_SPAN);
+        List<SpanData> traceSpans = spanExporter.getFinishedSpanItems().stream()
+                .filter(span -> span.getTraceId().equals(callbackSpan.getTraceId()))
+                .toList();
+        Map<String, SpanData> spansByName = traceSpans.stream()
+                .collect(Collectors.toMap(SpanData::getName, Function.identity(), (first, second) -> first));
+
+        assertTrue(spansByName.keySet().containsAll(List.of(
+                "spotify authorize", "spotify current_user", "user find", "user update_tokens", "jwt sign")), spansByName.keySet().toString());
+
+        // each Spotify stage wraps the instrumented RestTemplate call, which carries the trace to Spotify
+        SpanData authorizeSpan = spansByName.get("spotify authorize");
+        assertTrue(traceSpans.stream().anyMatch(span -> span.getParentSpanId().equals(authorizeSpan.getSpanId())
+                && span.getName().startsWith("http post")));
+        assertEquals(2, spotifyStubServer.getTraceparents().stream()
+                .filter(traceparent -> traceparent.startsWith("00-" + callbackSpan.getTraceId() + "-"))
+                .count());
+
+        List<String> exportedLines = Files.readAllLines(tempDir.resolve("spans.jsonl"));
+        assertTrue(exportedLines.stream().anyMatch(line -> line.contains("\"traceId\":\"" + callbackSpan.getTraceId() + "\"")
+                && line.contains("\"name\":\"jwt sign\"")));
+    }
+
+    private SpanData awaitSpan(String name) throws InterruptedException {
+        // the server span ends after the response is written, and export is batched
+        for (int attempt = 0; attempt < 50; attempt++) {
+            sdkTracerProvider.forceFlush().join(1, TimeUnit.SECONDS);
+            Optional<SpanData> span = spanExporter.getFinishedSpanItems().stream()
+                    .filter(candidate -> candidate.getName().equals(name))
+                    .findFirst();
+            if (span.isPresent()) {
+                return span.get();
+            }
+            Thread.sleep(100);
+        }
+        return fail("No span named " + name + " was exported: " + spanExporter.getFinishedSpanItems().stream().map(SpanData::getName).toList());
+    }
+}
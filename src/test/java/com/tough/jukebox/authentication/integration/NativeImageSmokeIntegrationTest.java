@@ -0,0 +1,157 @@
+package com.tough.jukebox.authentication.integration;
+
+import com.tough.jukebox.authentication.support.LoginRequests;
+import com.tough.jukebox.authentication.support.SpotifyStubServer;
+import com.tough.jukebox.authentication.support.TestKeys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Boots a packaged build of the service as a separate process against a temporary SQLite file and the Spotify stub.
+// Run after `./mvnw -Pnative native:compile` with:
+//   ./mvnw test -Dtest=NativeImageSmokeIntegrationTest -Dsmoke.command=target/jukebox-authentication-service
+// smoke.command also accepts a JVM launch line (e.g. "java -jar target/<jar>") to compare figures.
+@EnabledIfSystemProperty(named = "smoke.command", matches = ".+")
+class NativeImageSmokeIntegrationTest {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoginFlowAgainstPackagedBuild() throws Exception {
+        try (SpotifyStubServer spotifyStubServer = SpotifyStubServer.start()) {
+            int port = findFreePort();
+            Path databaseFile = tempDir.resolve("smoke.sqlite");
+
+            long launchedAt = System.nanoTime();
+            Process process = launch(port, databaseFile, spotifyStubServer);
+
+            try {
+                HttpResponse<String> firstResponse = awaitFirstResponse(process, port);
+                long startupMillis = Duration.ofNanos(System.nanoTime() - launchedAt).toMillis();
+                assertEquals(401, firstResponse.statusCode());
+
+                HttpResponse<String> callbackResponse = send(LoginRequests.callback(httpClient, port, "smoke-code"));
+                assertEquals(303, callbackResponse.statusCode());
+
+                String jwtCookie = callbackResponse.headers().allValues("Set-Cookie").stream()
+                        .filter(cookie -> cookie.startsWith("jwt="))
+                        .findFirst().orElseThrow().split(";")[0];
+                assertTrue(jwtCookie.startsWith("jwt="));
+                assertTrue(Files.exists(databaseFile));
+
+                HttpResponse<String> loginCheckResponse = send(get(port, "/auth/loginCheck").header("Cookie", jwtCookie));
+                assertEquals(200, loginCheckResponse.statusCode());
+
+                HttpResponse<String> logoutResponse = send(HttpRequest.newBuilder(uri(port, "/auth/logout"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .header("Cookie", jwtCookie));
+                assertEquals(200, logoutResponse.statusCode());
+
+                assertEquals(1, spotifyStubServer.getTokenRequests());
+                assertEquals(1, spotifyStubServer.getUserRequests());
+
+                System.out.printf("Smoke test [%s]: first response after %d ms, resident set size %d KiB%n",
+                        System.getProperty("smoke.command"), startupMillis, residentSetSizeKiB(process));
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+    }
+
+    private Process launch(int port, Path databaseFile, SpotifyStubServer spotifyStubServer) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(System.getProperty("smoke.command").trim().split("\\s+")));
+        command.add("--server.port=" + port);
+        command.add("--spring.datasource.url=jdbc:sqlite:" + databaseFile);
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(tempDir.resolve("smoke.log").toFile());
+
+        Map<String, String> environment = processBuilder.environment();
+        environment.put("PRIVATE_KEY", TestKeys.PRIVATE_KEY);
+        environment.put("PUBLIC_KEY", TestKeys.PUBLIC_KEY);
+        environment.put("LOGIN_STATE_SECRET", TestKeys.LOGIN_STATE_SECRET);
+        environment.put("SPOTIFY_REDIRECT_URI", "http://127.0.0.1:" + port + "/auth/spotifyAuthorizationCallback");
+        environment.put("SPOTIFY_APP_CLIENT_ID", "smoke-client-id");
+        environment.put("SPOTIFY_APP_CLIENT_SECRET", "smoke-client-secret");
+        environment.put("SPOTIFY_TOKEN_URI", spotifyStubServer.getTokenUri());
+        environment.put("SPOTIFY_CURRENT_USER_URI", spotifyStubServer.getCurrentUserUri());
+        environment.put("FRONT_END_REDIRECT", "http://127.0.0.1:3000");
+        // the warm-up's own connection to Spotify would count as a second user request
+        environment.put("WARM_UP_ENABLED", "false");
+
+        return processBuilder.start();
+    }
+
+    private HttpResponse<String> awaitFirstResponse(Process process, int port) throws Exception {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                fail("Service exited during startup:\n" + Files.readString(tempDir.resolve("smoke.log")));
+            }
+            try {
+                return send(get(port, "/auth/loginCheck"));
+            } catch (ConnectException notListeningYet) {
+                Thread.sleep(10);
+            }
+        }
+        return fail("Service did not respond within " + STARTUP_TIMEOUT);
+    }
+
+    private long residentSetSizeKiB(Process process) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest.Builder get(int port, String path) {
+        return HttpRequest.newBuilder(uri(port, path)).GET();
+    }
+
+    private URI uri(int port, String path) {
+        return URI.create("http://127.0.0.1:" + port + path);
+    }
+
+    private int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
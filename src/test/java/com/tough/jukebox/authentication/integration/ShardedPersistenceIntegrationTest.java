@@ -0,0 +1,152 @@
+package com.tough.jukebox.authentication.integration;
+
+import com.tough.jukebox.authentication.config.ShardMetadata;
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.service.ShardRouter;
+import com.tough.jukebox.authentication.service.UserService;
+import com.tough.jukebox.authentication.support.TestKeys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {"DATABASE_SHARD_COUNT=3", "WARM_UP_ENABLED=false"})
+// a cached context would keep its schedulers writing to the shard files after the @TempDir is deleted
+@DirtiesContext
+class ShardedPersistenceIntegrationTest {
+
+    private static final int SHARDS = 3;
+
+    @TempDir
+    static Path tempDir;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> shardUrl(0));
+        registry.add("DATABASE_SHARD_URL_TEMPLATE", () -> "jdbc:sqlite:" + tempDir.resolve("shard-%d.sqlite"));
+        registry.add("PRIVATE_KEY", () -> TestKeys.PRIVATE_KEY);
+        registry.add("PUBLIC_KEY", () -> TestKeys.PUBLIC_KEY);
+        registry.add("SPOTIFY_REDIRECT_URI", () -> "http://127.0.0.1/callback");
+        registry.add("SPOTIFY_APP_CLIENT_ID", () -> "sharded-client-id");
+        registry.add("SPOTIFY_APP_CLIENT_SECRET", () -> "sharded-client-secret");
+        // never called: no token in this test comes due while the context is up
+        registry.add("SPOTIFY_TOKEN_URI", () -> "http://127.0.0.1:9/api/token");
+        registry.add("SPOTIFY_CURRENT_USER_URI", () -> "http://127.0.0.1:9/v1/me");
+        registry.add("FRONT_END_REDIRECT", () -> "http://127.0.0.1:3000");
+    }
+
+    @Test
+    void testUsersAreStoredOnTheirShardAndScannedAcrossAll() throws SQLException {
+        // due after the scheduler's start-up run, so nothing refreshes them during the test
+        Instant expiry = Instant.now().plusSeconds(240).truncatedTo(ChronoUnit.SECONDS);
+        List<String> spotifyUserIds = IntStream.range(0, 12).mapToObj(i -> "sharded-user-" + i).toList();
+        spotifyUserIds.forEach(spotifyUserId -> userService.updateSpotifyTokens(user(spotifyUserId), token(spotifyUserId, expiry)));
+
+        for (int shard = 0; shard < SHARDS; shard++) {
+            Set<String> storedUserIds = spotifyUserIdsOn(shard);
+            assertFalse(storedUserIds.isEmpty(), "shard " + shard + " holds no users");
+            for (String storedUserId : storedUserIds) {
+                assertEquals(shard, ShardRouter.shardOf(storedUserId, SHARDS));
+            }
+        }
+        spotifyUserIds.forEach(spotifyUserId -> assertTrue(userService.getUserBySpotifyUserId(spotifyUserId).isPresent()));
+
+        Instant now = Instant.now();
+        assertEquals(Set.copyOf(spotifyUserIds), spotifyUserIdsOf(userService.getUsersWithExpiringTokens(now, now.plusSeconds(300))));
+        assertEquals(12, userService.countUsersWithExpiringTokens(now, now.plusSeconds(300)));
+        assertEquals(Set.copyOf(spotifyUserIds), spotifyUserIdsOf(userService.getUsersWithTokensExpiringBefore(spotifyUserIds, now.plusSeconds(300))));
+
+        userService.rebuildTokenExpiryIndex();
+        assertEquals(Set.copyOf(spotifyUserIds), spotifyUserIdsOf(userService.getUsersWithExpiringTokens(now, now.plusSeconds(300))));
+
+        Map<String, Instant> lastSeen = spotifyUserIds.stream().collect(Collectors.toMap(Function.identity(), spotifyUserId -> now));
+        userService.recordLastSeen(lastSeen);
+        assertEquals(Set.copyOf(spotifyUserIds), spotifyUserIdsOf(userService.getActiveUsersWithExpiringTokens(now, now.plusSeconds(300), now.minusSeconds(1))));
+    }
+
+    @Test
+    void testClearUserTokensOnlyTouchesTheUsersShard() {
+        Instant expiry = Instant.now().plusSeconds(240).truncatedTo(ChronoUnit.SECONDS);
+        userService.updateSpotifyTokens(user("logout-user"), token("logout-user", expiry));
+
+        assertTrue(userService.clearUserTokens("logout-user"));
+        assertFalse(userService.hasValidSpotifyToken("logout-user", Instant.now()));
+        assertEquals(SHARDS, shardRouter.getShardCount());
+    }
+
+    @Test
+    void testEachShardRecordsItsPlaceInTheLayout() throws SQLException {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            try (Connection connection = DriverManager.getConnection(shardUrl(shard))) {
+                int recordedShard = shard;
+                assertDoesNotThrow(() -> ShardMetadata.recordOrVerify(connection, recordedShard, SHARDS));
+                // what a restart with DATABASE_SHARD_COUNT=2 would check
+                assertThrows(IllegalStateException.class, () -> ShardMetadata.recordOrVerify(connection, recordedShard, 2));
+            }
+        }
+    }
+
+    private static Set<String> spotifyUserIdsOn(int shard) throws SQLException {
+        Set<String> spotifyUserIds = new HashSet<>();
+        try (Connection connection = DriverManager.getConnection(shardUrl(shard));
+             Statement statement = connection.createStatement();
+             ResultSet row = statement.executeQuery("SELECT spotify_user_id FROM \"user\" WHERE spotify_user_id LIKE 'sharded-user-%'")) {
+            while (row.next()) {
+                spotifyUserIds.add(row.getString(1));
+            }
+        }
+        return spotifyUserIds;
+    }
+
+    private static String shardUrl(int shard) {
+        return "jdbc:sqlite:" + tempDir.resolve(shard == 0 ? "primary.sqlite" : "shard-" + shard + ".sqlite");
+    }
+
+    private static Set<String> spotifyUserIdsOf(List<User> users) {
+        return users.stream().map(User::getSpotifyUserId).collect(Collectors.toSet());
+    }
+
+    private static User user(String spotifyUserId) {
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        user.setDisplayName(spotifyUserId + "-name");
+        user.setEmailAddress(spotifyUserId + "@example.com");
+        return user;
+    }
+
+    private static SpotifyToken token(String spotifyUserId, Instant expiry) {
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAccessToken(spotifyUserId + "-access");
+        spotifyToken.setRefreshToken(spotifyUserId + "-refresh");
+        spotifyToken.setTokenExpiry(expiry);
+        return spotifyToken;
+    }
+}
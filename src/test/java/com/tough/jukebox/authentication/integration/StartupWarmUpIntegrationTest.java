@@ -0,0 +1,104 @@
+package com.tough.jukebox.authentication.integration;
+
+import com.tough.jukebox.authentication.support.SpotifyStubServer;
+import com.tough.jukebox.authentication.support.TestKeys;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "WARM_UP_ITERATIONS=20")
+// the database is in a @TempDir, so the context must not be cached past this class
+@DirtiesContext
+class StartupWarmUpIntegrationTest {
+
+    // Spotify calls the stand-in had seen when readiness moved to ACCEPTING_TRAFFIC
+    private static final AtomicInteger USER_REQUESTS_WHEN_READY = new AtomicInteger(-1);
+    private static final AtomicInteger TOKEN_REQUESTS_WHEN_READY = new AtomicInteger(-1);
+
+    @TempDir
+    static Path tempDir;
+
+    private static SpotifyStubServer spotifyStubServer;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @TestConfiguration
+    static class ReadinessListenerConfiguration {
+
+        @Bean
+        ApplicationListener<AvailabilityChangeEvent<ReadinessState>> readinessListener() {
+            return event -> {
+                if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+                    USER_REQUESTS_WHEN_READY.compareAndSet(-1, spotifyStubServer.getUserRequests());
+                    TOKEN_REQUESTS_WHEN_READY.compareAndSet(-1, spotifyStubServer.getTokenRequests());
+                }
+            };
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        spotifyStubServer = SpotifyStubServer.start();
+
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + tempDir.resolve("warmup.sqlite"));
+        registry.add("PRIVATE_KEY", () -> TestKeys.PRIVATE_KEY);
+        registry.add("PUBLIC_KEY", () -> TestKeys.PUBLIC_KEY);
+        registry.add("SPOTIFY_REDIRECT_URI", () -> "http://127.0.0.1/callback");
+        registry.add("SPOTIFY_APP_CLIENT_ID", () -> "warmup-client-id");
+        registry.add("SPOTIFY_APP_CLIENT_SECRET", () -> "warmup-client-secret");
+        registry.add("SPOTIFY_TOKEN_URI", spotifyStubServer::getTokenUri);
+        registry.add("SPOTIFY_CURRENT_USER_URI", spotifyStubServer::getCurrentUserUri);
+        registry.add("FRONT_END_REDIRECT", () -> "http://127.0.0.1:3000");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        spotifyStubServer.close();
+    }
+
+    @Test
+    void testReadinessFollowsWarmUp() throws Exception {
+        assertEquals(1, USER_REQUESTS_WHEN_READY.get());
+        assertEquals(1, TOKEN_REQUESTS_WHEN_READY.get());
+
+        HttpResponse<String> readiness = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/actuator/health/readiness")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, readiness.statusCode());
+        assertTrue(readiness.body().contains("\"UP\""), readiness.body());
+
+        assertEquals(1, meterRegistry.get("jukebox.startup.warmup").tag("step", "total").timer().count());
+        // the warm-up runs below the instrumentation; only it and logins look users up or call Spotify
+        assertNull(meterRegistry.find("jukebox.jwt.operations").timer());
+        assertNull(meterRegistry.find("spring.data.repository.invocations").tag("method", "findBySpotifyUserId").timer());
+        assertNull(meterRegistry.find("spring.data.repository.invocations").tag("method", "existsBySpotifyUserIdAndSpotifyTokenTokenExpiryAfter").timer());
+        assertNull(meterRegistry.find("jukebox.spotify.requests").timer());
+        assertNull(meterRegistry.find("http.client.requests").timer());
+    }
+}
@@ -0,0 +1,86 @@
+package com.tough.jukebox.authentication.repository.integration;
+
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A database created by the service before Flyway, with the schema hibernate ddl-auto=update generated then. Loading
+// the entities selects every mapped column, so a column missing a migration fails here
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BaselineSchemaMigrationIntegrationTest {
+
+    private static final Instant TOKEN_EXPIRY = Instant.ofEpochMilli(1743769800000L);
+
+    @TempDir
+    static Path tempDir;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        Path database = tempDir.resolve("baseline.sqlite");
+        // the supplier is read more than once while the context starts
+        registry.add("spring.datasource.url", () -> {
+            if (Files.notExists(database)) {
+                createBaselineDatabase("jdbc:sqlite:" + database);
+            }
+            return "jdbc:sqlite:" + database;
+        });
+    }
+
+    @Test
+    void testExistingUserIsReadableAndWritableAfterMigration() {
+        User user = userRepository.findBySpotifyUserId("existingSpotifyUserId").orElseThrow();
+
+        assertEquals("existingDisplayName", user.getDisplayName());
+        assertEquals(0L, user.getVersion());
+        assertEquals(0L, user.getSpotifyToken().getVersion());
+        assertEquals(TOKEN_EXPIRY, user.getSpotifyToken().getTokenExpiry());
+        assertNull(user.getLastSeenAt());
+
+        assertEquals(1, userRepository.updateSpotifyToken("existingSpotifyUserId", "new-access-token", "new-refresh-token",
+                "test-client-id", TOKEN_EXPIRY.plusSeconds(3600)));
+
+        SpotifyToken spotifyToken = userRepository.findBySpotifyUserId("existingSpotifyUserId").orElseThrow().getSpotifyToken();
+        assertEquals("new-access-token", spotifyToken.getAccessToken());
+        assertEquals(1L, spotifyToken.getVersion());
+    }
+
+    private static void createBaselineDatabase(String url) {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE spotify_token (id integer, access_token varchar(255) not null unique, " +
+                    "refresh_token varchar(255) not null unique, token_expiry timestamp not null, primary key (id))");
+            statement.executeUpdate("CREATE TABLE user (id integer, display_name varchar(255) not null unique, " +
+                    "email_address varchar(255) not null unique, spotify_user_id varchar(255) not null unique, " +
+                    "spotify_token_id bigint unique, primary key (id))");
+            statement.executeUpdate("INSERT INTO spotify_token (id, access_token, refresh_token, token_expiry) " +
+                    "VALUES (1, 'existing-access-token', 'existing-refresh-token', " + TOKEN_EXPIRY.toEpochMilli() + ")");
+            statement.executeUpdate("INSERT INTO user (id, display_name, email_address, spotify_user_id, spotify_token_id) " +
+                    "VALUES (1, 'existingDisplayName', 'existing@email.address', 'existingSpotifyUserId', 1)");
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
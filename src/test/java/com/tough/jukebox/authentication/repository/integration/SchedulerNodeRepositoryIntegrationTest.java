@@ -0,0 +1,54 @@
+package com.tough.jukebox.authentication.repository.integration;
+
+import com.tough.jukebox.authentication.model.SchedulerNode;
+import com.tough.jukebox.authentication.repository.SchedulerNodeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SchedulerNodeRepositoryIntegrationTest {
+
+    @Autowired
+    SchedulerNodeRepository schedulerNodeRepository;
+
+    @Test
+    void testFindLiveNodeIds() {
+        Instant now = Instant.now();
+        schedulerNodeRepository.save(new SchedulerNode("node-b", now));
+        schedulerNodeRepository.save(new SchedulerNode("node-a", now.minus(Duration.ofSeconds(10))));
+        schedulerNodeRepository.save(new SchedulerNode("node-c", now.minus(Duration.ofMinutes(5))));
+
+        assertEquals(List.of("node-a", "node-b"), schedulerNodeRepository.findLiveNodeIds(now.minus(Duration.ofSeconds(45))));
+    }
+
+    @Test
+    void testHeartbeatUpdatesExistingRow() {
+        Instant now = Instant.now();
+        schedulerNodeRepository.save(new SchedulerNode("node-a", now.minus(Duration.ofMinutes(5))));
+        schedulerNodeRepository.save(new SchedulerNode("node-a", now));
+
+        assertEquals(1, schedulerNodeRepository.count());
+        assertEquals(List.of("node-a"), schedulerNodeRepository.findLiveNodeIds(now.minus(Duration.ofSeconds(45))));
+    }
+
+    @Test
+    void testDeleteExpiredNodes() {
+        Instant now = Instant.now();
+        schedulerNodeRepository.save(new SchedulerNode("node-a", now));
+        schedulerNodeRepository.save(new SchedulerNode("node-b", now.minus(Duration.ofMinutes(5))));
+
+        assertEquals(1, schedulerNodeRepository.deleteExpiredNodes(now.minus(Duration.ofMinutes(1))));
+        assertEquals(List.of("node-a"), schedulerNodeRepository.findAll().stream().map(SchedulerNode::getNodeId).toList());
+    }
+}
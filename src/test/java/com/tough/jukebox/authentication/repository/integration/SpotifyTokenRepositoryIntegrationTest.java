@@ -0,0 +1,79 @@
+package com.tough.jukebox.authentication.repository.integration;
+
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.repository.SpotifyTokenRepository;
+import com.tough.jukebox.authentication.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SpotifyTokenRepositoryIntegrationTest {
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    SpotifyTokenRepository spotifyTokenRepository;
+
+    @Test
+    void testDeleteOrphanedTokens() {
+        saveUserWithToken("testSpotifyUserId1");
+        saveUserWithToken("testSpotifyUserId2");
+        saveUserWithToken("testSpotifyUserId3");
+
+        userRepository.clearSpotifyToken("testSpotifyUserId1");
+        userRepository.clearSpotifyToken("testSpotifyUserId2");
+
+        assertEquals(2, spotifyTokenRepository.deleteOrphanedTokens(500));
+        assertEquals(1, spotifyTokenRepository.count());
+        assertNotNull(userRepository.findBySpotifyUserId("testSpotifyUserId3").orElseThrow().getSpotifyToken());
+    }
+
+    @Test
+    void testDeleteOrphanedTokensRespectsChunkSize() {
+        saveUserWithToken("testSpotifyUserId1");
+        saveUserWithToken("testSpotifyUserId2");
+        saveUserWithToken("testSpotifyUserId3");
+
+        userRepository.clearSpotifyToken("testSpotifyUserId1");
+        userRepository.clearSpotifyToken("testSpotifyUserId2");
+        userRepository.clearSpotifyToken("testSpotifyUserId3");
+
+        assertEquals(2, spotifyTokenRepository.deleteOrphanedTokens(2));
+        assertEquals(1, spotifyTokenRepository.deleteOrphanedTokens(2));
+        assertEquals(0, spotifyTokenRepository.count());
+    }
+
+    @Test
+    void testDeleteOrphanedTokensNoOrphansExist() {
+        saveUserWithToken("testSpotifyUserId1");
+
+        assertEquals(0, spotifyTokenRepository.deleteOrphanedTokens(500));
+        assertEquals(1, spotifyTokenRepository.count());
+    }
+
+    private void saveUserWithToken(String spotifyUserId) {
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        user.setEmailAddress(spotifyUserId + "@email.address");
+        user.setDisplayName(spotifyUserId + "DisplayName");
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+        spotifyToken.setAccessToken(spotifyUserId + "-access-token");
+        spotifyToken.setRefreshToken(spotifyUserId + "-refresh-token");
+        user.setSpotifyToken(spotifyToken);
+
+        userRepository.save(user);
+    }
+}
@@ -7,6 +7,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.Instant;
@@ -25,6 +28,9 @@ class UserRepositoryIntegrationTest {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    TestEntityManager testEntityManager;
+
     @Test
     void testSaveUser() {
         User user = new User();
@@ -135,6 +141,147 @@ class UserRepositoryIntegrationTest {
         assertTrue(usersWithTokensExpiringSoon.isEmpty());
     }
 
+    @Test
+    void testCountUsersWithSpotifyTokenExpiringBetweenAndExpired() {
+        saveUserWithTokenExpiry("expiringUser", Instant.now().plusSeconds(600));
+        saveUserWithTokenExpiry("expiredUser", Instant.now().minusSeconds(600));
+        saveUserWithTokenExpiry("freshUser", Instant.now().plusSeconds(3600));
+
+        assertEquals(1, userRepository.countUsersWithSpotifyTokenExpiringBetween(Instant.now(), Instant.now().plusSeconds(900)));
+        assertEquals(1, userRepository.countUsersWithExpiredSpotifyToken(Instant.now()));
+    }
+
+    @Test
+    void testExistsBySpotifyUserIdWithUnexpiredToken() {
+        saveUserWithTokenExpiry("freshUser", Instant.now().plusSeconds(3600));
+        saveUserWithTokenExpiry("expiredUser", Instant.now().minusSeconds(600));
+
+        assertTrue(userRepository.existsBySpotifyUserIdAndSpotifyTokenTokenExpiryAfter("freshUser", Instant.now()));
+        assertFalse(userRepository.existsBySpotifyUserIdAndSpotifyTokenTokenExpiryAfter("expiredUser", Instant.now()));
+        assertFalse(userRepository.existsBySpotifyUserIdAndSpotifyTokenTokenExpiryAfter("unknownUser", Instant.now()));
+    }
+
+    @Test
+    void testUpdateLastSeenAtNeverMovesBackwards() {
+        saveUserWithTokenExpiry("activeUser", Instant.now().plusSeconds(3600));
+        Instant seenAt = Instant.parse("2025-03-01T12:00:00Z");
+
+        assertEquals(1, userRepository.updateLastSeenAt("activeUser", seenAt));
+        assertEquals(0, userRepository.updateLastSeenAt("activeUser", seenAt.minusSeconds(60)));
+        assertEquals(0, userRepository.updateLastSeenAt("unknownUser", seenAt));
+
+        User user = userRepository.findBySpotifyUserId("activeUser").orElseThrow();
+        assertEquals(seenAt, user.getLastSeenAt());
+        assertEquals(0, user.getVersion());
+    }
+
+    @Test
+    void testFindActiveUsersWithSpotifyTokenExpiringSoon() {
+        Instant expiringSoon = Instant.now().plusSeconds(120);
+        saveUserWithTokenExpiry("activeUser", expiringSoon);
+        saveUserWithTokenExpiry("idleUser", expiringSoon);
+        saveUserWithTokenExpiry("neverSeenUser", expiringSoon);
+        userRepository.updateLastSeenAt("activeUser", Instant.now().minusSeconds(3600));
+        userRepository.updateLastSeenAt("idleUser", Instant.now().minusSeconds(7 * 24 * 3600));
+
+        List<User> users = userRepository.findActiveUsersWithSpotifyTokenExpiringSoon(
+                Instant.now(), Instant.now().plusSeconds(300), Instant.now().minusSeconds(24 * 3600));
+
+        assertEquals(List.of("activeUser"), users.stream().map(User::getSpotifyUserId).toList());
+    }
+
+    @Test
+    void testFindUsersWithSpotifyTokenExpiringBefore() {
+        saveUserWithTokenExpiry("expiredUser", Instant.now().minusSeconds(3600));
+        saveUserWithTokenExpiry("freshUser", Instant.now().plusSeconds(3600));
+        saveUserWithTokenExpiry("unrequestedUser", Instant.now().minusSeconds(3600));
+
+        List<User> users = userRepository.findUsersWithSpotifyTokenExpiringBefore(
+                List.of("expiredUser", "freshUser"), Instant.now().plusSeconds(300));
+
+        assertEquals(List.of("expiredUser"), users.stream().map(User::getSpotifyUserId).toList());
+    }
+
+    @Test
+    void testFindSpotifyUserIdsWithExpiredSpotifyTokenMostRecentlyActiveFirst() {
+        saveUserWithTokenExpiry("neverSeenUser", Instant.now().minusSeconds(600));
+        saveUserWithTokenExpiry("idleUser", Instant.now().minusSeconds(600));
+        saveUserWithTokenExpiry("activeUser", Instant.now().minusSeconds(600));
+        saveUserWithTokenExpiry("freshUser", Instant.now().plusSeconds(600));
+        userRepository.updateLastSeenAt("idleUser", Instant.now().minusSeconds(7 * 24 * 3600));
+        userRepository.updateLastSeenAt("activeUser", Instant.now().minusSeconds(60));
+        userRepository.updateLastSeenAt("freshUser", Instant.now());
+
+        assertEquals(List.of("activeUser", "idleUser", "neverSeenUser"),
+                userRepository.findSpotifyUserIdsWithExpiredSpotifyToken(Instant.now(), Limit.of(10)));
+        assertEquals(List.of("activeUser"),
+                userRepository.findSpotifyUserIdsWithExpiredSpotifyToken(Instant.now(), Limit.of(1)));
+        assertEquals(List.of("activeUser"),
+                userRepository.findActiveSpotifyUserIdsWithExpiredSpotifyToken(Instant.now(), Instant.now().minusSeconds(24 * 3600), Limit.of(10)));
+    }
+
+    @Test
+    void testFailedRefreshesAreSkippedUntilDueAndQuarantinedUntilLogin() {
+        Instant expiringSoon = Instant.now().plusSeconds(120);
+        Long backingOffTokenId = saveUserWithTokenExpiry("backingOffUser", expiringSoon).getSpotifyToken().getId();
+        Long revokedTokenId = saveUserWithTokenExpiry("revokedUser", expiringSoon).getSpotifyToken().getId();
+        Long healthyTokenId = saveUserWithTokenExpiry("healthyUser", expiringSoon).getSpotifyToken().getId();
+
+        assertEquals(1, userRepository.recordRefreshFailure(backingOffTokenId, "backingOffUser-refresh-token", Instant.now().plusSeconds(600)));
+        assertEquals(1, userRepository.quarantineRefreshToken(revokedTokenId, "revokedUser-refresh-token", Instant.now()));
+        assertEquals(0, userRepository.recordRefreshFailure(healthyTokenId, "replaced-refresh-token", Instant.now().plusSeconds(600)));
+        assertEquals(0, userRepository.quarantineRefreshToken(backingOffTokenId, "healthyUser-refresh-token", Instant.now()));
+
+        assertEquals(List.of("healthyUser"), userRepository.findUsersWithSpotifyTokenExpiringSoon(Instant.now(), Instant.now().plusSeconds(300))
+                .stream().map(User::getSpotifyUserId).toList());
+        assertEquals(List.of("healthyUser"), userRepository.findUsersWithSpotifyTokenExpiringBefore(
+                List.of("backingOffUser", "revokedUser", "healthyUser"), Instant.now().plusSeconds(300))
+                .stream().map(User::getSpotifyUserId).toList());
+        assertEquals(List.of("backingOffUser", "healthyUser"), userRepository.findUsersWithSpotifyTokenExpiringBefore(
+                List.of("backingOffUser", "revokedUser", "healthyUser"), Instant.now().plusSeconds(700))
+                .stream().map(User::getSpotifyUserId).toList());
+        assertEquals(1, userRepository.countUsersWithQuarantinedSpotifyToken());
+        assertEquals(1, userRepository.findBySpotifyUserId("revokedUser").orElseThrow().getSpotifyToken().getRefreshFailures());
+
+        // logging in again stores a working token and lifts the quarantine
+        userRepository.updateSpotifyToken("revokedUser", "revokedUser-new-access-token", "revokedUser-new-refresh-token", null, expiringSoon.plusSeconds(3600));
+
+        SpotifyToken restoredToken = userRepository.findBySpotifyUserId("revokedUser").orElseThrow().getSpotifyToken();
+        assertEquals(0, restoredToken.getRefreshFailures());
+        assertNull(restoredToken.getQuarantinedAt());
+        assertEquals(0, userRepository.countUsersWithQuarantinedSpotifyToken());
+    }
+
+    @Test
+    void testFindTokenExpiriesAfterPagesByUserId() {
+        saveUserWithTokenExpiry("firstUser", Instant.now().plusSeconds(60));
+        saveUserWithTokenExpiry("secondUser", Instant.now().plusSeconds(120));
+        saveUserWithTokenExpiry("thirdUser", Instant.now().plusSeconds(180));
+        Long firstId = userRepository.findIdBySpotifyUserId("firstUser").orElseThrow();
+
+        List<Object[]> page = userRepository.findTokenExpiriesAfter(firstId, Limit.of(1));
+
+        assertEquals(1, page.size());
+        assertEquals(userRepository.findIdBySpotifyUserId("secondUser").orElseThrow(), page.get(0)[0]);
+        assertInstanceOf(Instant.class, page.get(0)[1]);
+
+        List<User> users = userRepository.findUsersWithSpotifyTokenExpiringSoon(
+                List.of(firstId, (Long) page.get(0)[0]), Instant.now(), Instant.now().plusSeconds(90));
+
+        assertEquals(List.of("firstUser"), users.stream().map(User::getSpotifyUserId).toList());
+    }
+
+    @Test
+    void testCountUsersWithExpiredSpotifyTokenIgnoresUsersWithoutToken() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+        userRepository.save(user);
+
+        assertEquals(0, userRepository.countUsersWithExpiredSpotifyToken(Instant.now()));
+    }
+
     @Test
     void testFindBySpotifyUserId() {
         User user = new User();
@@ -150,9 +297,179 @@ class UserRepositoryIntegrationTest {
         assertEquals("testDisplayName", returnedUser.get().getDisplayName());
     }
 
+    @Test
+    void testUpdateProfileOnlyWritesChangedProfile() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+        userRepository.save(user);
+
+        assertEquals(0, userRepository.updateProfile("testSpotifyUserId", "testDisplayName", "test@email.address"));
+        assertEquals(1, userRepository.updateProfile("testSpotifyUserId", "renamedDisplayName", "test@email.address"));
+
+        User updatedUser = userRepository.findBySpotifyUserId("testSpotifyUserId").orElseThrow();
+        assertEquals("renamedDisplayName", updatedUser.getDisplayName());
+        assertEquals("test@email.address", updatedUser.getEmailAddress());
+    }
+
     @Test
     void testFindBySpotifyUserIdNoUserExists() {
         Optional<User> user = userRepository.findBySpotifyUserId("testSpotifyUserId");
         assertTrue(user.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testUpdateSpotifyTokenFailureStaleVersion() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+        spotifyToken.setAccessToken("test-access-token-original");
+        spotifyToken.setRefreshToken("test-refresh-token-original");
+        user.setSpotifyToken(spotifyToken);
+
+        testEntityManager.persistAndFlush(user);
+        testEntityManager.detach(user);
+        testEntityManager.detach(spotifyToken);
+
+        User concurrentUser = userRepository.findBySpotifyUserId("testSpotifyUserId").orElseThrow();
+        concurrentUser.getSpotifyToken().setAccessToken("test-access-token-concurrent");
+        userRepository.saveAndFlush(concurrentUser);
+
+        spotifyToken.setAccessToken("test-access-token-stale");
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userRepository.saveAndFlush(user));
+    }
+
+    @Test
+    void testClearSpotifyToken() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+        spotifyToken.setAccessToken("test-access-token");
+        spotifyToken.setRefreshToken("test-refresh-token");
+        user.setSpotifyToken(spotifyToken);
+
+        userRepository.save(user);
+
+        assertEquals(1, userRepository.clearSpotifyToken("testSpotifyUserId"));
+        assertNull(userRepository.findBySpotifyUserId("testSpotifyUserId").orElseThrow().getSpotifyToken());
+    }
+
+    @Test
+    void testClearSpotifyTokenNoUserExists() {
+        assertEquals(0, userRepository.clearSpotifyToken("testSpotifyUserId"));
+    }
+
+    @Test
+    void testUpdateSpotifyTokenKeepsRefreshTokenWhenNoneSupplied() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(LocalDateTime.of(2025, 4, 4, 11, 30).toInstant(ZoneOffset.UTC));
+        spotifyToken.setAccessToken("test-access-token-original");
+        spotifyToken.setRefreshToken("test-refresh-token-original");
+        user.setSpotifyToken(spotifyToken);
+
+        userRepository.save(user);
+
+        int updatedRows = userRepository.updateSpotifyToken(
+                "testSpotifyUserId",
+                "test-access-token-updated",
+                null,
+                null,
+                LocalDateTime.of(2025, 4, 4, 12, 30).toInstant(ZoneOffset.UTC)
+        );
+
+        SpotifyToken updatedToken = userRepository.findBySpotifyUserId("testSpotifyUserId").orElseThrow().getSpotifyToken();
+
+        assertEquals(1, updatedRows);
+        assertEquals("test-access-token-updated", updatedToken.getAccessToken());
+        assertEquals("test-refresh-token-original", updatedToken.getRefreshToken());
+        assertNull(updatedToken.getClientId());
+        assertEquals(LocalDateTime.of(2025, 4, 4, 12, 30).toInstant(ZoneOffset.UTC), updatedToken.getTokenExpiry());
+    }
+
+    @Test
+    void testUpdateSpotifyTokenReplacesRefreshToken() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(LocalDateTime.of(2025, 4, 4, 11, 30).toInstant(ZoneOffset.UTC));
+        spotifyToken.setAccessToken("test-access-token-original");
+        spotifyToken.setRefreshToken("test-refresh-token-original");
+        user.setSpotifyToken(spotifyToken);
+
+        userRepository.save(user);
+
+        int updatedRows = userRepository.updateSpotifyToken(
+                "testSpotifyUserId",
+                "test-access-token-updated",
+                "test-refresh-token-updated",
+                "second-client-id",
+                LocalDateTime.of(2025, 4, 4, 12, 30).toInstant(ZoneOffset.UTC)
+        );
+
+        SpotifyToken updatedToken = userRepository.findBySpotifyUserId("testSpotifyUserId").orElseThrow().getSpotifyToken();
+
+        assertEquals(1, updatedRows);
+        assertEquals("test-refresh-token-updated", updatedToken.getRefreshToken());
+        assertEquals("second-client-id", updatedToken.getClientId());
+    }
+
+    @Test
+    void testUpdateSpotifyTokenIgnoresOlderToken() {
+        User user = new User();
+        user.setSpotifyUserId("testSpotifyUserId");
+        user.setEmailAddress("test@email.address");
+        user.setDisplayName("testDisplayName");
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(LocalDateTime.of(2025, 4, 4, 12, 30).toInstant(ZoneOffset.UTC));
+        spotifyToken.setAccessToken("test-access-token-original");
+        spotifyToken.setRefreshToken("test-refresh-token-original");
+        user.setSpotifyToken(spotifyToken);
+
+        userRepository.save(user);
+
+        int updatedRows = userRepository.updateSpotifyToken(
+                "testSpotifyUserId",
+                "test-access-token-stale",
+                null,
+                null,
+                LocalDateTime.of(2025, 4, 4, 11, 30).toInstant(ZoneOffset.UTC)
+        );
+
+        assertEquals(0, updatedRows);
+        assertEquals("test-access-token-original", userRepository.findBySpotifyUserId("testSpotifyUserId").orElseThrow().getSpotifyToken().getAccessToken());
+    }
+
+    private User saveUserWithTokenExpiry(String spotifyUserId, Instant tokenExpiry) {
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        user.setEmailAddress(spotifyUserId + "@email.address");
+        user.setDisplayName(spotifyUserId);
+
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setTokenExpiry(tokenExpiry);
+        spotifyToken.setAccessToken(spotifyUserId + "-access-token");
+        spotifyToken.setRefreshToken(spotifyUserId + "-refresh-token");
+        user.setSpotifyToken(spotifyToken);
+
+        return userRepository.save(user);
+    }
+}
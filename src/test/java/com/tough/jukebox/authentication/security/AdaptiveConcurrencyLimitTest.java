@@ -0,0 +1,127 @@
+package com.tough.jukebox.authentication.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1500);
+
+    @Test
+    void testRejectsOnceLimitIsInFlight() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(FAST, false);
+
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void testLimitGrowsWhileBusyAndOnTime() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 6, 2.0);
+
+        for (int i = 0; i < 10; i++) {
+            fill(limit);
+            limit.release(FAST, false);
+            drain(limit);
+        }
+
+        assertEquals(6, limit.getLimit());
+    }
+
+    @Test
+    void testLimitHeldWhenMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 64, 2.0);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, false);
+        }
+
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    void testLimitBacksOffOnFailedResponses() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 64, 2.0);
+
+        assertTrue(limit.tryAcquire());
+        limit.release(FAST, true);
+
+        assertEquals(18, limit.getLimit());
+    }
+
+    @Test
+    void testLimitBacksOffWhenBusyAndSlow() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 64, 2.0);
+        warmUpBaseline(limit);
+
+        for (int i = 0; i < 30; i++) {
+            fill(limit);
+            while (limit.getInFlight() > 0) {
+                limit.release(SLOW, false);
+            }
+        }
+
+        assertEquals(2, limit.getLimit());
+        assertEquals(2, limit.retryAfterSeconds());
+    }
+
+    @Test
+    void testSlowResponsesAtLowLoadKeepLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 64, 2.0);
+        warmUpBaseline(limit);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(SLOW, false);
+        }
+
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    void testBurstAdmittedAfterQuietPeriodOfMixedLatency() {
+        // no floor, so only the algorithm keeps the limit up
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(24, 1, 96, 2.0);
+
+        // one request at a time, alternating cheap cookie checks with costlier RSA signing
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(i % 2 == 0 ? TimeUnit.MICROSECONDS.toNanos(300) : TimeUnit.MILLISECONDS.toNanos(2), false);
+        }
+        assertEquals(24, limit.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+    }
+
+    private static void warmUpBaseline(AdaptiveConcurrencyLimit limit) {
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST, false);
+        }
+    }
+
+    private static void fill(AdaptiveConcurrencyLimit limit) {
+        while (limit.tryAcquire()) {
+            // admit until the limit is reached
+        }
+    }
+
+    private static void drain(AdaptiveConcurrencyLimit limit) {
+        while (limit.getInFlight() > 0) {
+            limit.release(FAST, false);
+        }
+    }
+}
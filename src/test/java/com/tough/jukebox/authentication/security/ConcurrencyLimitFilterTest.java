@@ -0,0 +1,93 @@
+package com.tough.jukebox.authentication.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // a maximum of 4 starts each bulkhead at a limit of 1
+        concurrencyLimitFilter = new ConcurrencyLimitFilter(meterRegistry, true, 4, 4, 4, 4, 2.0);
+    }
+
+    @Test
+    void testLoginOverLimitShedWhileSessionCallsProceed() throws ServletException, IOException {
+        MockHttpServletResponse secondLogin = new MockHttpServletResponse();
+        MockHttpServletResponse loginCheck = new MockHttpServletResponse();
+
+        // the second login and the loginCheck arrive while the first login is still in the chain
+        FilterChain firstLoginChain = (request, response) -> {
+            concurrencyLimitFilter.doFilter(get("/auth/spotifyAuthorizationCallback"), secondLogin, new MockFilterChain());
+            concurrencyLimitFilter.doFilter(get("/auth/loginCheck"), loginCheck, new MockFilterChain());
+        };
+        MockHttpServletResponse firstLogin = new MockHttpServletResponse();
+        concurrencyLimitFilter.doFilter(get("/auth/spotifyAuthorizationCallback"), firstLogin, firstLoginChain);
+
+        assertEquals(200, firstLogin.getStatus());
+        assertEquals(503, secondLogin.getStatus());
+        assertEquals("1", secondLogin.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals("true", secondLogin.getHeader("Access-Control-Allow-Credentials"));
+        assertEquals(200, loginCheck.getStatus());
+
+        assertEquals(1, meterRegistry.get("jukebox.concurrency.rejected").tag("bulkhead", "login").counter().count());
+        assertEquals(0, meterRegistry.get("jukebox.concurrency.rejected").tag("bulkhead", "session").counter().count());
+        assertEquals(0, meterRegistry.get("jukebox.concurrency.inflight").tag("bulkhead", "login").gauge().value());
+    }
+
+    @Test
+    void testIntrospectAndRedirectParamsHaveTheirOwnBulkheads() throws ServletException, IOException {
+        MockHttpServletResponse secondIntrospect = new MockHttpServletResponse();
+        MockHttpServletResponse redirectParams = new MockHttpServletResponse();
+        MockHttpServletResponse loginCheck = new MockHttpServletResponse();
+
+        FilterChain firstIntrospectChain = (request, response) -> {
+            concurrencyLimitFilter.doFilter(post("/auth/introspect"), secondIntrospect, new MockFilterChain());
+            concurrencyLimitFilter.doFilter(get("/auth/spotifyRedirectParams"), redirectParams, new MockFilterChain());
+            concurrencyLimitFilter.doFilter(get("/auth/loginCheck"), loginCheck, new MockFilterChain());
+        };
+        concurrencyLimitFilter.doFilter(post("/auth/introspect"), new MockHttpServletResponse(), firstIntrospectChain);
+
+        assertEquals(503, secondIntrospect.getStatus());
+        assertEquals(200, redirectParams.getStatus());
+        assertEquals(200, loginCheck.getStatus());
+
+        assertEquals(1, meterRegistry.get("jukebox.concurrency.rejected").tag("bulkhead", "introspect").counter().count());
+        assertEquals(0, meterRegistry.get("jukebox.concurrency.rejected").tag("bulkhead", "redirect").counter().count());
+        assertEquals(0, meterRegistry.get("jukebox.concurrency.rejected").tag("bulkhead", "session").counter().count());
+    }
+
+    @Test
+    void testDisabledFilterAdmitsEverything() throws ServletException, IOException {
+        ConcurrencyLimitFilter disabledFilter = new ConcurrencyLimitFilter(new SimpleMeterRegistry(), false, 4, 4, 4, 4, 2.0);
+        MockHttpServletResponse secondLogin = new MockHttpServletResponse();
+
+        disabledFilter.doFilter(get("/auth/spotifyAuthorizationCallback"), new MockHttpServletResponse(),
+                (request, response) -> disabledFilter.doFilter(get("/auth/spotifyAuthorizationCallback"), secondLogin, new MockFilterChain()));
+
+        assertEquals(200, secondLogin.getStatus());
+    }
+
+    private static MockHttpServletRequest get(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    private static MockHttpServletRequest post(String uri) {
+        return new MockHttpServletRequest("POST", uri);
+    }
+}
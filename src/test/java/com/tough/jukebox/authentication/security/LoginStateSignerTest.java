@@ -0,0 +1,88 @@
+package com.tough.jukebox.authentication.security;
+
+import com.tough.jukebox.authentication.config.SecurityConfig;
+import com.tough.jukebox.authentication.support.TestKeys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LoginStateSignerTest {
+
+    @Mock
+    private SecurityConfig securityConfig;
+
+    private LoginStateSigner loginStateSigner;
+
+    @BeforeEach
+    void setUp() {
+        when(securityConfig.getLoginStateSecret()).thenReturn(TestKeys.LOGIN_STATE_SECRET);
+        loginStateSigner = new LoginStateSigner(securityConfig);
+    }
+
+    @Test
+    void testIssuedStateVerifiesToItsClientId() {
+        LoginState loginState = loginStateSigner.issue("second-client-id");
+
+        assertEquals(Optional.of("second-client-id"), loginStateSigner.verify(loginState.state(), loginState.cookieValue()));
+        // the client id is not what goes to Spotify and back
+        assertFalse(loginState.state().contains("second-client-id"));
+    }
+
+    @Test
+    void testStateFromAnotherLoginIsRejected() {
+        LoginState victimLogin = loginStateSigner.issue("test-client-id");
+        LoginState attackerLogin = loginStateSigner.issue("test-client-id");
+
+        assertTrue(loginStateSigner.verify(attackerLogin.state(), victimLogin.cookieValue()).isEmpty());
+        assertTrue(loginStateSigner.verify(victimLogin.state(), null).isEmpty());
+        assertTrue(loginStateSigner.verify(null, victimLogin.cookieValue()).isEmpty());
+    }
+
+    @Test
+    void testTamperedClientIdIsRejected() {
+        LoginState loginState = loginStateSigner.issue("test-client-id");
+        String[] parts = loginState.cookieValue().split("\\.");
+        String chosenApp = Base64.getUrlEncoder().withoutPadding().encodeToString("chosen-client-id".getBytes(StandardCharsets.UTF_8));
+
+        String tampered = parts[0] + "." + chosenApp + "." + parts[2] + "." + parts[3];
+
+        assertTrue(loginStateSigner.verify(loginState.state(), tampered).isEmpty());
+        assertTrue(loginStateSigner.verify(loginState.state(), "not-a-login-state").isEmpty());
+    }
+
+    @Test
+    void testStateIssuedByAnotherInstanceVerifies() {
+        LoginState loginState = new LoginStateSigner(securityConfig).issue("test-client-id");
+
+        assertEquals(Optional.of("test-client-id"), loginStateSigner.verify(loginState.state(), loginState.cookieValue()));
+    }
+
+    @Test
+    void testDisabledWithoutSecret() {
+        LoginState loginState = loginStateSigner.issue("test-client-id");
+        when(securityConfig.getLoginStateSecret()).thenReturn("");
+
+        LoginStateSigner disabledSigner = new LoginStateSigner(securityConfig);
+
+        assertFalse(disabledSigner.isEnabled());
+        assertThrows(IllegalStateException.class, () -> disabledSigner.issue("test-client-id"));
+        assertTrue(disabledSigner.verify(loginState.state(), loginState.cookieValue()).isEmpty());
+    }
+
+    @Test
+    void testShortSecretRejected() {
+        when(securityConfig.getLoginStateSecret()).thenReturn("too-short");
+
+        assertThrows(IllegalStateException.class, () -> new LoginStateSigner(securityConfig));
+    }
+}
@@ -1,26 +1,47 @@
 package com.tough.jukebox.authentication.service;
 
 import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
 import com.tough.jukebox.authentication.config.WebConfig;
+import com.tough.jukebox.authentication.diagnostics.TokenRefreshRunEvent;
+import com.tough.jukebox.authentication.exception.InvalidGrantException;
+import com.tough.jukebox.authentication.exception.InvalidLoginStateException;
 import com.tough.jukebox.authentication.exception.SpotifyAPIException;
 import com.tough.jukebox.authentication.model.SpotifyToken;
 import com.tough.jukebox.authentication.model.User;
 import com.tough.jukebox.authentication.security.JwtUtil;
+import com.tough.jukebox.authentication.security.LoginState;
+import com.tough.jukebox.authentication.security.LoginStateSigner;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,18 +62,92 @@ class AuthServiceTest {
     @Mock
     private SpotifyAPIService spotifyAPIService;
 
+    @Mock
+    private ClusterMembershipService clusterMembershipService;
+
+    @Mock
+    private TokenRefreshMonitor tokenRefreshMonitor;
+
+    @Mock
+    private TokenRefreshConfig tokenRefreshConfig;
+
+    @Mock
+    private UserActivityTracker userActivityTracker;
+
+    @Mock
+    private TokenRefreshCheckpoint tokenRefreshCheckpoint;
+
+    @Mock
+    private SpotifyCredentialPool spotifyCredentialPool;
+
+    @Mock
+    private TokenCatchUpQueue tokenCatchUpQueue;
+
+    @Mock
+    private UserProfileCache userProfileCache;
+
+    @Mock
+    private LoginStateSigner loginStateSigner;
+
     @InjectMocks
     private AuthService authService;
 
     @Test
     void testGetSpotifyRedirectParamsSuccessful() {
-        when(spotifyConfig.getSpotifyAppClientId()).thenReturn("test-client-id");
+        when(spotifyCredentialPool.forLogin()).thenReturn(new SpotifyCredential("test-client-id", "test-client-secret"));
         when(spotifyConfig.getSpotifyRedirectUri()).thenReturn("test-redirect-uri");
+        when(loginStateSigner.isEnabled()).thenReturn(true);
+        when(loginStateSigner.issue("test-client-id")).thenReturn(new LoginState("test-state", "test-login-state"));
 
         Map<String, String> params = authService.getSpotifyRedirectParams();
 
         assertEquals("test-redirect-uri", params.get("redirectUri"));
         assertEquals("test-client-id", params.get("clientId"));
+        assertEquals("test-state", params.get("state"));
+        assertEquals("test-login-state", params.get("loginState"));
+    }
+
+    @Test
+    void testGetSpotifyRedirectParamsWithoutLoginStateSecret() {
+        when(spotifyCredentialPool.forLogin()).thenReturn(new SpotifyCredential("test-client-id", "test-client-secret"));
+        when(spotifyConfig.getSpotifyRedirectUri()).thenReturn("test-redirect-uri");
+
+        Map<String, String> params = authService.getSpotifyRedirectParams();
+
+        assertEquals(Map.of("clientId", "test-client-id", "redirectUri", "test-redirect-uri"), params);
+        verify(loginStateSigner, never()).issue(anyString());
+    }
+
+    @Test
+    void testStartupFailsWithSeveralAppsAndNoLoginStateSecret() {
+        when(spotifyCredentialPool.size()).thenReturn(2);
+
+        assertThrows(IllegalStateException.class, () -> new AuthService(spotifyConfig, webConfig, userService, spotifyAPIService, jwtUtil,
+                clusterMembershipService, tokenRefreshMonitor, tokenRefreshConfig, userActivityTracker, tokenRefreshCheckpoint,
+                spotifyCredentialPool, tokenCatchUpQueue, userProfileCache, loginStateSigner));
+    }
+
+    @Test
+    void testGetLoginStatusReportsSpotifyToken() {
+        Instant jwtExpiry = Instant.now().plusSeconds(1800);
+        when(userService.hasValidSpotifyToken(eq("test-user-id"), any(Instant.class))).thenReturn(true);
+
+        LoginStatus loginStatus = authService.getLoginStatus("test-user-id", jwtExpiry);
+
+        assertEquals(new LoginStatus("test-user-id", jwtExpiry, true), loginStatus);
+        assertNotEquals(loginStatus.eTag(), new LoginStatus("test-user-id", jwtExpiry, false).eTag());
+        assertNotEquals(loginStatus.eTag(), new LoginStatus("test-user-id", jwtExpiry.plusSeconds(60), true).eTag());
+    }
+
+    @Test
+    void testLoginCheckCacheControlCappedByTokenLifetime() {
+        when(webConfig.getLoginCheckMaxAgeSeconds()).thenReturn(300L);
+
+        String longLived = authService.loginCheckCacheControl(new LoginStatus("test-user-id", Instant.now().plusSeconds(1800), true)).getHeaderValue();
+        String shortLived = authService.loginCheckCacheControl(new LoginStatus("test-user-id", Instant.now().plusSeconds(90).plusMillis(500), true)).getHeaderValue();
+
+        assertEquals("max-age=300, private", longLived);
+        assertEquals("max-age=90, private", shortLived);
     }
 
     @Test
@@ -85,7 +180,7 @@ class AuthServiceTest {
     }
 
     @Test
-    void testCompleteAuthenticationNewUserProfileSuccess() throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException {
+    void testCompleteAuthenticationNewUserProfileSuccess() throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidLoginStateException {
         SpotifyToken spotifyToken = mockSpotifyAPIAuthenticate();
 
         when(webConfig.getFrontendRedirectUri()).thenReturn("http://127.0.0.1/test-frontend-redirect-uri");
@@ -99,7 +194,7 @@ class AuthServiceTest {
 
         when(jwtUtil.createToken(anyString())).thenReturn("test-jwt");
 
-        Map<String, String> response = authService.completeAuthentication("spotify-auth-code");
+        Map<String, String> response = authService.completeAuthentication("spotify-auth-code", "test-state", "test-login-state");
 
         Map<String, String> authenticationMap = new HashMap<>();
         authenticationMap.put("jwt", "test-jwt");
@@ -109,38 +204,399 @@ class AuthServiceTest {
     }
 
     @Test
-    void testCompleteAuthenticationExistingUserNewSessionSuccess() throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException {
+    void testCompleteAuthenticationExistingUserNewSessionSuccess() throws SpotifyAPIException, NoSuchAlgorithmException, InvalidKeySpecException, InvalidLoginStateException {
         SpotifyToken spotifyToken = mockSpotifyAPIAuthenticate();
 
         when(webConfig.getFrontendRedirectUri()).thenReturn("http://127.0.0.1/test-frontend-redirect-uri");
 
         User user = new User();
         user.setSpotifyUserId("test-spotify-user-id");
+        user.setDisplayName("Renamed");
         when(spotifyAPIService.fetchUserDetails(any(String.class))).thenReturn(user);
 
-        when(userService.getUserBySpotifyUserId(anyString())).thenReturn(Optional.of(user));
-        doNothing().when(userService).updateSpotifyTokens(user, spotifyToken);
+        User userEntity = new User();
+        userEntity.setSpotifyUserId("test-spotify-user-id");
+        userEntity.setDisplayName("Old Name");
+        when(userService.getUserBySpotifyUserId(anyString())).thenReturn(Optional.of(userEntity));
+        doNothing().when(userService).updateSpotifyTokens(userEntity, spotifyToken);
 
         when(jwtUtil.createToken(anyString())).thenReturn("test-jwt");
 
-        Map<String, String> response = authService.completeAuthentication("spotify-auth-code");
+        Map<String, String> response = authService.completeAuthentication("spotify-auth-code", "test-state", "test-login-state");
 
         Map<String, String> authenticationMap = new HashMap<>();
         authenticationMap.put("jwt", "test-jwt");
         authenticationMap.put("redirectUri", "http://127.0.0.1/test-frontend-redirect-uri");
 
         assertEquals(authenticationMap, response);
+        // the profile may have changed on Spotify and been cached before this login, so it is stored before the evict
+        InOrder inOrder = inOrder(userService, userProfileCache);
+        inOrder.verify(userService).updateUserProfile(userEntity, user);
+        inOrder.verify(userProfileCache).evict("test-spotify-user-id");
     }
 
     @Test
     void testCompleteAuthenticationFailureNoUserReturnedFromSpotify() throws SpotifyAPIException {
 
         mockSpotifyAPIAuthenticate();
-        when(webConfig.getFrontendRedirectUri()).thenReturn("http://127.0.0.1/test-frontend-redirect-uri");
 
         when(spotifyAPIService.fetchUserDetails(any(String.class))).thenThrow(new SpotifyAPIException("No User Returned from Spotify"));
 
-        assertThrows(SpotifyAPIException.class, () -> authService.completeAuthentication("spotify-auth-code"));
+        assertThrows(SpotifyAPIException.class, () -> authService.completeAuthentication("spotify-auth-code", "test-state", "test-login-state"));
+    }
+
+    @Test
+    void testVerifyLoginStateAcceptsMissingStateWithSingleApp() throws InvalidLoginStateException {
+        when(spotifyCredentialPool.size()).thenReturn(1);
+        when(spotifyCredentialPool.forClientId(null)).thenReturn(Optional.of(new SpotifyCredential("test-client-id", "test-client-secret")));
+
+        assertEquals("test-client-id", authService.verifyLoginState(null, null));
+        verifyNoInteractions(loginStateSigner);
+    }
+
+    @Test
+    void testVerifyLoginStateRejectsMissingStateWithSeveralApps() {
+        when(spotifyCredentialPool.size()).thenReturn(2);
+
+        assertThrows(InvalidLoginStateException.class, () -> authService.verifyLoginState(null, "test-login-state"));
+    }
+
+    @Test
+    void testCompleteAuthenticationRejectsStateNotIssuedToThisBrowser() {
+        when(loginStateSigner.verify("forged-state", "test-login-state")).thenReturn(Optional.empty());
+
+        assertThrows(InvalidLoginStateException.class, () -> authService.completeAuthentication("spotify-auth-code", "forged-state", "test-login-state"));
+        // the code is never redeemed, so a forged callback cannot log the browser into someone else's account
+        verifyNoInteractions(spotifyAPIService);
+    }
+
+    @Test
+    void testCheckTokenRefreshRecordsFailuresAndContinues() throws SpotifyAPIException {
+        User failingUser = userWithToken("failing-user", "failing-refresh-token");
+        User refreshedUser = userWithToken("refreshed-user", "refreshed-refresh-token");
+        List<User> users = List.of(failingUser, refreshedUser);
+
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("failing-refresh-token", null)).thenThrow(new SpotifyAPIException("Spotify token could not be retrieved from the Spotify API"));
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        when(spotifyAPIService.refreshAccessToken("refreshed-refresh-token", null)).thenReturn(newSpotifyToken);
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(userService).updateSpotifyTokens(refreshedUser, newSpotifyToken);
+        verify(tokenRefreshMonitor).recordRefresh(eq(failingUser.getSpotifyToken().getTokenExpiry()), any(Instant.class), eq(false));
+        verify(tokenRefreshMonitor).recordRefresh(eq(refreshedUser.getSpotifyToken().getTokenExpiry()), any(Instant.class), eq(true));
+        verify(tokenRefreshMonitor).recordRun(any(Instant.class), eq(2), eq(1));
+    }
+
+    @Test
+    void testCheckTokenRefreshUsesTheAppThatIssuedTheToken() throws SpotifyAPIException {
+        User user = userWithToken("second-app-user", "second-app-refresh-token");
+        user.getSpotifyToken().setClientId("second-client-id");
+        List<User> users = List.of(user);
+
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("second-app-refresh-token", "second-client-id")).thenReturn(new SpotifyToken());
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(spotifyAPIService).refreshAccessToken("second-app-refresh-token", "second-client-id");
+    }
+
+    @Test
+    void testInvalidGrantQuarantinesRefreshToken() throws SpotifyAPIException {
+        User revokedUser = userWithToken("revoked-user", "revoked-refresh-token");
+        List<User> users = List.of(revokedUser);
+
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("revoked-refresh-token", null)).thenThrow(new InvalidGrantException("Refresh token revoked"));
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(userService).quarantineRefreshToken(eq(revokedUser), any(Instant.class));
+        verify(userService, never()).recordRefreshFailure(any(), any());
+        verify(tokenRefreshMonitor).recordRefresh(any(), any(Instant.class), eq(false));
+    }
+
+    @Test
+    void testTransientFailureBacksOffExponentially() throws SpotifyAPIException {
+        User failingUser = userWithToken("failing-user", "failing-refresh-token");
+        failingUser.getSpotifyToken().setRefreshFailures(2);
+        List<User> users = List.of(failingUser);
+
+        when(tokenRefreshConfig.getBackoffBase()).thenReturn(Duration.ofMinutes(3));
+        when(tokenRefreshConfig.getBackoffMax()).thenReturn(Duration.ofHours(6));
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("failing-refresh-token", null)).thenThrow(new SpotifyAPIException("Spotify token could not be retrieved from the Spotify API"));
+
+        Instant before = Instant.now();
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        // third consecutive failure: 3 minutes doubled twice
+        ArgumentCaptor<Instant> retryAt = ArgumentCaptor.forClass(Instant.class);
+        verify(userService).recordRefreshFailure(eq(failingUser), retryAt.capture());
+        assertFalse(retryAt.getValue().isBefore(before.plus(Duration.ofMinutes(12))));
+        assertTrue(retryAt.getValue().isBefore(before.plus(Duration.ofMinutes(13))));
+        verify(userService, never()).quarantineRefreshToken(any(), any());
+    }
+
+    @Test
+    void testBackoffIsCapped() throws SpotifyAPIException {
+        User failingUser = userWithToken("failing-user", "failing-refresh-token");
+        failingUser.getSpotifyToken().setRefreshFailures(40);
+        List<User> users = List.of(failingUser);
+
+        when(tokenRefreshConfig.getBackoffBase()).thenReturn(Duration.ofMinutes(3));
+        when(tokenRefreshConfig.getBackoffMax()).thenReturn(Duration.ofHours(6));
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("failing-refresh-token", null)).thenThrow(new SpotifyAPIException("Spotify token could not be retrieved from the Spotify API"));
+
+        Instant before = Instant.now();
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        ArgumentCaptor<Instant> retryAt = ArgumentCaptor.forClass(Instant.class);
+        verify(userService).recordRefreshFailure(eq(failingUser), retryAt.capture());
+        assertTrue(retryAt.getValue().isBefore(before.plus(Duration.ofHours(6)).plusSeconds(60)));
+    }
+
+    @Test
+    void testRateLimitedAppDoesNotBackOffUser() throws SpotifyAPIException {
+        User user = userWithToken("limited-user", "limited-refresh-token");
+        List<User> users = List.of(user);
+        SpotifyCredential credential = new SpotifyCredential("test-client-id", "test-client-secret");
+
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("limited-refresh-token", null)).thenThrow(new SpotifyAPIException("Spotify app test-client-id is rate limited"));
+        when(spotifyCredentialPool.forClientId(null)).thenReturn(Optional.of(credential));
+        when(spotifyCredentialPool.isRateLimited(credential)).thenReturn(true);
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(userService, never()).recordRefreshFailure(any(), any());
+        verify(userService, never()).quarantineRefreshToken(any(), any());
+    }
+
+    @Test
+    void testCatchUpRefreshesOwnedExpiredTokensInQueueOrder() throws SpotifyAPIException {
+        User recentUser = userWithToken("recent-user", "recent-refresh-token");
+        User otherNodesUser = userWithToken("other-nodes-user", "other-refresh-token");
+        User olderUser = userWithToken("older-user", "older-refresh-token");
+        List<User> expiredUsers = List.of(recentUser, otherNodesUser, olderUser);
+
+        when(tokenRefreshConfig.isCatchUpEnabled()).thenReturn(true);
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(tokenCatchUpQueue.nextBatch(any(Instant.class))).thenReturn(expiredUsers);
+        when(clusterMembershipService.selectOwnedUsers(expiredUsers)).thenReturn(List.of(recentUser, olderUser));
+        when(spotifyCredentialPool.forClientId(null)).thenReturn(Optional.of(new SpotifyCredential("test-client-id", "test-client-secret")));
+        when(spotifyAPIService.refreshAccessToken(anyString(), isNull())).thenReturn(new SpotifyToken());
+
+        authService.catchUpExpiredTokens();
+
+        InOrder inOrder = inOrder(spotifyAPIService, tokenRefreshCheckpoint);
+        inOrder.verify(spotifyAPIService).refreshAccessToken("recent-refresh-token", null);
+        inOrder.verify(spotifyAPIService).refreshAccessToken("older-refresh-token", null);
+        inOrder.verify(tokenRefreshCheckpoint).endRun();
+        verify(spotifyAPIService, never()).refreshAccessToken("other-refresh-token", null);
+    }
+
+    @Test
+    void testCatchUpSkipsUsersOfRateLimitedApp() {
+        User user = userWithToken("limited-user", "limited-refresh-token");
+        SpotifyCredential credential = new SpotifyCredential("test-client-id", "test-client-secret");
+
+        when(tokenRefreshConfig.isCatchUpEnabled()).thenReturn(true);
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(tokenCatchUpQueue.nextBatch(any(Instant.class))).thenReturn(List.of(user));
+        when(clusterMembershipService.selectOwnedUsers(List.of(user))).thenReturn(List.of(user));
+        when(spotifyCredentialPool.forClientId(null)).thenReturn(Optional.of(credential));
+        when(spotifyCredentialPool.isRateLimited(credential)).thenReturn(true);
+
+        authService.catchUpExpiredTokens();
+
+        verifyNoInteractions(spotifyAPIService);
+        verify(tokenRefreshMonitor, never()).recordRefresh(any(), any(), anyBoolean());
+    }
+
+    @Test
+    void testCatchUpWaitsForShutdownCheckpoint() {
+        when(tokenRefreshConfig.isCatchUpEnabled()).thenReturn(true);
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(false);
+
+        authService.catchUpExpiredTokens();
+
+        verifyNoInteractions(tokenCatchUpQueue, spotifyAPIService);
+        verify(tokenRefreshCheckpoint, never()).endRun();
+    }
+
+    @Test
+    void testCheckTokenRefreshEmitsRunEvent(@TempDir Path tempDir) throws SpotifyAPIException, IOException {
+        User ownedUser = userWithToken("owned-user", "owned-refresh-token");
+        User otherNodesUser = userWithToken("other-nodes-user", "other-refresh-token");
+        List<User> expiringUsers = List.of(ownedUser, otherNodesUser);
+
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(expiringUsers);
+        when(clusterMembershipService.selectOwnedUsers(expiringUsers)).thenReturn(List.of(ownedUser));
+        when(spotifyAPIService.refreshAccessToken("owned-refresh-token", null)).thenReturn(new SpotifyToken());
+
+        try (Recording recording = new Recording()) {
+            recording.enable(TokenRefreshRunEvent.class);
+            recording.start();
+            ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+            recording.stop();
+
+            Path recordingFile = tempDir.resolve("refresh.jfr");
+            recording.dump(recordingFile);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+                    .filter(event -> event.getEventType().getName().equals("com.tough.jukebox.TokenRefreshRun"))
+                    .toList();
+
+            assertEquals(1, events.size());
+            assertEquals(2, events.get(0).getInt("usersScanned"));
+            assertEquals(1, events.get(0).getInt("usersOwned"));
+            assertEquals(1, events.get(0).getInt("usersRefreshed"));
+            assertEquals(0, events.get(0).getInt("usersFailed"));
+        }
+    }
+
+    @Test
+    void testCheckTokenRefreshActivePolicySkipsIdleUsers() throws SpotifyAPIException {
+        User activeUser = userWithToken("active-user", "active-refresh-token");
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ACTIVE);
+        when(tokenRefreshConfig.getActiveWindow()).thenReturn(Duration.ofHours(24));
+        when(userService.getActiveUsersWithExpiringTokens(any(Instant.class), any(Instant.class), any(Instant.class))).thenReturn(List.of(activeUser));
+        when(clusterMembershipService.selectOwnedUsers(List.of(activeUser))).thenReturn(List.of(activeUser));
+        when(spotifyAPIService.refreshAccessToken("active-refresh-token", null)).thenReturn(new SpotifyToken());
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(userService).getActiveUsersWithExpiringTokens(any(Instant.class), any(Instant.class),
+                argThat(activeSince -> Duration.between(activeSince, Instant.now()).toHours() == 24));
+        verify(userService, never()).getUsersWithExpiringTokens(any(), any());
+        verify(tokenRefreshMonitor).recordRun(any(Instant.class), eq(1), eq(0));
+    }
+
+    @Test
+    void testCheckTokenRefreshStopsTakingUsersOnceShutdownBegins() throws SpotifyAPIException {
+        User firstUser = userWithToken("first-user", "first-refresh-token");
+        User secondUser = userWithToken("second-user", "second-refresh-token");
+        List<User> users = List.of(firstUser, secondUser);
+        ArgumentCaptor<Queue<User>> pendingUsers = ArgumentCaptor.captor();
+
+        when(tokenRefreshCheckpoint.beginRun(pendingUsers.capture())).thenReturn(true);
+        when(tokenRefreshCheckpoint.isStopping()).thenReturn(false, true);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(users);
+        when(clusterMembershipService.selectOwnedUsers(users)).thenReturn(users);
+        when(spotifyAPIService.refreshAccessToken("first-refresh-token", null)).thenReturn(new SpotifyToken());
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(spotifyAPIService, never()).refreshAccessToken("second-refresh-token", null);
+        assertEquals(List.of(secondUser), List.copyOf(pendingUsers.getValue()));
+        verify(tokenRefreshCheckpoint).endRun();
+        verify(tokenRefreshMonitor).recordRun(any(Instant.class), eq(1), eq(0));
+    }
+
+    @Test
+    void testCheckTokenRefreshResumesCheckpointedUsers() throws SpotifyAPIException {
+        User expiredUser = userWithToken("expired-user", "expired-refresh-token");
+        User otherNodesUser = userWithToken("other-nodes-user", "other-refresh-token");
+        List<String> checkpointedUserIds = List.of("expired-user", "other-nodes-user", "refreshed-elsewhere-user");
+
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(tokenRefreshCheckpoint.getPendingUserIds()).thenReturn(checkpointedUserIds);
+        when(userService.getUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(List.of());
+        when(userService.getUsersWithTokensExpiringBefore(eq(checkpointedUserIds), any(Instant.class))).thenReturn(List.of(expiredUser, otherNodesUser));
+        when(clusterMembershipService.selectOwnedUsers(List.of(expiredUser, otherNodesUser))).thenReturn(List.of(expiredUser));
+        when(spotifyAPIService.refreshAccessToken("expired-refresh-token", null)).thenReturn(new SpotifyToken());
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verify(spotifyAPIService, never()).refreshAccessToken("other-refresh-token", null);
+        verify(tokenRefreshCheckpoint).release(List.of("expired-user", "refreshed-elsewhere-user"));
+    }
+
+    @Test
+    void testCheckTokenRefreshSkippedDuringShutdown() {
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(false);
+
+        ReflectionTestUtils.invokeMethod(authService, "checkTokenRefresh");
+
+        verifyNoInteractions(userService, spotifyAPIService, tokenRefreshMonitor);
+        verify(tokenRefreshCheckpoint, never()).endRun();
+    }
+
+    @Test
+    void testFlushUserActivityRefreshesOwnedReturningUsers() throws SpotifyAPIException {
+        Map<String, Instant> lastSeen = Map.of("returning-user", Instant.now(), "other-returning-user", Instant.now(), "active-user", Instant.now());
+        User returningUser = userWithToken("returning-user", "returning-refresh-token");
+        User otherReturningUser = userWithToken("other-returning-user", "other-refresh-token");
+        List<User> returningUsers = List.of(returningUser, otherReturningUser);
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        when(userActivityTracker.drain()).thenReturn(lastSeen);
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ACTIVE);
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(true);
+        when(userService.getUsersWithTokensExpiringBefore(eq(lastSeen.keySet()), any(Instant.class))).thenReturn(returningUsers);
+        when(clusterMembershipService.selectOwnedUsers(returningUsers)).thenReturn(List.of(returningUser));
+        when(spotifyAPIService.refreshAccessToken("returning-refresh-token", null)).thenReturn(newSpotifyToken);
+
+        authService.flushUserActivity();
+
+        verify(userService).recordLastSeen(lastSeen);
+        verify(userService).updateSpotifyTokens(returningUser, newSpotifyToken);
+        verify(spotifyAPIService, never()).refreshAccessToken("other-refresh-token", null);
+        verify(tokenRefreshCheckpoint).endRun();
+    }
+
+    @Test
+    void testFlushUserActivityLeavesReturningUsersDuringShutdown() {
+        Map<String, Instant> lastSeen = Map.of("returning-user", Instant.now());
+        when(userActivityTracker.drain()).thenReturn(lastSeen);
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ACTIVE);
+        when(tokenRefreshCheckpoint.beginRun(any())).thenReturn(false);
+
+        authService.flushUserActivity();
+
+        verify(userService).recordLastSeen(lastSeen);
+        verify(userService, never()).getUsersWithTokensExpiringBefore(any(), any());
+        verifyNoInteractions(spotifyAPIService);
+    }
+
+    @Test
+    void testFlushUserActivityOnlyRecordsUnderAllPolicy() {
+        Map<String, Instant> lastSeen = Map.of("active-user", Instant.now());
+        when(userActivityTracker.drain()).thenReturn(lastSeen);
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ALL);
+
+        authService.flushUserActivity();
+
+        verify(userService).recordLastSeen(lastSeen);
+        verify(userService, never()).getUsersWithTokensExpiringBefore(any(), any());
+        verifyNoInteractions(spotifyAPIService);
+    }
+
+    private User userWithToken(String spotifyUserId, String refreshToken) {
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setRefreshToken(refreshToken);
+        spotifyToken.setTokenExpiry(Instant.now().plusSeconds(120));
+
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        user.setSpotifyToken(spotifyToken);
+        return user;
     }
 
     private SpotifyToken mockSpotifyAPIAuthenticate() throws SpotifyAPIException {
@@ -150,7 +606,8 @@ class AuthServiceTest {
         spotifyToken.setRefreshToken("test-refresh-token");
         spotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
 
-        when(spotifyAPIService.authenticate(anyString())).thenReturn(spotifyToken);
+        when(loginStateSigner.verify("test-state", "test-login-state")).thenReturn(Optional.of("test-client-id"));
+        when(spotifyAPIService.authenticate(anyString(), eq("test-client-id"))).thenReturn(spotifyToken);
 
         return spotifyToken;
     }
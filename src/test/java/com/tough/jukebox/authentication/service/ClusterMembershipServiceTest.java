@@ -0,0 +1,134 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.ClusterConfig;
+import com.tough.jukebox.authentication.model.SchedulerNode;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.repository.SchedulerNodeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterMembershipServiceTest {
+
+    @Mock
+    private SchedulerNodeRepository schedulerNodeRepository;
+
+    @Mock
+    private ClusterConfig clusterConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(clusterConfig.getHeartbeatIntervalMillis()).thenReturn(15000L);
+        lenient().when(clusterConfig.getVirtualNodes()).thenReturn(64);
+    }
+
+    @Test
+    void testSoleNodeOwnsAllUsers() {
+        ClusterMembershipService clusterMembershipService = createService("node-a");
+        when(schedulerNodeRepository.findLiveNodeIds(any(Instant.class))).thenReturn(List.of());
+
+        List<User> users = users(50);
+
+        assertEquals(users, clusterMembershipService.selectOwnedUsers(users));
+        assertEquals(1.0, meterRegistry.get("jukebox.cluster.nodes").gauge().value());
+    }
+
+    @Test
+    void testLiveNodesPartitionUsers() {
+        ClusterMembershipService nodeA = createService("node-a");
+        ClusterMembershipService nodeB = createService("node-b");
+        when(schedulerNodeRepository.findLiveNodeIds(any(Instant.class))).thenReturn(List.of("node-a", "node-b"));
+
+        List<User> users = users(200);
+        List<User> ownedByA = nodeA.selectOwnedUsers(users);
+        List<User> ownedByB = nodeB.selectOwnedUsers(users);
+
+        assertFalse(ownedByA.isEmpty());
+        assertFalse(ownedByB.isEmpty());
+        assertEquals(users.size(), ownedByA.size() + ownedByB.size());
+        assertTrue(ownedByA.stream().noneMatch(ownedByB::contains));
+    }
+
+    @Test
+    void testRebalancesWhenNodeLeaves() {
+        ClusterMembershipService nodeA = createService("node-a");
+        List<User> users = users(200);
+
+        when(schedulerNodeRepository.findLiveNodeIds(any(Instant.class))).thenReturn(List.of("node-a", "node-b"));
+        int ownedWithTwoNodes = nodeA.selectOwnedUsers(users).size();
+
+        when(schedulerNodeRepository.findLiveNodeIds(any(Instant.class))).thenReturn(List.of("node-a"));
+
+        assertTrue(ownedWithTwoNodes < users.size());
+        assertEquals(users.size(), nodeA.selectOwnedUsers(users).size());
+    }
+
+    @Test
+    void testGeneratedNodeIdWhenNotConfigured() {
+        ClusterMembershipService clusterMembershipService = createService("");
+
+        assertFalse(clusterMembershipService.getNodeId().isBlank());
+    }
+
+    @Test
+    void testHeartbeatSavesNodeAndRemovesExpiredNodes() {
+        ClusterMembershipService clusterMembershipService = createService("node-a");
+
+        clusterMembershipService.heartbeat();
+
+        ArgumentCaptor<SchedulerNode> nodeCaptor = ArgumentCaptor.forClass(SchedulerNode.class);
+        verify(schedulerNodeRepository).save(nodeCaptor.capture());
+        assertEquals("node-a", nodeCaptor.getValue().getNodeId());
+        verify(schedulerNodeRepository).deleteExpiredNodes(any(Instant.class));
+    }
+
+    @Test
+    void testLeaveDeregistersNode() {
+        ClusterMembershipService clusterMembershipService = createService("node-a");
+
+        clusterMembershipService.leave();
+
+        verify(schedulerNodeRepository).deleteById("node-a");
+    }
+
+    @Test
+    void testLeaveToleratesDatabaseFailure() {
+        ClusterMembershipService clusterMembershipService = createService("node-a");
+        doThrow(new DataAccessResourceFailureException("closed")).when(schedulerNodeRepository).deleteById("node-a");
+
+        assertDoesNotThrow(clusterMembershipService::leave);
+    }
+
+    private ClusterMembershipService createService(String nodeId) {
+        when(clusterConfig.getNodeId()).thenReturn(nodeId);
+        return new ClusterMembershipService(schedulerNodeRepository, clusterConfig, meterRegistry);
+    }
+
+    private List<User> users(int count) {
+        List<User> users = new ArrayList<>();
+        IntStream.range(0, count).forEach(i -> {
+            User user = new User();
+            user.setSpotifyUserId("spotify-user-" + i);
+            users.add(user);
+        });
+        return users;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tough.jukebox.authentication.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> KEYS = IntStream.range(0, 10_000).mapToObj(i -> "spotify-user-" + i).toList();
+
+    @Test
+    void testSingleNodeOwnsEveryKey() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a"), 64);
+
+        assertTrue(KEYS.stream().allMatch(key -> ring.ownerOf(key).equals("node-a")));
+    }
+
+    @Test
+    void testKeysSpreadAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+
+        Map<String, Integer> keysPerNode = new HashMap<>();
+        KEYS.forEach(key -> keysPerNode.merge(ring.ownerOf(key), 1, Integer::sum));
+
+        assertEquals(3, keysPerNode.size());
+        keysPerNode.values().forEach(count -> assertTrue(count > 2_000 && count < 4_700, "unbalanced: " + keysPerNode));
+    }
+
+    @Test
+    void testJoiningNodeOnlyTakesKeysFromOthers() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-a", "node-b", "node-c", "node-d"), 64);
+
+        long movedKeys = 0;
+        for (String key : KEYS) {
+            String previousOwner = before.ownerOf(key);
+            String newOwner = after.ownerOf(key);
+
+            if (!previousOwner.equals(newOwner)) {
+                assertEquals("node-d", newOwner);
+                movedKeys++;
+            }
+        }
+        assertTrue(movedKeys > 1_500 && movedKeys < 3_500, "moved " + movedKeys);
+    }
+
+    @Test
+    void testOwnershipIndependentOfNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b"), 64);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("node-b", "node-a"), 64);
+
+        assertTrue(KEYS.stream().allMatch(key -> ring.ownerOf(key).equals(reordered.ownerOf(key))));
+    }
+}
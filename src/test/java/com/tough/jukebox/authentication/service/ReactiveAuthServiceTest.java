@@ -0,0 +1,142 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.exception.InvalidLoginStateException;
+import com.tough.jukebox.authentication.exception.SpotifyAPIException;
+import com.tough.jukebox.authentication.model.SpotifyToken;
+import com.tough.jukebox.authentication.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveAuthServiceTest {
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private ReactiveSpotifyAPIService reactiveSpotifyAPIService;
+
+    private Scheduler jpaScheduler;
+    private ReactiveAuthService reactiveAuthService;
+
+    @BeforeEach
+    void setUp() {
+        jpaScheduler = Schedulers.newBoundedElastic(1, 10, "test-jpa");
+        reactiveAuthService = new ReactiveAuthService(authService, reactiveSpotifyAPIService, jpaScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jpaScheduler.dispose();
+    }
+
+    @Test
+    void testCompleteAuthenticationRunsLoginOnJpaScheduler() throws NoSuchAlgorithmException, InvalidKeySpecException, InvalidLoginStateException {
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAccessToken("test-access-token");
+
+        User user = new User();
+        user.setSpotifyUserId("test-spotify-user-id");
+
+        AtomicReference<String> loginThread = new AtomicReference<>();
+
+        when(authService.verifyLoginState("test-state", "test-login-state")).thenReturn("test-client-id");
+        when(reactiveSpotifyAPIService.authenticate("spotify-auth-code", "test-client-id")).thenReturn(Mono.just(spotifyToken));
+        when(reactiveSpotifyAPIService.fetchUserDetails("test-access-token")).thenReturn(Mono.just(user));
+        when(authService.completeLogin(user, spotifyToken)).thenAnswer(invocation -> {
+            loginThread.set(Thread.currentThread().getName());
+            return Map.of("jwt", "test-jwt", "redirectUri", "http://test-redirect-uri");
+        });
+
+        StepVerifier.create(reactiveAuthService.completeAuthentication("spotify-auth-code", "test-state", "test-login-state"))
+                .expectNext(Map.of("jwt", "test-jwt", "redirectUri", "http://test-redirect-uri"))
+                .verifyComplete();
+
+        assertTrue(loginThread.get().startsWith("test-jpa"));
+    }
+
+    @Test
+    void testCompleteAuthenticationFailureNoUserReturnedFromSpotify() throws NoSuchAlgorithmException, InvalidKeySpecException, InvalidLoginStateException {
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setAccessToken("test-access-token");
+
+        when(authService.verifyLoginState("test-state", "test-login-state")).thenReturn("test-client-id");
+        when(reactiveSpotifyAPIService.authenticate("spotify-auth-code", "test-client-id")).thenReturn(Mono.just(spotifyToken));
+        when(reactiveSpotifyAPIService.fetchUserDetails("test-access-token"))
+                .thenReturn(Mono.error(new SpotifyAPIException("No User returned from Spotify")));
+
+        StepVerifier.create(reactiveAuthService.completeAuthentication("spotify-auth-code", "test-state", "test-login-state"))
+                .expectError(SpotifyAPIException.class)
+                .verify();
+
+        verify(authService, never()).completeLogin(any(), any());
+    }
+
+    @Test
+    void testCompleteAuthenticationRejectsForgedStateBeforeCallingSpotify() throws InvalidLoginStateException {
+        when(authService.verifyLoginState("forged-state", "test-login-state")).thenThrow(new InvalidLoginStateException("state mismatch"));
+
+        StepVerifier.create(reactiveAuthService.completeAuthentication("spotify-auth-code", "forged-state", "test-login-state"))
+                .expectError(InvalidLoginStateException.class)
+                .verify();
+
+        verifyNoInteractions(reactiveSpotifyAPIService);
+    }
+
+    @Test
+    void testGetUserProfileAnsweredFromCacheWithoutJpaScheduler() {
+        UserProfile userProfile = new UserProfile("test-spotify-user-id", "Test User", "test@example.com");
+        when(authService.getCachedUserProfile("test-spotify-user-id")).thenReturn(Optional.of(userProfile));
+
+        StepVerifier.create(reactiveAuthService.getUserProfile("test-spotify-user-id"))
+                .expectNext(userProfile)
+                .verifyComplete();
+
+        verify(authService, never()).getUserProfile(any());
+    }
+
+    @Test
+    void testGetUserProfileLoadsOnJpaSchedulerWhenNotCached() {
+        UserProfile userProfile = new UserProfile("test-spotify-user-id", "Test User", "test@example.com");
+        AtomicReference<String> loadThread = new AtomicReference<>();
+
+        when(authService.getCachedUserProfile("test-spotify-user-id")).thenReturn(Optional.empty());
+        when(authService.getUserProfile("test-spotify-user-id")).thenAnswer(invocation -> {
+            loadThread.set(Thread.currentThread().getName());
+            return Optional.of(userProfile);
+        });
+
+        StepVerifier.create(reactiveAuthService.getUserProfile("test-spotify-user-id"))
+                .expectNext(userProfile)
+                .verifyComplete();
+
+        assertTrue(loadThread.get().startsWith("test-jpa"));
+    }
+
+    @Test
+    void testLogoutSuccess() {
+        when(authService.logOut("test-jwt")).thenReturn(true);
+
+        StepVerifier.create(reactiveAuthService.logOut("test-jwt"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,134 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import com.tough.jukebox.authentication.exception.InvalidGrantException;
+import com.tough.jukebox.authentication.exception.SpotifyAPIException;
+import com.tough.jukebox.authentication.support.SpotifyStubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveSpotifyAPIServiceTest {
+
+    @Mock
+    SpotifyConfig spotifyConfig;
+
+    private SpotifyStubServer spotifyStubServer;
+    private SpotifyCredentialPool spotifyCredentialPool;
+    private ReactiveSpotifyAPIService reactiveSpotifyAPIService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        spotifyStubServer = SpotifyStubServer.start();
+
+        lenient().when(spotifyConfig.getSpotifyTokenUri()).thenReturn(spotifyStubServer.getTokenUri());
+        lenient().when(spotifyConfig.getSpotifyCurrentUserUri()).thenReturn(spotifyStubServer.getCurrentUserUri());
+        lenient().when(spotifyConfig.getSpotifyRedirectUri()).thenReturn("http://test-redirect-uri");
+        lenient().when(spotifyConfig.getSpotifyAppCredentials()).thenReturn(List.of(
+                new SpotifyCredential("test-client-id", "test-client-secret"),
+                new SpotifyCredential("second-client-id", "second-client-secret")
+        ));
+
+        spotifyCredentialPool = new SpotifyCredentialPool(spotifyConfig, new SimpleMeterRegistry());
+        reactiveSpotifyAPIService = new ReactiveSpotifyAPIService(WebClient.builder(), spotifyConfig, spotifyCredentialPool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        spotifyStubServer.close();
+    }
+
+    @Test
+    void testAuthenticateSuccess() {
+        StepVerifier.create(reactiveSpotifyAPIService.authenticate("test-auth-code", "second-client-id"))
+                .assertNext(token -> {
+                    assertEquals("stub-access-1", token.getAccessToken());
+                    assertEquals("second-client-id", token.getClientId());
+                    assertEquals("stub-refresh-1", token.getRefreshToken());
+                    assertTrue(token.getTokenExpiry().isAfter(Instant.now()));
+                })
+                .verifyComplete();
+
+        assertEquals(1, spotifyStubServer.getTokenRequests());
+    }
+
+    @Test
+    void testRefreshAccessTokenSuccess() {
+        StepVerifier.create(reactiveSpotifyAPIService.refreshAccessToken("test-refresh-token", null))
+                .assertNext(token -> assertEquals("stub-access-1", token.getAccessToken()))
+                .verifyComplete();
+    }
+
+    @Test
+    void testRefreshAccessTokenFailureThrowsSpotifyAPIException() {
+        when404TokenUri();
+
+        StepVerifier.create(reactiveSpotifyAPIService.refreshAccessToken("test-refresh-token", null))
+                .expectError(SpotifyAPIException.class)
+                .verify();
+    }
+
+    @Test
+    void testRevokedRefreshTokenThrowsInvalidGrantException() {
+        StepVerifier.create(reactiveSpotifyAPIService.refreshAccessToken(SpotifyStubServer.REVOKED_REFRESH_TOKEN, null))
+                .expectError(InvalidGrantException.class)
+                .verify();
+    }
+
+    @Test
+    void testRateLimitedAppIsNotCalled() {
+        spotifyCredentialPool.recordRateLimit(spotifyCredentialPool.forClientId("test-client-id").orElseThrow(), null);
+
+        StepVerifier.create(reactiveSpotifyAPIService.refreshAccessToken("test-refresh-token", "test-client-id"))
+                .expectError(SpotifyAPIException.class)
+                .verify();
+
+        assertEquals(0, spotifyStubServer.getTokenRequests());
+    }
+
+    @Test
+    void testWarmUpConnectionReachesTokenAndApiEndpoints() {
+        reactiveSpotifyAPIService.warmUpConnection().block(Duration.ofSeconds(10));
+
+        assertEquals(1, spotifyStubServer.getTokenRequests());
+        assertEquals(1, spotifyStubServer.getUserRequests());
+    }
+
+    @Test
+    void testFetchUserDetailsSuccess() {
+        StepVerifier.create(reactiveSpotifyAPIService.fetchUserDetails("stub-access-7"))
+                .assertNext(user -> {
+                    assertEquals("stub-user-7", user.getSpotifyUserId());
+                    assertEquals("stub-user-7@jukebox.test", user.getEmailAddress());
+                    assertEquals("Stub User 7", user.getDisplayName());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testFetchUserDetailsFailureThrowsSpotifyAPIException() {
+        StepVerifier.create(reactiveSpotifyAPIService.fetchUserDetails("invalid-access-token"))
+                .expectError(SpotifyAPIException.class)
+                .verify();
+    }
+
+    private void when404TokenUri() {
+        lenient().when(spotifyConfig.getSpotifyTokenUri()).thenReturn(spotifyStubServer.getTokenUri().replace("/api/token", "/missing"));
+    }
+}
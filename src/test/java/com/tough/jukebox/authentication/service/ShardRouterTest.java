@@ -0,0 +1,122 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.ShardRoutingDataSource;
+import com.tough.jukebox.authentication.config.ShardingConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ShardRouterTest {
+
+    private PlatformTransactionManager transactionManager;
+    private ShardRouter shardRouter;
+
+    // what every service test runs against: one shard, work done inline on the calling thread
+    static ShardRouter singleShardRouter() {
+        return new ShardRouter(shardingConfig(1), mock(PlatformTransactionManager.class));
+    }
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        shardRouter = new ShardRouter(shardingConfig(4), transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void testShardOfIsStableAndSpread() {
+        int[] usersPerShard = new int[4];
+        for (int i = 0; i < 4000; i++) {
+            String spotifyUserId = "user-" + i;
+            int shard = shardRouter.shardOf(spotifyUserId);
+            assertEquals(shard, ShardRouter.shardOf(spotifyUserId, 4));
+            usersPerShard[shard]++;
+        }
+
+        for (int users : usersPerShard) {
+            assertTrue(users > 800 && users < 1200, "uneven spread: " + users);
+        }
+    }
+
+    @Test
+    void testOnEachShardBindsEveryShardAndKeepsShardOrder() {
+        List<Integer> boundShards = shardRouter.onEachShard(shard -> ShardRoutingDataSource.getCurrentShard());
+
+        assertEquals(List.of(0, 1, 2, 3), boundShards);
+        assertNull(ShardRoutingDataSource.getCurrentShard());
+    }
+
+    @Test
+    void testOnShardRestoresPreviousShard() {
+        Integer innerShard = shardRouter.onShard(1, () -> shardRouter.onShard(2, ShardRoutingDataSource::getCurrentShard));
+
+        assertEquals(2, innerShard);
+        assertNull(ShardRoutingDataSource.getCurrentShard());
+    }
+
+    @Test
+    void testOnShardRefusesToSwitchInsideTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals("same", shardRouter.onShard(0, () -> "same"));
+            assertThrows(IllegalStateException.class, () -> shardRouter.onShard(1, () -> "other"));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void testOnEachShardRethrowsShardFailure() {
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> shardRouter.onEachShard(shard -> {
+            if (shard == 2) {
+                throw new IllegalStateException("shard 2 unavailable");
+            }
+            return shard;
+        }));
+
+        assertEquals("shard 2 unavailable", failure.getMessage());
+    }
+
+    @Test
+    void testGroupByShardAndSum() {
+        List<String> spotifyUserIds = IntStream.range(0, 100).mapToObj(i -> "user-" + i).toList();
+
+        Map<Integer, List<String>> userIdsByShard = shardRouter.groupByShard(spotifyUserIds, spotifyUserId -> spotifyUserId);
+
+        assertEquals(100, userIdsByShard.values().stream().mapToInt(List::size).sum());
+        userIdsByShard.forEach((shard, shardUserIds) ->
+                shardUserIds.forEach(spotifyUserId -> assertEquals(shard, shardRouter.shardOf(spotifyUserId))));
+        assertEquals(6L, shardRouter.sumEachShard(shard -> (long) shard));
+    }
+
+    @Test
+    void testInTransactionCommitsOnTheShard() {
+        Integer[] boundShard = new Integer[1];
+
+        shardRouter.inTransaction(3, () -> boundShard[0] = ShardRoutingDataSource.getCurrentShard());
+
+        assertEquals(3, boundShard[0]);
+        verify(transactionManager).getTransaction(any());
+        verify(transactionManager).commit(any());
+    }
+
+    private static ShardingConfig shardingConfig(int shardCount) {
+        ShardingConfig shardingConfig = mock(ShardingConfig.class);
+        when(shardingConfig.getShardCount()).thenReturn(shardCount);
+        return shardingConfig;
+    }
+}
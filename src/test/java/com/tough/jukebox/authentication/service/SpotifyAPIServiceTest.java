@@ -1,23 +1,34 @@
 package com.tough.jukebox.authentication.service;
 
 import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import com.tough.jukebox.authentication.exception.InvalidGrantException;
 import com.tough.jukebox.authentication.exception.SpotifyAPIException;
 import com.tough.jukebox.authentication.model.SpotifyToken;
 import com.tough.jukebox.authentication.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,14 +40,28 @@ class SpotifyAPIServiceTest {
     @Mock
     SpotifyConfig spotifyConfig;
 
-    @InjectMocks
+    MeterRegistry meterRegistry;
+    SpotifyCredentialPool spotifyCredentialPool;
     SpotifyAPIService spotifyAPIService;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        when(spotifyConfig.getSpotifyAppCredentials()).thenReturn(List.of(
+                new SpotifyCredential("test-client-id", "test-client-secret"),
+                new SpotifyCredential("second-client-id", "second-client-secret")
+        ));
+        spotifyCredentialPool = new SpotifyCredentialPool(spotifyConfig, meterRegistry);
+        spotifyAPIService = new SpotifyAPIService(restTemplate, spotifyConfig, spotifyCredentialPool, observationRegistry);
+    }
+
     @Test
     void testRefreshAccessTokenSuccess() throws SpotifyAPIException {
         mockSpotifyTokenRefreshResponse(HttpStatus.OK);
 
-        SpotifyToken token = spotifyAPIService.refreshAccessToken("test-refresh-token");
+        SpotifyToken token = spotifyAPIService.refreshAccessToken("test-refresh-token", null);
 
         assertEquals("test-access-token", token.getAccessToken());
         assertEquals("test-refresh-token", token.getRefreshToken());
@@ -48,7 +73,7 @@ class SpotifyAPIServiceTest {
         mockSpotifyTokenRefreshResponse(HttpStatus.NOT_FOUND);
 
         assertThrows(SpotifyAPIException.class, () -> {
-            spotifyAPIService.refreshAccessToken("test-refresh-token");
+            spotifyAPIService.refreshAccessToken("test-refresh-token", null);
         });
     }
 
@@ -119,7 +144,7 @@ class SpotifyAPIServiceTest {
         mockSpotifyTokenRefreshResponse(HttpStatus.NOT_FOUND);
 
         assertThrows(SpotifyAPIException.class, () ->
-                spotifyAPIService.authenticate("test-auth-code")
+                spotifyAPIService.authenticate("test-auth-code", "test-client-id")
         );
     }
 
@@ -127,13 +152,136 @@ class SpotifyAPIServiceTest {
     void testAuthenticateSuccess() throws SpotifyAPIException {
         mockSpotifyTokenRefreshResponse(HttpStatus.OK);
 
-        SpotifyToken token = spotifyAPIService.authenticate("test-auth-code");
+        SpotifyToken token = spotifyAPIService.authenticate("test-auth-code", "test-client-id");
 
         assertEquals("test-access-token", token.getAccessToken());
         assertEquals("test-refresh-token", token.getRefreshToken());
         assertTrue(token.getTokenExpiry().isAfter(Instant.now()));
     }
 
+    @Test
+    void testRequestsAreTimedByOperationAndStatus() throws SpotifyAPIException {
+        mockSpotifyTokenRefreshResponse(HttpStatus.OK);
+
+        spotifyAPIService.authenticate("test-auth-code", "test-client-id");
+        spotifyAPIService.refreshAccessToken("test-refresh-token", null);
+
+        assertEquals(1, meterRegistry.get("jukebox.spotify.requests")
+                .tags("operation", "authorize", "status", "200", "outcome", "SUCCESS").timer().count());
+        assertEquals(1, meterRegistry.get("jukebox.spotify.requests")
+                .tags("operation", "refresh", "status", "200", "outcome", "SUCCESS").timer().count());
+    }
+
+    @Test
+    void testErrorStatusRaisedByRestTemplateIsTimed() {
+        when(spotifyConfig.getSpotifyTokenUri()).thenReturn("http://test-spotify-token-uri");
+        when(restTemplate.exchange(
+                eq("http://test-spotify-token-uri"),
+                eq(HttpMethod.POST),
+                any(HttpEntity.class),
+                eq(new ParameterizedTypeReference<Map<String, Object>>() {})
+        )).thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", HttpHeaders.EMPTY, null, null));
+
+        assertThrows(HttpClientErrorException.class, () -> spotifyAPIService.refreshAccessToken("test-refresh-token", null));
+
+        assertEquals(1, meterRegistry.get("jukebox.spotify.requests")
+                .tags("operation", "refresh", "status", "429", "outcome", "CLIENT_ERROR").timer().count());
+    }
+
+    @Test
+    void testWarmUpConnectionReachesTokenAndApiHosts() {
+        when(spotifyConfig.getSpotifyTokenUri()).thenReturn("http://test-spotify-token-uri");
+        when(spotifyConfig.getSpotifyCurrentUserUri()).thenReturn("http://test-spotify-current-user-uri");
+        when(restTemplate.exchange(
+                eq("http://test-spotify-token-uri"),
+                eq(HttpMethod.POST),
+                any(HttpEntity.class),
+                eq(new ParameterizedTypeReference<Map<String, Object>>() {})
+        )).thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", HttpHeaders.EMPTY, null, null));
+        when(restTemplate.exchange(
+                eq("http://test-spotify-current-user-uri"),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                eq(new ParameterizedTypeReference<Map<String, Object>>() {})
+        )).thenThrow(HttpClientErrorException.create(HttpStatus.UNAUTHORIZED, "Unauthorized", HttpHeaders.EMPTY, null, null));
+
+        assertDoesNotThrow(() -> spotifyAPIService.warmUpConnection());
+
+        assertEquals(2, meterRegistry.get("jukebox.spotify.requests").tag("operation", "warm_up").timers().size());
+    }
+
+    @Test
+    void testTokenRecordsIssuingApp() throws SpotifyAPIException {
+        mockSpotifyTokenRefreshResponse(HttpStatus.OK);
+
+        SpotifyToken token = spotifyAPIService.authenticate("test-auth-code", "second-client-id");
+
+        assertEquals("second-client-id", token.getClientId());
+        verify(restTemplate).exchange(
+                eq("http://test-spotify-token-uri"),
+                eq(HttpMethod.POST),
+                argThat((HttpEntity<?> entity) -> entity.getHeaders().getFirst(HttpHeaders.AUTHORIZATION)
+                        .equals("Basic " + SpotifyAPIService.clientCredentials(new SpotifyCredential("second-client-id", "second-client-secret")))),
+                eq(new ParameterizedTypeReference<Map<String, Object>>() {})
+        );
+    }
+
+    @Test
+    void testUnknownAppThrowsSpotifyAPIException() {
+        assertThrows(SpotifyAPIException.class, () -> spotifyAPIService.refreshAccessToken("test-refresh-token", "removed-client-id"));
+    }
+
+    @Test
+    void testRateLimitBacksOffOnlyThatApp() throws SpotifyAPIException {
+        when(spotifyConfig.getSpotifyTokenUri()).thenReturn("http://test-spotify-token-uri");
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.set(HttpHeaders.RETRY_AFTER, "120");
+        when(restTemplate.exchange(
+                eq("http://test-spotify-token-uri"),
+                eq(HttpMethod.POST),
+                any(HttpEntity.class),
+                eq(new ParameterizedTypeReference<Map<String, Object>>() {})
+        )).thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", responseHeaders, null, null));
+
+        assertThrows(HttpClientErrorException.class, () -> spotifyAPIService.refreshAccessToken("test-refresh-token", "test-client-id"));
+
+        SpotifyCredential primary = spotifyCredentialPool.forClientId("test-client-id").orElseThrow();
+        assertTrue(spotifyCredentialPool.isRateLimited(primary));
+        assertTrue(spotifyCredentialPool.getRateLimitedUntil(primary).orElseThrow().isAfter(Instant.now().plusSeconds(100)));
+        assertEquals("second-client-id", spotifyCredentialPool.forLogin().clientId());
+        assertEquals(1, meterRegistry.get("jukebox.spotify.rate_limited").tag("client_id", "test-client-id").counter().count());
+
+        // while backing off the app is not called at all
+        assertThrows(SpotifyAPIException.class, () -> spotifyAPIService.refreshAccessToken("test-refresh-token", "test-client-id"));
+        verify(restTemplate, times(1)).exchange(
+                anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(new ParameterizedTypeReference<Map<String, Object>>() {}));
+    }
+
+    @Test
+    void testInvalidGrantIsClassified() {
+        mockSpotifyTokenErrorResponse("{\"error\": \"invalid_grant\", \"error_description\": \"Refresh token revoked\"}");
+
+        assertThrows(InvalidGrantException.class, () -> spotifyAPIService.refreshAccessToken("test-refresh-token", null));
+    }
+
+    @Test
+    void testOtherBadRequestIsNotInvalidGrant() {
+        mockSpotifyTokenErrorResponse("{\"error\": \"invalid_request\", \"error_description\": \"invalid_grant is not mentioned as the error\"}");
+
+        assertThrows(HttpClientErrorException.class, () -> spotifyAPIService.refreshAccessToken("test-refresh-token", null));
+    }
+
+    private void mockSpotifyTokenErrorResponse(String responseBody) {
+        when(spotifyConfig.getSpotifyTokenUri()).thenReturn("http://test-spotify-token-uri");
+        when(restTemplate.exchange(
+                eq("http://test-spotify-token-uri"),
+                eq(HttpMethod.POST),
+                any(HttpEntity.class),
+                eq(new ParameterizedTypeReference<Map<String, Object>>() {})
+        )).thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", HttpHeaders.EMPTY,
+                responseBody.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    }
+
     private void mockSpotifyTokenRefreshResponse(HttpStatus status) {
         when(spotifyConfig.getSpotifyTokenUri()).thenReturn("http://test-spotify-token-uri");
 
@@ -0,0 +1,95 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.SpotifyConfig;
+import com.tough.jukebox.authentication.config.SpotifyCredential;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SpotifyCredentialPoolTest {
+
+    private static final SpotifyCredential FIRST = new SpotifyCredential("first-client-id", "first-client-secret");
+    private static final SpotifyCredential SECOND = new SpotifyCredential("second-client-id", "second-client-secret");
+    private static final SpotifyCredential THIRD = new SpotifyCredential("third-client-id", "third-client-secret");
+
+    @Mock
+    SpotifyConfig spotifyConfig;
+
+    MeterRegistry meterRegistry;
+    SpotifyCredentialPool spotifyCredentialPool;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(spotifyConfig.getSpotifyAppCredentials()).thenReturn(List.of(FIRST, SECOND, THIRD));
+        spotifyCredentialPool = new SpotifyCredentialPool(spotifyConfig, meterRegistry);
+    }
+
+    @Test
+    void testLoginsAreSpreadRoundRobin() {
+        assertEquals(FIRST, spotifyCredentialPool.forLogin());
+        assertEquals(SECOND, spotifyCredentialPool.forLogin());
+        assertEquals(THIRD, spotifyCredentialPool.forLogin());
+        assertEquals(FIRST, spotifyCredentialPool.forLogin());
+    }
+
+    @Test
+    void testLoginsSkipRateLimitedApps() {
+        spotifyCredentialPool.recordRateLimit(SECOND, retryAfter("60"));
+
+        for (int i = 0; i < 6; i++) {
+            assertNotEquals(SECOND, spotifyCredentialPool.forLogin());
+        }
+        assertEquals(1.0, meterRegistry.get("jukebox.spotify.rate_limited.active").tag("client_id", "second-client-id").gauge().value());
+        assertEquals(0.0, meterRegistry.get("jukebox.spotify.rate_limited.active").tag("client_id", "first-client-id").gauge().value());
+    }
+
+    @Test
+    void testAllRateLimitedPicksTheAppThatRecoversFirst() {
+        spotifyCredentialPool.recordRateLimit(FIRST, retryAfter("300"));
+        spotifyCredentialPool.recordRateLimit(SECOND, retryAfter("10"));
+        spotifyCredentialPool.recordRateLimit(THIRD, retryAfter("120"));
+
+        assertEquals(SECOND, spotifyCredentialPool.forLogin());
+    }
+
+    @Test
+    void testRetryAfterDefaultsWhenMissingOrInvalid() {
+        spotifyCredentialPool.recordRateLimit(FIRST, retryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+
+        Instant until = spotifyCredentialPool.getRateLimitedUntil(FIRST).orElseThrow();
+        assertTrue(until.isAfter(Instant.now().plusSeconds(20)) && until.isBefore(Instant.now().plusSeconds(31)));
+    }
+
+    @Test
+    void testForClientIdFallsBackToPrimaryForLegacyTokens() {
+        assertEquals(FIRST, spotifyCredentialPool.forClientId(null).orElseThrow());
+        assertEquals(THIRD, spotifyCredentialPool.forClientId("third-client-id").orElseThrow());
+        assertTrue(spotifyCredentialPool.forClientId("unknown-client-id").isEmpty());
+    }
+
+    @Test
+    void testDuplicateAppIsRejected() {
+        when(spotifyConfig.getSpotifyAppCredentials()).thenReturn(List.of(FIRST, FIRST));
+
+        assertThrows(IllegalStateException.class, () -> new SpotifyCredentialPool(spotifyConfig, new SimpleMeterRegistry()));
+    }
+
+    private static HttpHeaders retryAfter(String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, value);
+        return headers;
+    }
+}
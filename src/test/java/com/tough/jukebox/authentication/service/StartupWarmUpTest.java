@@ -0,0 +1,102 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.diagnostics.InstrumentationSuppression;
+import com.tough.jukebox.authentication.security.JwtUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StartupWarmUpTest {
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private SpotifyAPIService spotifyAPIService;
+
+    @Mock
+    private ObjectProvider<ReactiveSpotifyAPIService> reactiveSpotifyAPIService;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testWarmUpExercisesEachPathAndRecordsDuration() throws NoSuchAlgorithmException, InvalidKeySpecException {
+        when(userService.getUserBySpotifyUserId(anyString())).thenReturn(Optional.empty());
+
+        warmUp(true).run(new DefaultApplicationArguments());
+
+        verify(jwtUtil, times(5)).signAndVerifyUnobserved(anyString());
+        verify(jwtUtil, never()).createToken(anyString());
+        verify(userService, times(5)).getUserBySpotifyUserId(anyString());
+        verify(userService, times(5)).hasValidSpotifyToken(anyString(), any(Instant.class));
+        verify(spotifyAPIService).warmUpConnection();
+        for (String step : new String[]{"jwt", "database", "spotify", "total"}) {
+            assertEquals(1, meterRegistry.get("jukebox.startup.warmup").tag("step", step).timer().count(), step);
+        }
+    }
+
+    @Test
+    void testStepsRunWithInstrumentationSuppressed() {
+        when(userService.getUserBySpotifyUserId(anyString())).thenAnswer(invocation -> {
+            assertTrue(InstrumentationSuppression.isSuppressed());
+            return Optional.empty();
+        });
+        doAnswer(invocation -> {
+            assertTrue(InstrumentationSuppression.isSuppressed());
+            return null;
+        }).when(spotifyAPIService).warmUpConnection();
+
+        warmUp(true).run(new DefaultApplicationArguments());
+
+        verify(spotifyAPIService).warmUpConnection();
+        assertFalse(InstrumentationSuppression.isSuppressed());
+    }
+
+    @Test
+    void testFailedStepDoesNotStopWarmUp() throws NoSuchAlgorithmException, InvalidKeySpecException {
+        when(jwtUtil.signAndVerifyUnobserved(anyString())).thenThrow(new InvalidKeySpecException("no key"));
+        doThrow(new IllegalStateException("no route to host")).when(spotifyAPIService).warmUpConnection();
+
+        assertDoesNotThrow(() -> warmUp(true).run(new DefaultApplicationArguments()));
+
+        verify(userService, times(5)).getUserBySpotifyUserId(anyString());
+        assertEquals(1, meterRegistry.get("jukebox.startup.warmup").tag("step", "total").timer().count());
+    }
+
+    @Test
+    void testDisabledWarmUpDoesNothing() {
+        warmUp(false).run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(jwtUtil, userService, spotifyAPIService);
+        assertNull(meterRegistry.find("jukebox.startup.warmup").timer());
+    }
+
+    private StartupWarmUp warmUp(boolean enabled) {
+        return new StartupWarmUp(jwtUtil, userService, spotifyAPIService, reactiveSpotifyAPIService, meterRegistry, enabled, 5);
+    }
+}
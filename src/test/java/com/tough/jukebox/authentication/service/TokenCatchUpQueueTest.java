@@ -0,0 +1,95 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
+import com.tough.jukebox.authentication.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenCatchUpQueueTest {
+
+    @Mock
+    UserService userService;
+
+    @Mock
+    TokenRefreshConfig tokenRefreshConfig;
+
+    TokenCatchUpQueue tokenCatchUpQueue;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ALL);
+        lenient().when(tokenRefreshConfig.getCatchUpBatchSize()).thenReturn(2);
+        lenient().when(tokenRefreshConfig.getCatchUpQueueSize()).thenReturn(100);
+        lenient().when(tokenRefreshConfig.getCatchUpRefillInterval()).thenReturn(Duration.ofMinutes(5));
+        tokenCatchUpQueue = new TokenCatchUpQueue(userService, tokenRefreshConfig, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testBatchesKeepActivityOrderAndSize() {
+        Instant now = Instant.now();
+        when(userService.getUserIdsWithExpiredTokens(now, 100)).thenReturn(List.of("recent", "older", "oldest"));
+        when(userService.getUsersWithTokensExpiringBefore(List.of("recent", "older"), now)).thenReturn(List.of(user("older"), user("recent")));
+        when(userService.getUsersWithTokensExpiringBefore(List.of("oldest"), now)).thenReturn(List.of(user("oldest")));
+
+        assertEquals(List.of("recent", "older"), spotifyUserIds(tokenCatchUpQueue.nextBatch(now)));
+        assertEquals(1, tokenCatchUpQueue.size());
+        assertEquals(List.of("oldest"), spotifyUserIds(tokenCatchUpQueue.nextBatch(now)));
+    }
+
+    @Test
+    void testUsersRefreshedSinceQueuedAreDropped() {
+        Instant now = Instant.now();
+        when(userService.getUserIdsWithExpiredTokens(now, 100)).thenReturn(List.of("loggedInAgain", "stillExpired"));
+        when(userService.getUsersWithTokensExpiringBefore(List.of("loggedInAgain", "stillExpired"), now)).thenReturn(List.of(user("stillExpired")));
+
+        assertEquals(List.of("stillExpired"), spotifyUserIds(tokenCatchUpQueue.nextBatch(now)));
+    }
+
+    @Test
+    void testRefillsAtMostOncePerInterval() {
+        Instant now = Instant.now();
+        when(userService.getUserIdsWithExpiredTokens(any(Instant.class), eq(100))).thenReturn(List.of());
+
+        tokenCatchUpQueue.nextBatch(now);
+        tokenCatchUpQueue.nextBatch(now.plusSeconds(60));
+        tokenCatchUpQueue.nextBatch(now.plusSeconds(301));
+
+        verify(userService, times(2)).getUserIdsWithExpiredTokens(any(Instant.class), eq(100));
+        verify(userService, never()).getUsersWithTokensExpiringBefore(anyCollection(), any(Instant.class));
+    }
+
+    @Test
+    void testActivePolicyOnlyQueuesActiveUsers() {
+        Instant now = Instant.now();
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ACTIVE);
+        when(tokenRefreshConfig.getActiveWindow()).thenReturn(Duration.ofHours(24));
+
+        tokenCatchUpQueue.nextBatch(now);
+
+        verify(userService).getActiveUserIdsWithExpiredTokens(now, now.minus(Duration.ofHours(24)), 100);
+        verify(userService, never()).getUserIdsWithExpiredTokens(any(Instant.class), anyInt());
+    }
+
+    private static User user(String spotifyUserId) {
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        return user;
+    }
+
+    private static List<String> spotifyUserIds(List<User> users) {
+        return users.stream().map(User::getSpotifyUserId).toList();
+    }
+}
@@ -0,0 +1,89 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.repository.SpotifyTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+
+import static com.tough.jukebox.authentication.service.ShardRouterTest.singleShardRouter;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenCompactionServiceTest {
+
+    @Mock
+    private SpotifyTokenRepository spotifyTokenRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TokenCompactionService tokenCompactionService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenCompactionService = new TokenCompactionService(spotifyTokenRepository, jdbcTemplate, singleShardRouter(), meterRegistry);
+    }
+
+    @Test
+    void testCompactSpotifyTokensPurgesInChunks() {
+        when(spotifyTokenRepository.deleteOrphanedTokens(anyInt())).thenReturn(500, 500, 20);
+        when(jdbcTemplate.queryForObject("PRAGMA page_count", Long.class)).thenReturn(100L, 90L);
+        when(jdbcTemplate.queryForObject("PRAGMA page_size", Long.class)).thenReturn(4096L);
+
+        tokenCompactionService.compactSpotifyTokens();
+
+        verify(spotifyTokenRepository, times(3)).deleteOrphanedTokens(500);
+        verify(jdbcTemplate).execute(any(StatementCallback.class));
+        assertEquals(1020, meterRegistry.get("jukebox.token.compaction.rows.reclaimed").counter().count());
+        assertEquals(10 * 4096, meterRegistry.get("jukebox.token.compaction.bytes.reclaimed").counter().count());
+        assertEquals(90 * 4096, meterRegistry.get("jukebox.database.size").gauge().value());
+    }
+
+    @Test
+    void testCompactSpotifyTokensNoOrphans() {
+        when(spotifyTokenRepository.deleteOrphanedTokens(anyInt())).thenReturn(0);
+        when(jdbcTemplate.queryForObject("PRAGMA page_count", Long.class)).thenReturn(100L);
+        when(jdbcTemplate.queryForObject("PRAGMA page_size", Long.class)).thenReturn(4096L);
+
+        tokenCompactionService.compactSpotifyTokens();
+
+        verify(spotifyTokenRepository, times(1)).deleteOrphanedTokens(500);
+        assertEquals(0, meterRegistry.get("jukebox.token.compaction.rows.reclaimed").counter().count());
+        assertEquals(0, meterRegistry.get("jukebox.token.compaction.bytes.reclaimed").counter().count());
+    }
+
+    @Test
+    void testEnableIncrementalVacuumWhenDisabled() {
+        when(jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class)).thenReturn(0);
+        when(jdbcTemplate.queryForObject("PRAGMA page_count", Long.class)).thenReturn(100L);
+        when(jdbcTemplate.queryForObject("PRAGMA page_size", Long.class)).thenReturn(4096L);
+
+        tokenCompactionService.enableIncrementalVacuum();
+
+        verify(jdbcTemplate).execute("PRAGMA auto_vacuum = INCREMENTAL");
+        verify(jdbcTemplate).execute("VACUUM");
+    }
+
+    @Test
+    void testEnableIncrementalVacuumAlreadyEnabled() {
+        when(jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class)).thenReturn(2);
+        when(jdbcTemplate.queryForObject("PRAGMA page_count", Long.class)).thenReturn(100L);
+        when(jdbcTemplate.queryForObject("PRAGMA page_size", Long.class)).thenReturn(4096L);
+
+        tokenCompactionService.enableIncrementalVacuum();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
@@ -0,0 +1,116 @@
+package com.tough.jukebox.authentication.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenExpiryIndexTest {
+
+    @Test
+    void testDueBetweenReturnsOnlyUsersInsideWindow() {
+        TokenExpiryIndex index = new TokenExpiryIndex();
+        index.put(1L, 1_000L);
+        index.put(2L, 1_100L);
+        index.put(3L, 1_300L);
+        index.put(4L, 900L);
+
+        long[] due = index.dueBetween(1_000L, 1_300L);
+        Arrays.sort(due);
+
+        assertArrayEquals(new long[]{1L, 2L, 3L}, due);
+    }
+
+    @Test
+    void testPutMovesExistingUser() {
+        TokenExpiryIndex index = new TokenExpiryIndex();
+        index.put(1L, 5_000L);
+        index.put(1L, 1_000L);
+
+        assertEquals(1, index.size());
+        assertEquals(1_000L, index.expiryOf(1L));
+        assertArrayEquals(new long[]{1L}, index.dueBetween(0L, 1_000L));
+    }
+
+    @Test
+    void testAdvanceKeepsLaterExpiry() {
+        TokenExpiryIndex index = new TokenExpiryIndex();
+        index.advance(1L, 2_000L);
+        index.advance(1L, 1_000L);
+
+        assertEquals(2_000L, index.expiryOf(1L));
+    }
+
+    @Test
+    void testRemove() {
+        TokenExpiryIndex index = new TokenExpiryIndex();
+        index.put(1L, 1_000L);
+        index.put(2L, 1_000L);
+
+        assertTrue(index.remove(1L));
+        assertFalse(index.remove(1L));
+        assertFalse(index.contains(1L));
+        assertArrayEquals(new long[]{2L}, index.dueBetween(0L, 2_000L));
+    }
+
+    @Test
+    void testRandomOperationsMatchMap() {
+        TokenExpiryIndex index = new TokenExpiryIndex(16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int operation = 0; operation < 200_000; operation++) {
+            long userId = random.nextInt(5_000) + 1;
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(userId) != null, index.remove(userId));
+            } else {
+                long expiry = random.nextInt(100_000);
+                index.put(userId, expiry);
+                expected.put(userId, expiry);
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        expected.forEach((userId, expiry) -> assertEquals(expiry, index.expiryOf(userId)));
+
+        long[] due = index.dueBetween(20_000L, 30_000L);
+        Arrays.sort(due);
+        long[] expectedDue = expected.entrySet().stream()
+                .filter(entry -> entry.getValue() >= 20_000L && entry.getValue() <= 30_000L)
+                .mapToLong(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+        assertArrayEquals(expectedDue, due);
+    }
+
+    @Test
+    void testMillionUsersFitInTensOfMegabytes() {
+        TokenExpiryIndex index = new TokenExpiryIndex();
+        long start = 1_750_000_000L;
+        for (long userId = 1; userId <= 1_000_000; userId++) {
+            index.put(userId, start + (userId * 7919) % 3_600);
+        }
+
+        long bytes = arrayBytes(index, "heapUserIds", Long.BYTES)
+                + arrayBytes(index, "heapExpiries", Long.BYTES)
+                + arrayBytes(index, "slotUserIds", Long.BYTES)
+                + arrayBytes(index, "slotPositions", Integer.BYTES);
+
+        assertEquals(1_000_000, index.size());
+        assertTrue(bytes < 64L * 1024 * 1024, "index uses " + bytes + " bytes");
+        // tokens are spread evenly over an hour, so a five minute window holds about a twelfth of them
+        int due = index.dueBetween(start, start + 299).length;
+        assertTrue(due > 80_000 && due < 87_000, "due: " + due);
+    }
+
+    private static long arrayBytes(TokenExpiryIndex index, String field, int elementBytes) {
+        Object array = ReflectionTestUtils.getField(index, field);
+        return (long) Array.getLength(array) * elementBytes;
+    }
+}
@@ -0,0 +1,84 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.security.JwtUtil;
+import com.tough.jukebox.authentication.security.TokenIntrospection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.CacheControl;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenIntrospectionServiceTest {
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @BeforeEach
+    void setUp() {
+        tokenIntrospectionService = new TokenIntrospectionService(jwtUtil, 50);
+    }
+
+    @Test
+    void testIntrospectKeepsRequestOrder() {
+        when(jwtUtil.introspect(anyString())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            return token.startsWith("valid") ? new TokenIntrospection(true, token, 60, Instant.now().plusSeconds(60)) : TokenIntrospection.invalid();
+        });
+        List<String> tokens = IntStream.range(0, 50).mapToObj(i -> (i % 2 == 0 ? "valid-" : "invalid-") + i).toList();
+
+        List<TokenIntrospection> results = tokenIntrospectionService.introspect(tokens);
+
+        assertEquals(50, results.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i % 2 == 0, results.get(i).valid());
+            assertEquals(i % 2 == 0 ? tokens.get(i) : null, results.get(i).subject());
+        }
+        verify(jwtUtil, times(50)).introspect(anyString());
+    }
+
+    @Test
+    void testIntrospectRejectsEmptyAndOversizedBatches() {
+        assertThrows(IllegalArgumentException.class, () -> tokenIntrospectionService.introspect(null));
+        assertThrows(IllegalArgumentException.class, () -> tokenIntrospectionService.introspect(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> tokenIntrospectionService.introspect(Collections.nCopies(51, "jwt")));
+        verifyNoInteractions(jwtUtil);
+    }
+
+    @Test
+    void testCacheControlUntilFirstTokenExpires() {
+        List<TokenIntrospection> results = List.of(
+                new TokenIntrospection(true, "user-a", 900, Instant.now().plusSeconds(900)),
+                new TokenIntrospection(true, "user-b", 120, Instant.now().plusSeconds(120)));
+
+        assertEquals("max-age=120, private", tokenIntrospectionService.cacheControl(results).getHeaderValue());
+    }
+
+    @Test
+    void testCacheControlNoStoreWhenAnyTokenInvalid() {
+        List<TokenIntrospection> results = List.of(
+                new TokenIntrospection(true, "user-a", 900, Instant.now().plusSeconds(900)),
+                TokenIntrospection.invalid(),
+                new TokenIntrospection(true, "user-b", 120, Instant.now().plusSeconds(120)));
+
+        assertEquals(CacheControl.noStore().getHeaderValue(), tokenIntrospectionService.cacheControl(results).getHeaderValue());
+    }
+
+    @Test
+    void testCacheControlNoStoreWithoutValidTokens() {
+        assertEquals(CacheControl.noStore().getHeaderValue(),
+                tokenIntrospectionService.cacheControl(List.of(TokenIntrospection.invalid())).getHeaderValue());
+    }
+}
@@ -0,0 +1,103 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.model.PendingTokenRefresh;
+import com.tough.jukebox.authentication.model.User;
+import com.tough.jukebox.authentication.repository.PendingTokenRefreshRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRefreshCheckpointTest {
+
+    @Mock
+    private PendingTokenRefreshRepository pendingTokenRefreshRepository;
+
+    @Test
+    void testFinishedRunSavesNothing() {
+        TokenRefreshCheckpoint checkpoint = new TokenRefreshCheckpoint(pendingTokenRefreshRepository, 1000);
+
+        assertTrue(checkpoint.beginRun(new ConcurrentLinkedQueue<>()));
+        checkpoint.endRun();
+
+        verifyNoInteractions(pendingTokenRefreshRepository);
+    }
+
+    @Test
+    void testStopWaitsForRunWhichSavesItsRemainingUsers() throws InterruptedException {
+        TokenRefreshCheckpoint checkpoint = new TokenRefreshCheckpoint(pendingTokenRefreshRepository, 5000);
+        checkpoint.start();
+        Queue<User> pendingUsers = new ConcurrentLinkedQueue<>(List.of(user("first-user"), user("second-user")));
+        CountDownLatch runStarted = new CountDownLatch(1);
+
+        Thread run = Thread.ofPlatform().start(() -> {
+            checkpoint.beginRun(pendingUsers);
+            runStarted.countDown();
+            // stands in for the refresh loop, which checks isStopping between users
+            while (!checkpoint.isStopping()) {
+                Thread.onSpinWait();
+            }
+            pendingUsers.remove();
+            checkpoint.endRun();
+        });
+        assertTrue(runStarted.await(5, TimeUnit.SECONDS));
+
+        checkpoint.stop();
+        run.join();
+
+        assertFalse(checkpoint.isRunning());
+        assertEquals(List.of("second-user"), savedUserIds());
+        assertFalse(checkpoint.beginRun(new ConcurrentLinkedQueue<>()));
+    }
+
+    @Test
+    void testStopSavesRemainingUsersWhenRunOverrunsDeadline() throws InterruptedException {
+        TokenRefreshCheckpoint checkpoint = new TokenRefreshCheckpoint(pendingTokenRefreshRepository, 50);
+        Queue<User> pendingUsers = new ConcurrentLinkedQueue<>(List.of(user("in-flight-user"), user("queued-user")));
+        CountDownLatch runStarted = new CountDownLatch(1);
+        CountDownLatch spotifyResponds = new CountDownLatch(1);
+
+        Thread run = Thread.ofPlatform().start(() -> {
+            checkpoint.beginRun(pendingUsers);
+            runStarted.countDown();
+            try {
+                spotifyResponds.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pendingUsers.clear();
+            checkpoint.endRun();
+        });
+        assertTrue(runStarted.await(5, TimeUnit.SECONDS));
+
+        checkpoint.stop();
+
+        assertEquals(List.of("in-flight-user", "queued-user"), savedUserIds());
+        spotifyResponds.countDown();
+        run.join();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> savedUserIds() {
+        ArgumentCaptor<List<PendingTokenRefresh>> saved = ArgumentCaptor.forClass(List.class);
+        verify(pendingTokenRefreshRepository).saveAll(saved.capture());
+        return saved.getValue().stream().map(PendingTokenRefresh::getSpotifyUserId).toList();
+    }
+
+    private User user(String spotifyUserId) {
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        return user;
+    }
+}
@@ -0,0 +1,142 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRefreshMonitorTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private TokenRefreshConfig tokenRefreshConfig;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRefreshMonitor tokenRefreshMonitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenRefreshMonitor = new TokenRefreshMonitor(userService, tokenRefreshConfig, meterRegistry, 15);
+    }
+
+    @Test
+    void testRecordRefreshTracksLagAfterExpiry() {
+        Instant refreshedAt = Instant.now();
+
+        tokenRefreshMonitor.recordRefresh(refreshedAt.minusSeconds(90), refreshedAt, true);
+        tokenRefreshMonitor.recordRefresh(refreshedAt.plusSeconds(120), refreshedAt, true);
+        tokenRefreshMonitor.recordRefresh(refreshedAt.minusSeconds(30), refreshedAt, false);
+
+        assertEquals(2, meterRegistry.get("jukebox.token.refresh.lag").timer().count());
+        assertEquals(90, meterRegistry.get("jukebox.token.refresh.lag").timer().max(TimeUnit.SECONDS));
+        assertEquals(45, meterRegistry.get("jukebox.token.refresh.lag").timer().mean(TimeUnit.SECONDS));
+        assertEquals(2, meterRegistry.get("jukebox.token.refresh.attempts").tag("outcome", "success").counter().count());
+        assertEquals(1, meterRegistry.get("jukebox.token.refresh.attempts").tag("outcome", "failure").counter().count());
+    }
+
+    @Test
+    void testRecordRunUpdatesBacklogGaugesAndRunMeters() {
+        when(userService.countUsersWithExpiringTokens(any(Instant.class), any(Instant.class))).thenReturn(12L);
+        when(userService.countUsersWithExpiredTokens(any(Instant.class))).thenReturn(3L);
+
+        tokenRefreshMonitor.recordRun(Instant.now().minusMillis(250), 10, 2);
+
+        assertEquals(12.0, meterRegistry.get("jukebox.tokens.expiring").tag("window", "15m").gauge().value());
+        assertEquals(3.0, meterRegistry.get("jukebox.tokens.expired").gauge().value());
+        assertEquals(1, meterRegistry.get("jukebox.token.refresh.run").timer().count());
+        assertTrue(meterRegistry.get("jukebox.token.refresh.run").timer().totalTime(TimeUnit.MILLISECONDS) >= 250);
+        assertEquals(2.0, meterRegistry.get("jukebox.token.refresh.run.failures").summary().totalAmount());
+    }
+
+    @Test
+    void testRecordRunCountsBacklogOverConfiguredWindow() {
+        ArgumentCaptor<Instant> fromCaptor = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Instant> toCaptor = ArgumentCaptor.forClass(Instant.class);
+
+        tokenRefreshMonitor.recordRun(Instant.now(), 0, 0);
+
+        verify(userService).countUsersWithExpiringTokens(fromCaptor.capture(), toCaptor.capture());
+        assertEquals(Duration.ofMinutes(15), Duration.between(fromCaptor.getValue(), toCaptor.getValue()));
+    }
+
+    @Test
+    void testStatusBeforeFirstRun() {
+        Map<String, Object> status = tokenRefreshMonitor.getStatus(null);
+
+        assertEquals("NOT_RUN", status.get("status"));
+        assertEquals(15, status.get("windowMinutes"));
+        assertFalse(status.containsKey("lastRun"));
+    }
+
+    @Test
+    void testStatusIsBehindWhileExpiredTokensRemain() {
+        when(userService.countUsersWithExpiredTokens(any(Instant.class))).thenReturn(0L, 4L);
+
+        tokenRefreshMonitor.recordRun(Instant.now(), 5, 0);
+        Map<String, Object> status = tokenRefreshMonitor.getStatus(60);
+
+        assertEquals("BEHIND", status.get("status"));
+        assertEquals(60, status.get("windowMinutes"));
+        assertEquals(4L, status.get("expiredStillReferenced"));
+        assertEquals(5, ((Map<?, ?>) status.get("lastRun")).get("attempted"));
+    }
+
+    @Test
+    void testIdleUsersExpiredTokensAreReportedApartUnderActivePolicy() {
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ACTIVE);
+        when(tokenRefreshConfig.getActiveWindow()).thenReturn(Duration.ofDays(7));
+        when(userService.countUsersWithExpiredTokens(any(Instant.class))).thenReturn(6L);
+        when(userService.countActiveUsersWithExpiredTokens(any(Instant.class), any(Instant.class))).thenReturn(0L);
+
+        tokenRefreshMonitor.recordRun(Instant.now(), 5, 0);
+        Map<String, Object> status = tokenRefreshMonitor.getStatus(null);
+
+        assertEquals(0.0, meterRegistry.get("jukebox.tokens.expired").gauge().value());
+        assertEquals(6.0, meterRegistry.get("jukebox.tokens.expired.idle").gauge().value());
+        assertEquals("OK", status.get("status"));
+        assertEquals(0L, status.get("expiredStillReferenced"));
+        assertEquals(6L, status.get("expiredIdle"));
+    }
+
+    @Test
+    void testActiveUsersExpiredTokensKeepStatusBehindUnderActivePolicy() {
+        ArgumentCaptor<Instant> nowCaptor = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Instant> activeSinceCaptor = ArgumentCaptor.forClass(Instant.class);
+        when(tokenRefreshConfig.getPolicy()).thenReturn(TokenRefreshConfig.RefreshPolicy.ACTIVE);
+        when(tokenRefreshConfig.getActiveWindow()).thenReturn(Duration.ofDays(7));
+        when(userService.countUsersWithExpiredTokens(any(Instant.class))).thenReturn(6L);
+        when(userService.countActiveUsersWithExpiredTokens(nowCaptor.capture(), activeSinceCaptor.capture())).thenReturn(2L);
+
+        tokenRefreshMonitor.recordRun(Instant.now(), 5, 0);
+        Map<String, Object> status = tokenRefreshMonitor.getStatus(null);
+
+        assertEquals("BEHIND", status.get("status"));
+        assertEquals(2L, status.get("expiredStillReferenced"));
+        assertEquals(4L, status.get("expiredIdle"));
+        assertEquals(Duration.ofDays(7), Duration.between(activeSinceCaptor.getValue(), nowCaptor.getValue()));
+    }
+
+    @Test
+    void testStatusIsOkAfterCleanRun() {
+        tokenRefreshMonitor.recordRun(Instant.now(), 5, 0);
+
+        assertEquals("OK", tokenRefreshMonitor.getStatus(null).get("status"));
+    }
+}
@@ -0,0 +1,29 @@
+package com.tough.jukebox.authentication.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserActivityTrackerTest {
+
+    private final UserActivityTracker userActivityTracker = new UserActivityTracker();
+
+    @Test
+    void testDrainReturnsLatestActivityOncePerUser() {
+        Instant before = Instant.now();
+        userActivityTracker.recordActivity("user-a");
+        userActivityTracker.recordActivity("user-b");
+        userActivityTracker.recordActivity("user-a");
+        userActivityTracker.recordActivity(null);
+        userActivityTracker.recordActivity("");
+
+        Map<String, Instant> drained = userActivityTracker.drain();
+
+        assertEquals(2, drained.size());
+        assertFalse(drained.get("user-a").isBefore(before));
+        assertTrue(userActivityTracker.drain().isEmpty());
+    }
+}
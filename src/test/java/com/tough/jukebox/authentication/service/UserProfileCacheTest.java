@@ -0,0 +1,155 @@
+package com.tough.jukebox.authentication.service;
+
+import com.tough.jukebox.authentication.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserProfileCacheTest {
+
+    @Mock
+    UserService userService;
+
+    SimpleMeterRegistry meterRegistry;
+    UserProfileCache userProfileCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userProfileCache = new UserProfileCache(userService, meterRegistry, 2, 300);
+    }
+
+    @Test
+    void testRepeatedLookupsServedFromCache() {
+        when(userService.getUserBySpotifyUserId("user-1")).thenReturn(Optional.of(user("user-1", "User One")));
+
+        UserProfile first = userProfileCache.get("user-1").orElseThrow();
+        UserProfile second = userProfileCache.get("user-1").orElseThrow();
+
+        assertEquals(new UserProfile("user-1", "User One", "user-1@example.com"), first);
+        assertSame(first, second);
+        verify(userService, times(1)).getUserBySpotifyUserId("user-1");
+        assertEquals(1, meterRegistry.get("jukebox.user.profile.cache").tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get("jukebox.user.profile.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void testEvictReloadsProfile() {
+        when(userService.getUserBySpotifyUserId("user-1"))
+                .thenReturn(Optional.of(user("user-1", "User One")))
+                .thenReturn(Optional.of(user("user-1", "Renamed")));
+
+        UserProfile before = userProfileCache.get("user-1").orElseThrow();
+        userProfileCache.evict("user-1");
+        UserProfile after = userProfileCache.get("user-1").orElseThrow();
+
+        assertEquals("Renamed", after.displayName());
+        assertNotEquals(before.eTag(), after.eTag());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvictedWhenFull() {
+        when(userService.getUserBySpotifyUserId(anyString())).thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0), "Name")));
+
+        userProfileCache.get("user-1");
+        userProfileCache.get("user-2");
+        userProfileCache.get("user-1");
+        userProfileCache.get("user-3");
+
+        assertEquals(2, userProfileCache.size());
+        assertTrue(userProfileCache.getIfPresent("user-1").isPresent());
+        assertTrue(userProfileCache.getIfPresent("user-2").isEmpty());
+    }
+
+    @Test
+    void testOverflowTrimsLeastRecentlyUsedTenth() {
+        userProfileCache = new UserProfileCache(userService, meterRegistry, 20, 300);
+        when(userService.getUserBySpotifyUserId(anyString())).thenAnswer(invocation -> Optional.of(user(invocation.getArgument(0), "Name")));
+
+        for (int i = 1; i <= 20; i++) {
+            userProfileCache.get("user-" + i);
+        }
+        userProfileCache.get("user-1");
+        userProfileCache.get("user-21");
+
+        assertEquals(18, userProfileCache.size());
+        assertTrue(userProfileCache.getIfPresent("user-1").isPresent());
+        assertTrue(userProfileCache.getIfPresent("user-21").isPresent());
+        assertTrue(userProfileCache.getIfPresent("user-2").isEmpty());
+        assertTrue(userProfileCache.getIfPresent("user-4").isEmpty());
+        assertTrue(userProfileCache.getIfPresent("user-5").isPresent());
+    }
+
+    @Test
+    void testConcurrentReadsServedFromCache() {
+        when(userService.getUserBySpotifyUserId("user-1")).thenReturn(Optional.of(user("user-1", "User One")));
+        userProfileCache.get("user-1");
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        userProfileCache.get("user-1").orElseThrow();
+                    }
+                });
+            }
+        }
+
+        verify(userService, times(1)).getUserBySpotifyUserId("user-1");
+        assertEquals(8000, meterRegistry.get("jukebox.user.profile.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void testUnknownUserNotCached() {
+        when(userService.getUserBySpotifyUserId("unknown")).thenReturn(Optional.empty());
+
+        assertTrue(userProfileCache.get("unknown").isEmpty());
+        assertTrue(userProfileCache.get("unknown").isEmpty());
+
+        verify(userService, times(2)).getUserBySpotifyUserId("unknown");
+        assertEquals(0, userProfileCache.size());
+    }
+
+    @Test
+    void testLoadRacingALoginIsNotCached() {
+        when(userService.getUserBySpotifyUserId("user-1")).thenAnswer(invocation -> {
+            // a login lands between the database read and the store
+            userProfileCache.evict("user-1");
+            return Optional.of(user("user-1", "User One"));
+        });
+
+        assertTrue(userProfileCache.get("user-1").isPresent());
+        assertTrue(userProfileCache.getIfPresent("user-1").isEmpty());
+    }
+
+    @Test
+    void testExpiredEntriesReloaded() {
+        userProfileCache = new UserProfileCache(userService, meterRegistry, 2, 0);
+        when(userService.getUserBySpotifyUserId("user-1")).thenReturn(Optional.of(user("user-1", "User One")));
+
+        userProfileCache.get("user-1");
+        userProfileCache.get("user-1");
+
+        verify(userService, times(2)).getUserBySpotifyUserId("user-1");
+    }
+
+    private static User user(String spotifyUserId, String displayName) {
+        User user = new User();
+        user.setSpotifyUserId(spotifyUserId);
+        user.setDisplayName(displayName);
+        user.setEmailAddress(spotifyUserId + "@example.com");
+        return user;
+    }
+}
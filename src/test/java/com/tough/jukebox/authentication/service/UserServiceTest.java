@@ -1,19 +1,25 @@
 package com.tough.jukebox.authentication.service;
 
+import com.tough.jukebox.authentication.config.TokenRefreshConfig;
 import com.tough.jukebox.authentication.model.SpotifyToken;
 import com.tough.jukebox.authentication.model.User;
 import com.tough.jukebox.authentication.repository.UserRepository;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static com.tough.jukebox.authentication.service.ShardRouterTest.singleShardRouter;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -25,9 +31,16 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
-    @InjectMocks
+    @Mock
+    private TokenRefreshConfig tokenRefreshConfig;
+
     private UserService userService;
 
+    @BeforeEach
+    void setUp() {
+        userService = new UserService(userRepository, ObservationRegistry.NOOP, tokenRefreshConfig, singleShardRouter());
+    }
+
     @Test
     void testGetUserBySpotifyUserIdSuccess() {
         when(userRepository.findBySpotifyUserId(anyString())).thenReturn(Optional.of(new User()));
@@ -74,25 +87,131 @@ class UserServiceTest {
         assertTrue(usersWithExpiringTokens.isEmpty());
     }
 
+    @Test
+    void testGetUsersWithExpiringTokensUsesExpiryIndex() {
+        Instant now = Instant.now();
+        loadExpiryIndex(new Object[]{1L, now.plusSeconds(60)}, new Object[]{2L, now.plusSeconds(3600)}, new Object[]{3L, now.minusSeconds(60)});
+
+        when(userRepository.findUsersWithSpotifyTokenExpiringSoon(anyCollection(), any(Instant.class), any(Instant.class))).thenReturn(List.of(new User()));
+
+        List<User> usersWithExpiringTokens = userService.getUsersWithExpiringTokens(now, now.plusSeconds(300));
+
+        assertEquals(1, usersWithExpiringTokens.size());
+        verify(userRepository).findUsersWithSpotifyTokenExpiringSoon(List.of(1L), now, now.plusSeconds(300));
+        verify(userRepository, never()).findUsersWithSpotifyTokenExpiringSoon(any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void testGetActiveUsersWithExpiringTokensFiltersIndexedUsersByActivity() {
+        Instant now = Instant.now();
+        loadExpiryIndex(new Object[]{1L, now.plusSeconds(60)}, new Object[]{2L, now.plusSeconds(120)});
+
+        User activeUser = new User();
+        activeUser.setLastSeenAt(now.minusSeconds(600));
+        User idleUser = new User();
+        idleUser.setLastSeenAt(now.minusSeconds(86400 * 2));
+        when(userRepository.findUsersWithSpotifyTokenExpiringSoon(anyCollection(), any(Instant.class), any(Instant.class))).thenReturn(List.of(activeUser, idleUser));
+
+        List<User> activeUsers = userService.getActiveUsersWithExpiringTokens(now, now.plusSeconds(300), now.minusSeconds(86400));
+
+        assertEquals(List.of(activeUser), activeUsers);
+        verify(userRepository, never()).findActiveUsersWithSpotifyTokenExpiringSoon(any(Instant.class), any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void testExpiryIndexNotLoadedWhenDisabled() {
+        when(tokenRefreshConfig.isExpiryIndexEnabled()).thenReturn(false);
+
+        userService.rebuildTokenExpiryIndex();
+        userService.getUsersWithExpiringTokens(Instant.now(), Instant.now().plusSeconds(300));
+
+        verify(userRepository, never()).findTokenExpiriesAfter(anyLong(), any(Limit.class));
+        verify(userRepository).findUsersWithSpotifyTokenExpiringSoon(any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void testClearUserTokensRemovesUserFromExpiryIndex() {
+        Instant now = Instant.now();
+        loadExpiryIndex(new Object[]{1L, now.plusSeconds(60)});
+
+        when(userRepository.findIdBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(1L));
+        when(userRepository.clearSpotifyToken(anyString())).thenReturn(1);
+
+        userService.clearUserTokens("test-spotify-user-id");
+        List<User> usersWithExpiringTokens = userService.getUsersWithExpiringTokens(now, now.plusSeconds(300));
+
+        assertTrue(usersWithExpiringTokens.isEmpty());
+        verify(userRepository, never()).findUsersWithSpotifyTokenExpiringSoon(anyCollection(), any(Instant.class), any(Instant.class));
+    }
+
+    @Test
+    void testUpdateSpotifyTokensAddsUserToExpiryIndex() {
+        Instant now = Instant.now();
+        loadExpiryIndex();
+
+        User user = new User();
+        user.setSpotifyUserId("test-spotify-user-id");
+        ReflectionTestUtils.setField(user, "id", 7L);
+        SpotifyToken spotifyToken = new SpotifyToken();
+        spotifyToken.setRefreshToken("test-spotify-refresh-token");
+        spotifyToken.setTokenExpiry(now.plusSeconds(120));
+
+        userService.updateSpotifyTokens(user, spotifyToken);
+        userService.getUsersWithExpiringTokens(now, now.plusSeconds(300));
+
+        verify(userRepository).findUsersWithSpotifyTokenExpiringSoon(List.of(7L), now, now.plusSeconds(300));
+    }
+
     @Test
     void testClearUserTokensSuccess() {
-        when(userRepository.findBySpotifyUserId(anyString())).thenReturn(Optional.of(new User()));
-        when(userRepository.save(any(User.class))).thenReturn(new User());
+        when(userRepository.clearSpotifyToken(anyString())).thenReturn(1);
 
         boolean success = userService.clearUserTokens("test-spotify-user-id");
 
         assertTrue(success);
+        verify(userRepository, never()).save(any(User.class));
     }
 
     @Test
     void testClearUserTokensFailureNoUserFound() {
-        when(userRepository.findBySpotifyUserId(anyString())).thenReturn(Optional.empty());
+        when(userRepository.clearSpotifyToken(anyString())).thenReturn(0);
 
         boolean success = userService.clearUserTokens("test-spotify-user-id");
 
         assertFalse(success);
     }
 
+    @Test
+    void testUpdateUserProfileCopiesChangedProfile() {
+        User user = existingUserWithToken();
+        User spotifyUser = new User();
+        spotifyUser.setSpotifyUserId(user.getSpotifyUserId());
+        spotifyUser.setDisplayName("Renamed");
+        spotifyUser.setEmailAddress("renamed@example.com");
+        when(userRepository.updateProfile(user.getSpotifyUserId(), "Renamed", "renamed@example.com")).thenReturn(1);
+
+        userService.updateUserProfile(user, spotifyUser);
+
+        assertEquals("Renamed", user.getDisplayName());
+        assertEquals("renamed@example.com", user.getEmailAddress());
+        verify(userRepository).updateProfile(user.getSpotifyUserId(), "Renamed", "renamed@example.com");
+    }
+
+    @Test
+    void testUpdateUserProfileSkippedWhenUnchanged() {
+        User user = existingUserWithToken();
+        user.setDisplayName("Unchanged");
+        user.setEmailAddress("unchanged@example.com");
+        User spotifyUser = new User();
+        spotifyUser.setSpotifyUserId(user.getSpotifyUserId());
+        spotifyUser.setDisplayName("Unchanged");
+        spotifyUser.setEmailAddress("unchanged@example.com");
+
+        userService.updateUserProfile(user, spotifyUser);
+
+        verify(userRepository, never()).updateProfile(anyString(), anyString(), anyString());
+    }
+
     @Test
     void testUpdateSpotifyTokensSuccess() {
         SpotifyToken spotifyToken = new SpotifyToken();
@@ -104,4 +223,195 @@ class UserServiceTest {
 
         verify(userRepository, times(1)).save(any(User.class));
     }
+
+    @Test
+    void testUpdateSpotifyTokensExistingTokenUpdatedInPlace() {
+        User user = existingUserWithToken();
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.updateSpotifyToken("test-spotify-user-id", "test-spotify-access-token", null, null, newSpotifyToken.getTokenExpiry())).thenReturn(1);
+
+        userService.updateSpotifyTokens(user, newSpotifyToken);
+
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void testUpdateSpotifyTokensExistingTokenReplacesRefreshToken() {
+        User user = existingUserWithToken();
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("test-spotify-refresh-token");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.updateSpotifyToken("test-spotify-user-id", "test-spotify-access-token", "test-spotify-refresh-token", null, newSpotifyToken.getTokenExpiry())).thenReturn(1);
+
+        userService.updateSpotifyTokens(user, newSpotifyToken);
+
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void testUpdateSpotifyTokensFallsBackToSaveWhenTokenRowGone() {
+        User user = existingUserWithToken();
+        User loggedOutUser = new User();
+        ReflectionTestUtils.setField(loggedOutUser, "id", 1L);
+        loggedOutUser.setSpotifyUserId("test-spotify-user-id");
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("test-spotify-refresh-token");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.updateSpotifyToken(anyString(), anyString(), any(), any(), any(Instant.class))).thenReturn(0);
+        when(userRepository.findBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(loggedOutUser));
+        when(userRepository.save(any(User.class))).thenReturn(loggedOutUser);
+
+        userService.updateSpotifyTokens(user, newSpotifyToken);
+
+        verify(userRepository, times(1)).save(loggedOutUser);
+        assertEquals("test-spotify-access-token", loggedOutUser.getSpotifyToken().getAccessToken());
+    }
+
+    @Test
+    void testUpdateSpotifyTokensKeepsStoredTokenThatExpiresLater() {
+        User user = existingUserWithToken();
+
+        SpotifyToken storedToken = new SpotifyToken();
+        storedToken.setAccessToken("test-stored-access-token");
+        storedToken.setTokenExpiry(Instant.now().plusSeconds(7200));
+        User latestUser = new User();
+        ReflectionTestUtils.setField(latestUser, "id", 1L);
+        latestUser.setSpotifyUserId("test-spotify-user-id");
+        latestUser.setSpotifyToken(storedToken);
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.updateSpotifyToken(anyString(), anyString(), any(), any(), any(Instant.class))).thenReturn(0);
+        when(userRepository.findBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(latestUser));
+
+        userService.updateSpotifyTokens(user, newSpotifyToken);
+
+        verify(userRepository, times(1)).updateSpotifyToken(anyString(), anyString(), any(), any(), any(Instant.class));
+        verify(userRepository, never()).save(any(User.class));
+        assertEquals("test-stored-access-token", latestUser.getSpotifyToken().getAccessToken());
+    }
+
+    @Test
+    void testUpdateSpotifyTokensRetriesUpdateWhenTokenReplacedConcurrently() {
+        User user = existingUserWithToken();
+
+        SpotifyToken storedToken = new SpotifyToken();
+        storedToken.setTokenExpiry(Instant.now());
+        User latestUser = new User();
+        latestUser.setSpotifyUserId("test-spotify-user-id");
+        latestUser.setSpotifyToken(storedToken);
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.updateSpotifyToken(anyString(), anyString(), any(), any(), any(Instant.class))).thenReturn(0, 1);
+        when(userRepository.findBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(latestUser));
+
+        userService.updateSpotifyTokens(user, newSpotifyToken);
+
+        verify(userRepository, times(2)).updateSpotifyToken(anyString(), anyString(), any(), any(), any(Instant.class));
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void testUpdateSpotifyTokensRetriesAfterConcurrentUpdate() {
+        User staleUser = new User();
+        staleUser.setSpotifyUserId("test-spotify-user-id");
+
+        SpotifyToken storedToken = new SpotifyToken();
+        storedToken.setTokenExpiry(Instant.now());
+        User latestUser = new User();
+        latestUser.setSpotifyUserId("test-spotify-user-id");
+        latestUser.setSpotifyToken(storedToken);
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.save(any(User.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(User.class, "test-spotify-user-id"))
+                .thenReturn(latestUser);
+        when(userRepository.findBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(latestUser));
+
+        userService.updateSpotifyTokens(staleUser, newSpotifyToken);
+
+        verify(userRepository, times(1)).save(latestUser);
+        assertEquals("test-spotify-access-token", latestUser.getSpotifyToken().getAccessToken());
+    }
+
+    @Test
+    void testUpdateSpotifyTokensSkippedWhenNewerTokenStoredConcurrently() {
+        User staleUser = new User();
+        staleUser.setSpotifyUserId("test-spotify-user-id");
+
+        SpotifyToken storedToken = new SpotifyToken();
+        storedToken.setAccessToken("test-stored-access-token");
+        storedToken.setTokenExpiry(Instant.now().plusSeconds(7200));
+        User latestUser = new User();
+        latestUser.setSpotifyUserId("test-spotify-user-id");
+        latestUser.setSpotifyToken(storedToken);
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("");
+        newSpotifyToken.setAccessToken("test-spotify-access-token");
+        newSpotifyToken.setTokenExpiry(Instant.now().plusSeconds(3600));
+
+        when(userRepository.save(any(User.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(User.class, "test-spotify-user-id"));
+        when(userRepository.findBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(latestUser));
+
+        userService.updateSpotifyTokens(staleUser, newSpotifyToken);
+
+        verify(userRepository, times(1)).save(any(User.class));
+        assertEquals("test-stored-access-token", latestUser.getSpotifyToken().getAccessToken());
+    }
+
+    @Test
+    void testUpdateSpotifyTokensFailureRetriesExhausted() {
+        User user = new User();
+        user.setSpotifyUserId("test-spotify-user-id");
+
+        SpotifyToken newSpotifyToken = new SpotifyToken();
+        newSpotifyToken.setRefreshToken("test-spotify-refresh-token");
+
+        when(userRepository.save(any(User.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(User.class, "test-spotify-user-id"));
+        when(userRepository.findBySpotifyUserId("test-spotify-user-id")).thenReturn(Optional.of(new User()));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.updateSpotifyTokens(user, newSpotifyToken));
+
+        verify(userRepository, times(3)).save(any(User.class));
+    }
+
+    private User existingUserWithToken() {
+        User user = new User();
+        ReflectionTestUtils.setField(user, "id", 1L);
+        user.setSpotifyUserId("test-spotify-user-id");
+        user.setSpotifyToken(new SpotifyToken());
+        return user;
+    }
+
+    private void loadExpiryIndex(Object[]... rows) {
+        when(tokenRefreshConfig.isExpiryIndexEnabled()).thenReturn(true);
+        when(userRepository.findTokenExpiriesAfter(anyLong(), any(Limit.class))).thenReturn(List.of(rows));
+
+        userService.rebuildTokenExpiryIndex();
+    }
 }
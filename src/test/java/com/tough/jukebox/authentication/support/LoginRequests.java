@@ -0,0 +1,42 @@
+package com.tough.jukebox.authentication.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+// Starts a login the way the front end does, so the callback carries a state and login cookie the service issued
+public final class LoginRequests {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private LoginRequests() {
+    }
+
+    public static HttpRequest.Builder callback(HttpClient httpClient, int port, String code) throws IOException, InterruptedException {
+        HttpResponse<String> redirectParams = httpClient.send(
+                HttpRequest.newBuilder(uri(port, "/auth/spotifyRedirectParams")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        String state = OBJECT_MAPPER.readTree(redirectParams.body()).get("state").asText();
+        String loginStateCookie = redirectParams.headers().allValues("Set-Cookie").stream()
+                .filter(cookie -> cookie.startsWith("loginState="))
+                .findFirst()
+                .orElseThrow()
+                .split(";")[0];
+
+        return HttpRequest.newBuilder(uri(port, "/auth/spotifyAuthorizationCallback?code=" + code
+                        + "&state=" + URLEncoder.encode(state, StandardCharsets.UTF_8)))
+                .header("Cookie", loginStateCookie)
+                .GET();
+    }
+
+    private static URI uri(int port, String path) {
+        return URI.create("http://127.0.0.1:" + port + path);
+    }
+}
@@ -0,0 +1,148 @@
+package com.tough.jukebox.authentication.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local stand-in for the Spotify token and current-user endpoints.
+// Every token request yields a new user, so concurrent logins never collide on unique columns.
+public class SpotifyStubServer implements AutoCloseable {
+
+    public static final String REVOKED_REFRESH_TOKEN = "stub-revoked-refresh-token";
+
+    private static final String ACCESS_TOKEN_PREFIX = "stub-access-";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger issuedTokens = new AtomicInteger();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger userRequests = new AtomicInteger();
+    private final Queue<String> traceparents = new ConcurrentLinkedQueue<>();
+
+    private volatile Duration latency = Duration.ZERO;
+
+    private SpotifyStubServer(HttpServer server) {
+        this.server = server;
+        this.executor = Executors.newCachedThreadPool();
+        server.createContext("/api/token", this::handleToken);
+        server.createContext("/v1/me", this::handleCurrentUser);
+        server.setExecutor(executor);
+    }
+
+    public static SpotifyStubServer start() throws IOException {
+        SpotifyStubServer stubServer = new SpotifyStubServer(
+                HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0));
+        stubServer.server.start();
+        return stubServer;
+    }
+
+    public String getTokenUri() {
+        return getBaseUri() + "/api/token";
+    }
+
+    public String getCurrentUserUri() {
+        return getBaseUri() + "/v1/me";
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public int getTokenRequests() {
+        return tokenRequests.get();
+    }
+
+    public int getUserRequests() {
+        return userRequests.get();
+    }
+
+    // W3C trace context headers received so far, in arrival order
+    public List<String> getTraceparents() {
+        return List.copyOf(traceparents);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private String getBaseUri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handleToken(HttpExchange exchange) throws IOException {
+        tokenRequests.incrementAndGet();
+        recordTraceparent(exchange);
+        simulateLatency();
+
+        // Spotify's answer once the user has revoked the app
+        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (requestBody.contains("refresh_token=" + REVOKED_REFRESH_TOKEN)) {
+            respond(exchange, 400, "{\"error\":\"invalid_grant\",\"error_description\":\"Refresh token revoked\"}");
+            return;
+        }
+
+        int tokenNumber = issuedTokens.incrementAndGet();
+        respond(exchange, 200, "{\"access_token\":\"" + ACCESS_TOKEN_PREFIX + tokenNumber + "\"," +
+                "\"token_type\":\"Bearer\"," +
+                "\"refresh_token\":\"stub-refresh-" + tokenNumber + "\"," +
+                "\"expires_in\":3600}");
+    }
+
+    private void handleCurrentUser(HttpExchange exchange) throws IOException {
+        userRequests.incrementAndGet();
+        recordTraceparent(exchange);
+        simulateLatency();
+
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer " + ACCESS_TOKEN_PREFIX)) {
+            respond(exchange, 401, "{\"error\":{\"status\":401,\"message\":\"Invalid access token\"}}");
+            return;
+        }
+
+        String userNumber = authorization.substring(("Bearer " + ACCESS_TOKEN_PREFIX).length());
+        respond(exchange, 200, "{\"id\":\"stub-user-" + userNumber + "\"," +
+                "\"email\":\"stub-user-" + userNumber + "@jukebox.test\"," +
+                "\"display_name\":\"Stub User " + userNumber + "\"}");
+    }
+
+    private void recordTraceparent(HttpExchange exchange) {
+        String traceparent = exchange.getRequestHeaders().getFirst("traceparent");
+        if (traceparent != null) {
+            traceparents.add(traceparent);
+        }
+    }
+
+    private void simulateLatency() {
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.tough.jukebox.authentication.tools.integration;
+
+import com.tough.jukebox.authentication.service.ShardRouter;
+import com.tough.jukebox.authentication.tools.ReshardTool;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReshardToolIntegrationTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<String> sourceUrls;
+    private List<String> targetUrls;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        sourceUrls = List.of(url("old-0"), url("old-1"));
+        targetUrls = List.of(url("new-0"), url("new-1"), url("new-2"));
+
+        for (String sourceUrl : sourceUrls) {
+            Flyway.configure().dataSource(sourceUrl, null, null).baselineOnMigrate(true).baselineVersion("0").load().migrate();
+        }
+        // placed by the old two-shard layout, as the service would have stored them
+        for (int i = 0; i < 30; i++) {
+            String spotifyUserId = "user-" + i;
+            insertUser(sourceUrls.get(ShardRouter.shardOf(spotifyUserId, 2)), spotifyUserId, i % 3 != 0);
+        }
+        execute(sourceUrls.get(1), "INSERT INTO pending_token_refresh (spotify_user_id, queued_at) VALUES ('user-1', 1700000000000)");
+    }
+
+    @Test
+    void testUsersMovedToTheirShardInTheNewLayout() throws SQLException {
+        List<Long> usersPerTarget = new ReshardTool(sourceUrls, targetUrls).run();
+
+        assertEquals(30, usersPerTarget.stream().mapToLong(Long::longValue).sum());
+        for (int shard = 0; shard < targetUrls.size(); shard++) {
+            try (Connection target = DriverManager.getConnection(targetUrls.get(shard));
+                 Statement statement = target.createStatement();
+                 ResultSet row = statement.executeQuery("SELECT u.spotify_user_id, st.refresh_token, st.client_id FROM \"user\" u " +
+                         "LEFT JOIN spotify_token st ON st.id = u.spotify_token_id")) {
+                int users = 0;
+                while (row.next()) {
+                    users++;
+                    String spotifyUserId = row.getString(1);
+                    assertEquals(shard, ShardRouter.shardOf(spotifyUserId, 3));
+
+                    int i = Integer.parseInt(spotifyUserId.substring("user-".length()));
+                    // users that had logged out keep no token
+                    assertEquals(i % 3 != 0 ? spotifyUserId + "-refresh" : null, row.getString(2));
+                    assertEquals(i % 3 != 0 ? "client-" + i : null, row.getString(3));
+                }
+                assertEquals(usersPerTarget.get(shard), users);
+            }
+            assertEquals(1, count(targetUrls.get(shard), "SELECT COUNT(*) FROM shard_metadata WHERE shard_index = " + shard + " AND shard_count = 3"));
+        }
+        assertEquals(1, count(targetUrls.get(0), "SELECT COUNT(*) FROM pending_token_refresh WHERE spotify_user_id = 'user-1'"));
+    }
+
+    @Test
+    void testRefusesTargetThatAlreadyHoldsUsers() throws SQLException {
+        new ReshardTool(sourceUrls, targetUrls).run();
+
+        assertThrows(IllegalStateException.class, () -> new ReshardTool(sourceUrls, targetUrls).run());
+    }
+
+    @Test
+    void testRefusesSourceAsTarget() {
+        assertThrows(IllegalArgumentException.class, () -> new ReshardTool(sourceUrls, List.of(sourceUrls.get(0), url("new-1"))));
+    }
+
+    private void insertUser(String url, String spotifyUserId, boolean withToken) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Long tokenId = null;
+            if (withToken) {
+                try (PreparedStatement insertToken = connection.prepareStatement("INSERT INTO spotify_token (access_token, refresh_token, token_expiry, client_id) VALUES (?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    insertToken.setString(1, spotifyUserId + "-access");
+                    insertToken.setString(2, spotifyUserId + "-refresh");
+                    insertToken.setLong(3, 1700000000000L);
+                    insertToken.setString(4, "client-" + spotifyUserId.substring("user-".length()));
+                    insertToken.executeUpdate();
+                    try (ResultSet keys = insertToken.getGeneratedKeys()) {
+                        keys.next();
+                        tokenId = keys.getLong(1);
+                    }
+                }
+            }
+            try (PreparedStatement insertUser = connection.prepareStatement("INSERT INTO \"user\" (display_name, email_address, spotify_user_id, spotify_token_id) VALUES (?, ?, ?, ?)")) {
+                insertUser.setString(1, spotifyUserId + "-name");
+                insertUser.setString(2, spotifyUserId + "@example.com");
+                insertUser.setString(3, spotifyUserId);
+                insertUser.setObject(4, tokenId);
+                insertUser.executeUpdate();
+            }
+        }
+    }
+
+    private static void execute(String url, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    private static long count(String url, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet row = statement.executeQuery(sql)) {
+            row.next();
+            return row.getLong(1);
+        }
+    }
+
+    private String url(String name) {
+        return "jdbc:sqlite:" + tempDir.resolve(name + ".sqlite");
+    }
+}